@@ -0,0 +1,218 @@
+package hudson.plugins.jobConfigHistory;
+
+import hudson.init.Terminator;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes history entries on a single background thread, so saving a job or
+ * agent does not wait for the history volume.
+ * <p>
+ * Callers hand in tasks which already hold a snapshot of everything they
+ * write. The tasks run one after the other in the order they were submitted,
+ * so the entries of an item are written in the order of its changes. The queue
+ * is bounded, once it is full {@link #submit(Runnable)} blocks until the
+ * writer caught up. Pending entries are written when Jenkins shuts down.
+ */
+@Restricted(NoExternalUse.class)
+public final class AsyncHistoryWriter {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(AsyncHistoryWriter.class.getName());
+
+    /**
+     * Number of entries which may wait for the writer.
+     */
+    static final int QUEUE_CAPACITY = SystemProperties.getInteger(
+            AsyncHistoryWriter.class.getName() + ".queueCapacity", 1000);
+
+    /**
+     * Number of entries the writer takes from the queue at once.
+     */
+    static final int BATCH_SIZE = SystemProperties.getInteger(
+            AsyncHistoryWriter.class.getName() + ".batchSize", 64);
+
+    /**
+     * Seconds to wait for pending entries, e.g. on shutdown.
+     */
+    static final int FLUSH_TIMEOUT = SystemProperties.getInteger(
+            AsyncHistoryWriter.class.getName() + ".flushTimeout", 30);
+
+    /**
+     * The writer, created on first use.
+     */
+    private static AsyncHistoryWriter instance;
+
+    /**
+     * Pending entries.
+     */
+    private final BlockingQueue<Runnable> queue;
+
+    /**
+     * Thread writing the entries.
+     */
+    private final Thread worker;
+
+    /**
+     * Set on shutdown, entries are written by the caller from then on.
+     */
+    private volatile boolean closed;
+
+    /**
+     * @param capacity of the queue.
+     */
+    AsyncHistoryWriter(final int capacity) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.worker = new Thread(this::writeEntries, "Job Config History writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Returns the writer, starting it if needed.
+     *
+     * @return the writer.
+     */
+    static synchronized AsyncHistoryWriter get() {
+        if (instance == null || instance.closed) {
+            instance = new AsyncHistoryWriter(QUEUE_CAPACITY);
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a task, waiting for space if the writer is behind. Once the writer
+     * is closed, or if the calling thread gets interrupted while waiting, the
+     * task runs on the calling thread instead so that no entry gets lost.
+     *
+     * @param task writing one history entry.
+     */
+    void submit(final Runnable task) {
+        if (!closed) {
+            try {
+                queue.put(task);
+                if (closed && queue.remove(task)) {
+                    // the writer stopped meanwhile, nobody else will run it
+                    task.run();
+                }
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.log(Level.FINE, "interrupted while queueing, writing history entry directly");
+            }
+        }
+        task.run();
+    }
+
+    /**
+     * Waits until all entries submitted so far are written.
+     *
+     * @param timeout how long to wait.
+     * @param unit    of the timeout.
+     * @return true if all entries were written in time.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    boolean flush(final long timeout, final TimeUnit unit) throws InterruptedException {
+        if (closed) {
+            return queue.isEmpty();
+        }
+        final CountDownLatch written = new CountDownLatch(1);
+        if (!queue.offer(written::countDown, timeout, unit)) {
+            return false;
+        }
+        return written.await(timeout, unit);
+    }
+
+    /**
+     * @return the number of entries waiting for the writer.
+     */
+    int getPendingEntries() {
+        return queue.size();
+    }
+
+    /**
+     * Writes pending entries, then stops the writer. Entries which could not be
+     * written in time by the writer are written by the calling thread.
+     */
+    void close() {
+        try {
+            if (!flush(FLUSH_TIMEOUT, TimeUnit.SECONDS)) {
+                LOG.log(Level.WARNING, "history writer did not finish within {0}s, {1} entries pending",
+                        new Object[]{FLUSH_TIMEOUT, queue.size()});
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closed = true;
+        // wake the writer up, it stops after the current batch
+        queue.offer(() -> { });
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(FLUSH_TIMEOUT));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final List<Runnable> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(AsyncHistoryWriter::runSafely);
+    }
+
+    /**
+     * Loop of the writer thread.
+     */
+    private void writeEntries() {
+        final List<Runnable> batch = new ArrayList<>(BATCH_SIZE);
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, BATCH_SIZE - 1);
+            LOG.log(Level.FINEST, "writing {0} history entries", batch.size());
+            batch.forEach(AsyncHistoryWriter::runSafely);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Runs a task, logging instead of propagating failures, so one broken
+     * entry does not stop the writer.
+     *
+     * @param task to run.
+     */
+    private static void runSafely(final Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "unable to write history entry", e);
+        }
+    }
+
+    /**
+     * Writes pending entries before Jenkins goes down.
+     */
+    @Terminator
+    public static void shutdown() {
+        final AsyncHistoryWriter writer;
+        synchronized (AsyncHistoryWriter.class) {
+            writer = instance;
+            instance = null;
+        }
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
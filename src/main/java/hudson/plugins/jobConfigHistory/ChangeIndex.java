@@ -0,0 +1,262 @@
+package hudson.plugins.jobConfigHistory;
+
+import jenkins.util.SystemProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Times of the revisions of a job, so {@link JobConfigBadgeAction} decides on
+ * every build whether the configuration changed since the previous build
+ * without looking at the history on disk.
+ * <p>
+ * The times of a job are taken once, from the identifiers of its revisions,
+ * and kept in the {@link Indices} of the {@link FileHistoryDao}. It adds the revisions it writes and has the times
+ * taken again when it deletes, purges or moves revisions of the job. They
+ * are also taken again when the modification time of the history directory
+ * of the job changed otherwise, e.g. by a restore or by hand. The least
+ * recently used jobs are dropped once more than {@link #MAX_JOBS} are kept.
+ */
+final class ChangeIndex {
+
+    /**
+     * Number of jobs whose times are kept in memory.
+     */
+    static final int MAX_JOBS = SystemProperties.getInteger(
+            ChangeIndex.class.getName() + ".maxJobs", 10_000);
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(ChangeIndex.class.getName());
+
+    /**
+     * Times of the revisions in milliseconds since the epoch, ascending, up
+     * to {@link #size}. Guarded by the index.
+     */
+    private long[] times;
+
+    /**
+     * Keys of the identifiers of the revisions (see {@link RevisionIds}), in
+     * the order of {@link #times}. Guarded by the index.
+     */
+    private long[] revisions;
+
+    /**
+     * Number of revisions. Guarded by the index.
+     */
+    private int size;
+
+    /**
+     * Modification time of the history directory when the times were taken.
+     * Guarded by the {@link Indices}.
+     */
+    private long lastModified;
+
+    private ChangeIndex(long[] times, long[] revisions) {
+        this.times = times;
+        this.revisions = revisions;
+        this.size = times.length;
+    }
+
+    /**
+     * @param identifiers of the revisions of a job.
+     * @return the index of the revisions.
+     */
+    static ChangeIndex of(Collection<String> identifiers) {
+        final long[][] sorted = new long[identifiers.size()][];
+        int size = 0;
+        for (String identifier : identifiers) {
+            final long key = RevisionIds.toKey(identifier);
+            if (key == RevisionIds.UNPARSEABLE) {
+                LOG.log(Level.FINE, "ignoring revision {0}", identifier);
+                continue;
+            }
+            sorted[size++] = new long[]{RevisionIds.toEpochMillis(key), key};
+        }
+        Arrays.sort(sorted, 0, size, ChangeIndex::compare);
+        final long[] times = new long[size];
+        final long[] revisions = new long[size];
+        for (int i = 0; i < size; i++) {
+            times[i] = sorted[i][0];
+            revisions[i] = sorted[i][1];
+        }
+        return new ChangeIndex(times, revisions);
+    }
+
+    /**
+     * Indices of the jobs of one {@link FileHistoryDao}, shared with its views
+     * for other users.
+     */
+    static final class Indices {
+
+        /**
+         * Indices by history directory of the job, least recently used first.
+         * Guarded by this.
+         */
+        private final Map<File, ChangeIndex> indices = new LinkedHashMap<>(16, 0.75f, true);
+
+        /**
+         * Incremented by every change, so times taken before a change are not
+         * kept after it.
+         */
+        private long generation;
+
+        /**
+         * @param itemHistoryDir history directory of the job.
+         * @param identifiers    lists the identifiers of the revisions of the
+         *                       job, if they were not taken yet.
+         * @return the index of the job.
+         */
+        ChangeIndex get(File itemHistoryDir, Supplier<Collection<String>> identifiers) {
+            final File key = itemHistoryDir.getAbsoluteFile();
+            final long lastModified = lastModified(key);
+            final long takenGeneration;
+            synchronized (this) {
+                final ChangeIndex cached = indices.get(key);
+                if (cached != null && cached.lastModified == lastModified) {
+                    return cached;
+                }
+                takenGeneration = generation;
+            }
+            final ChangeIndex index = of(identifiers.get());
+            synchronized (this) {
+                if (takenGeneration == generation) {
+                    index.lastModified = lastModified;
+                    indices.put(key, index);
+                    evict();
+                }
+            }
+            return index;
+        }
+
+        /**
+         * Adds a revision to the index of its job, if the times of the job were
+         * taken.
+         *
+         * @param revisionDir the directory of the new revision.
+         */
+        void added(File revisionDir) {
+            final long key = RevisionIds.toKey(revisionDir.getName());
+            if (key == RevisionIds.UNPARSEABLE) {
+                invalidate(revisionDir.getParentFile());
+                return;
+            }
+            final File itemHistoryDir = revisionDir.getParentFile().getAbsoluteFile();
+            synchronized (this) {
+                generation++;
+                final ChangeIndex index = indices.get(itemHistoryDir);
+                if (index != null) {
+                    index.add(RevisionIds.toEpochMillis(key), key);
+                    // the new revision changed the directory
+                    index.lastModified = lastModified(itemHistoryDir);
+                }
+            }
+        }
+
+        /**
+         * Has the times of a job taken again.
+         *
+         * @param itemHistoryDir history directory of the job.
+         */
+        synchronized void invalidate(File itemHistoryDir) {
+            generation++;
+            indices.remove(itemHistoryDir.getAbsoluteFile());
+        }
+
+        /**
+         * Drops the least recently used jobs.
+         */
+        private void evict() {
+            final Iterator<ChangeIndex> eldest = indices.values().iterator();
+            while (indices.size() > MAX_JOBS && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the revisions to compare for a build which started after the
+     * configuration was changed.
+     *
+     * @param lastBuildTime when the previous build started.
+     * @return the identifiers of the newest revision and of the newest one
+     * older than the previous build, or of the second newest one if there is
+     * none; null if the configuration did not change since the previous
+     * build or there are less than two revisions.
+     */
+    synchronized String[] getConfigChangeDates(long lastBuildTime) {
+        final int newest = size - 1;
+        if (newest < 1 || times[newest] <= lastBuildTime) {
+            return null;
+        }
+        // the last of the older revisions which is before the previous build
+        int before = Arrays.binarySearch(times, 0, newest, lastBuildTime);
+        if (before < 0) {
+            before = -before - 2;
+        } else {
+            while (before >= 0 && times[before] == lastBuildTime) {
+                before--;
+            }
+        }
+        return new String[]{RevisionIds.toId(revisions[newest]),
+                RevisionIds.toId(revisions[before < 0 ? newest - 1 : before])};
+    }
+
+    /**
+     * Inserts a revision, usually the newest one, in place.
+     */
+    private synchronized void add(long time, long key) {
+        int position = size;
+        while (position > 0 && compare(time, key, times[position - 1], revisions[position - 1]) < 0) {
+            position--;
+        }
+        if (position > 0 && revisions[position - 1] == key) {
+            // already listed when the times were taken
+            return;
+        }
+        if (size == times.length) {
+            final int capacity = Math.max(8, size + (size >> 1));
+            times = Arrays.copyOf(times, capacity);
+            revisions = Arrays.copyOf(revisions, capacity);
+        }
+        System.arraycopy(times, position, times, position + 1, size - position);
+        System.arraycopy(revisions, position, revisions, position + 1, size - position);
+        times[position] = time;
+        revisions[position] = key;
+        size++;
+    }
+
+    /**
+     * @return the modification time in the finest resolution the file system
+     * has, 0 if the directory is missing.
+     */
+    private static long lastModified(File dir) {
+        try {
+            return Files.getLastModifiedTime(dir.toPath()).to(TimeUnit.NANOSECONDS);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static int compare(long[] a, long[] b) {
+        return compare(a[0], a[1], b[0], b[1]);
+    }
+
+    private static int compare(long time1, long key1, long time2, long key2) {
+        final int byTime = Long.compare(time1, time2);
+        return byTime != 0 ? byTime : Long.compare(key1, key2);
+    }
+}
@@ -41,6 +41,7 @@ import org.kohsuke.stapler.export.ExportedBean;
 import org.kohsuke.stapler.verb.POST;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -167,8 +168,7 @@ public class ComputerConfigHistoryAction extends JobConfigHistoryBaseAction {
         final ArrayList<HistoryDescr> values = new ArrayList<>(getHistoryDao().getRevisions(agent).values());
         for (final HistoryDescr historyDescr : values) {
             final String timestamp = historyDescr.getTimestamp();
-            final XmlFile oldRevision = getHistoryDao().getOldRevision(agent, timestamp);
-            if (oldRevision.getFile() != null) {
+            if (getHistoryDao().hasOldRevision(agent, timestamp)) {
                 configs.add(ConfigInfo.create(agent.getNodeName(), true, historyDescr, true));
             } else if ("Deleted".equals(historyDescr.getOperation())) {
                 configs.add(ConfigInfo.create(agent.getNodeName(), false, historyDescr, true));
@@ -191,8 +191,7 @@ public class ComputerConfigHistoryAction extends JobConfigHistoryBaseAction {
         final ArrayList<HistoryDescr> values = new ArrayList<>(getHistoryDao().getRevisions(agent).values());
         for (final HistoryDescr historyDescr : values) {
             final String timestamp = historyDescr.getTimestamp();
-            final XmlFile oldRevision = getHistoryDao().getOldRevision(agent, timestamp);
-            if (oldRevision.getFile() != null) {
+            if (getHistoryDao().hasOldRevision(agent, timestamp)) {
                 configs.add(ConfigInfo.create(agent.getNodeName(), true, historyDescr, true));
             } else if ("Deleted".equals(historyDescr.getOperation())) {
                 configs.add(ConfigInfo.create(agent.getNodeName(), false, historyDescr, true));
@@ -248,9 +247,7 @@ public class ComputerConfigHistoryAction extends JobConfigHistoryBaseAction {
         ArrayList<ConfigInfo> configs = new ArrayList<>();
         for (final HistoryDescr historyDescr : historyDescrs.subList(from, to)) {
             final String timestamp = historyDescr.getTimestamp();
-            final XmlFile oldRevision = getHistoryDao().getOldRevision(agent,
-                    timestamp);
-            if (oldRevision.getFile() != null) {
+            if (getHistoryDao().hasOldRevision(agent, timestamp)) {
                 configs.add(ConfigInfo.create(agent.getNodeName(), true,
                         historyDescr, true));
             } else if ("Deleted".equals(historyDescr.getOperation())) {
@@ -417,14 +414,20 @@ public class ComputerConfigHistoryAction extends JobConfigHistoryBaseAction {
         checkConfigurePermission();
         final String timestamp = getRequestParameter("timestamp");
         final XmlFile xmlFile = getOldConfigXml(timestamp);
-        return xmlFile.asString();
+        return RevisionFiles.asString(xmlFile);
     }
 
     public final List<Line> getLines(boolean hideVersionDiffs) throws IOException {
+        final XmlFile[] configs = getComparedConfigs();
+        return getLines(configs[0], configs[1], hideVersionDiffs);
+    }
+
+    @Override
+    protected final XmlFile[] getComparedConfigs() {
         checkConfigurePermission();
         final String timestamp1 = getRequestParameter("timestamp1");
         final String timestamp2 = getRequestParameter("timestamp2");
-        return getLines(getOldConfigXml(timestamp1), getOldConfigXml(timestamp2), hideVersionDiffs);
+        return new XmlFile[]{getOldConfigXml(timestamp1), getOldConfigXml(timestamp2)};
     }
 
     public XmlSyntaxChecker.Answer checkXmlSyntax(String timestamp) {
@@ -461,7 +464,10 @@ public class ComputerConfigHistoryAction extends JobConfigHistoryBaseAction {
         final String timestamp = req.getParameter("timestamp");
 
         final XmlFile xmlFile = getHistoryDao().getOldRevision(agent, timestamp);
-        final Slave newAgent = (Slave) Jenkins.XSTREAM2.fromXML(xmlFile.getFile());
+        final Slave newAgent;
+        try (Reader reader = RevisionFiles.newReader(xmlFile)) {
+            newAgent = (Slave) Jenkins.XSTREAM2.fromXML(reader);
+        }
         final List<Node> nodes = new ArrayList<>(Jenkins.get().getNodes());
         nodes.remove(agent);
         nodes.add(newAgent);
@@ -23,6 +23,7 @@
  */
 package hudson.plugins.jobConfigHistory;
 
+import hudson.Util;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 
@@ -47,9 +48,22 @@ public class ConfigInfo implements ParsedDate {
     private final String userID;
 
     /**
-     * The date of the change.
+     * The date of the change, as a key of {@link RevisionIds}, so large
+     * listings don't keep a string per entry.
      */
-    private final String date;
+    private final long date;
+
+    /**
+     * The date of the change if it is no revision identifier, null
+     * otherwise.
+     */
+    private final String unparsedDate;
+
+    /**
+     * The parsed date in milliseconds, {@link Long#MIN_VALUE} until it is
+     * parsed.
+     */
+    private long parsedTime = Long.MIN_VALUE;
 
     /**
      * Does the configuration exist?.
@@ -101,13 +115,15 @@ public class ConfigInfo implements ParsedDate {
                String oldName, String changeReasonComment) {
         this.job = job;
         this.configExists = configExists;
-        this.date = date;
-        this.user = user;
-        this.operation = operation;
-        this.userID = userID;
+        this.date = RevisionIds.toKey(date);
+        this.unparsedDate = this.date == RevisionIds.UNPARSEABLE ? date : null;
+        // few distinct values, shared by the entries of a listing
+        this.user = Util.intern(user);
+        this.operation = Util.intern(operation);
+        this.userID = Util.intern(userID);
         this.isJob = isJob;
-        this.currentName = currentName;
-        this.oldName = oldName;
+        this.currentName = Util.intern(currentName);
+        this.oldName = Util.intern(oldName);
         this.changeReasonComment = changeReasonComment;
     }
 
@@ -157,7 +173,7 @@ public class ConfigInfo implements ParsedDate {
      */
     @Exported
     public String getDate() {
-        return date;
+        return date == RevisionIds.UNPARSEABLE ? unparsedDate : RevisionIds.toId(date);
     }
 
     /**
@@ -210,7 +226,7 @@ public class ConfigInfo implements ParsedDate {
 
     @Override
     public String toString() {
-        return operation + " on " + job + " @" + date;
+        return operation + " on " + job + " @" + getDate();
     }
 
     /**
@@ -220,7 +236,18 @@ public class ConfigInfo implements ParsedDate {
      */
     @Override
     public Date parsedDate() {
-        return PluginUtils.parsedDate(getDate());
+        return new Date(parsedTime());
+    }
+
+    @Override
+    public long parsedTime() {
+        long time = parsedTime;
+        if (time == Long.MIN_VALUE) {
+            time = date == RevisionIds.UNPARSEABLE ? PluginUtils.parsedTime(unparsedDate)
+                    : RevisionIds.toEpochMillis(date);
+            parsedTime = time;
+        }
+        return time;
     }
 
     /**
@@ -0,0 +1,241 @@
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Stores each distinct configuration only once.
+ * <p>
+ * The content of a revision is kept in a shared object store beneath
+ * {@link JobConfigHistoryConsts#OBJECTS_HISTORY_DIR}, named after its SHA-256
+ * digest. The {@literal config.xml} of the revision directory is a hard link
+ * to that object, so revisions still look exactly like the ones written by
+ * {@link FileHistoryDao} and everything reading them keeps working. Jobs
+ * generated from the same template share one object and one inode.
+ * <p>
+ * The link count of an object is its reference count. Deleting a revision
+ * drops a reference, {@link #collectGarbage()} removes objects which are only
+ * referenced by the store itself. On file systems without hard links the
+ * configuration is copied, as by {@link FileHistoryDao}.
+ */
+public class ContentAddressedHistoryDao extends FileHistoryDao {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(ContentAddressedHistoryDao.class.getName());
+
+    /**
+     * Attribute holding the number of hard links of a file.
+     */
+    private static final String LINK_COUNT_ATTRIBUTE = "unix:nlink";
+
+    /**
+     * Temporary files older than this are left overs of a crash.
+     */
+    private static final long STALE_TEMP_FILE_AGE = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Suffix of objects which are still being written.
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Base directory of the object store.
+     */
+    private final File objectsDir;
+
+    /**
+     * @param historyRootDir    where to store history
+     * @param jenkinsHome       JENKINS_HOME
+     * @param currentUser       of operation
+     * @param maxHistoryEntries max number of history entries
+     * @param saveDuplicates    should we save duplicate entries?
+     * @param writer            writes the history in the background, null to
+     *                          write it on the calling thread.
+     * @param snapshotInterval  every how many revisions one is stored in full,
+     *                          0 to store all of them in full.
+     * @param compressHistory   should configuration files be stored
+     *                          compressed?
+     */
+    ContentAddressedHistoryDao(final File historyRootDir, final File jenkinsHome,
+                               final MimickedUser currentUser, final int maxHistoryEntries,
+                               final boolean saveDuplicates, final AsyncHistoryWriter writer,
+                               final int snapshotInterval, final boolean compressHistory) {
+        super(historyRootDir, jenkinsHome, currentUser, maxHistoryEntries,
+                saveDuplicates, writer, snapshotInterval, compressHistory);
+        this.objectsDir = new File(historyRootDir,
+                JobConfigHistoryConsts.OBJECTS_HISTORY_DIR);
+    }
+
+    /**
+     * @param historyRootDir    where to store history
+     * @param jenkinsHome       JENKINS_HOME
+     * @param currentUser       of operation
+     * @param maxHistoryEntries max number of history entries
+     * @param saveDuplicates    should we save duplicate entries?
+     */
+    public ContentAddressedHistoryDao(final File historyRootDir, final File jenkinsHome,
+                                      final MimickedUser currentUser, final int maxHistoryEntries,
+                                      final boolean saveDuplicates) {
+        this(historyRootDir, jenkinsHome, currentUser, maxHistoryEntries,
+                saveDuplicates, null, 0, false);
+    }
+
+    /**
+     * Creates a view of an existing dao which records changes on behalf of
+     * another user.
+     *
+     * @param shared      the dao whose configuration is reused.
+     * @param currentUser of operation
+     */
+    private ContentAddressedHistoryDao(final ContentAddressedHistoryDao shared,
+                                       final MimickedUser currentUser) {
+        super(shared, currentUser);
+        this.objectsDir = shared.objectsDir;
+    }
+
+    @Override
+    public ContentAddressedHistoryDao withUser(final MimickedUser user) {
+        return new ContentAddressedHistoryDao(this, user);
+    }
+
+    /**
+     * @return whether the file system tells us the link count of a file.
+     */
+    static boolean isSupported() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+    }
+
+    /**
+     * Returns the object holding the content with the given digest.
+     *
+     * @param digest of the content.
+     * @return the object, which might not exist yet.
+     */
+    File getObject(final String digest) {
+        return getObject(digest, false);
+    }
+
+    /**
+     * Returns the object holding the content with the given digest.
+     *
+     * @param digest     of the uncompressed content.
+     * @param compressed whether the object holds the compressed content.
+     * @return the object, which might not exist yet.
+     */
+    File getObject(final String digest, final boolean compressed) {
+        return new File(new File(objectsDir, digest.substring(0, 2)),
+                compressed ? digest + RevisionFiles.COMPRESSED_SUFFIX : digest);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Links the configuration to the object with the same content, storing
+     * the object first if it is new. Falls back to a copy if linking fails.
+     */
+    @Override
+    protected void writeConfig(final File target, final byte[] content,
+                               final String digest) throws IOException {
+        if (!isSupported()) {
+            super.writeConfig(target, content, digest);
+            return;
+        }
+        final Path object = getObject(digest, RevisionFiles.isCompressed(target)).toPath();
+        try {
+            if (!Files.exists(object)) {
+                storeObject(object, content);
+            }
+            Files.createLink(target.toPath(), object);
+        } catch (IOException | UnsupportedOperationException e) {
+            // e.g. collected meanwhile or on another file store.
+            LOG.log(Level.FINE, "unable to link {0} to {1}, copying instead: {2}",
+                    new Object[]{target, object, e});
+            super.writeConfig(target, content, digest);
+        }
+    }
+
+    /**
+     * Writes a new object. The content goes to a temporary file first, so
+     * nobody links to a partially written object.
+     *
+     * @param object  to write.
+     * @param content of the object.
+     * @throws IOException if writing fails.
+     */
+    private static void storeObject(final Path object, final byte[] content)
+            throws IOException {
+        final Path dir = object.getParent();
+        Files.createDirectories(dir);
+        final Path temp = Files.createTempFile(dir,
+                object.getFileName().toString(), TEMP_SUFFIX);
+        try {
+            Files.write(temp, content);
+            Files.move(temp, object, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Deletes all objects which no revision links to anymore, as well as
+     * temporary files left over by a crash.
+     *
+     * @return the number of deleted files.
+     */
+    public int collectGarbage() {
+        if (!isSupported() || !objectsDir.isDirectory()) {
+            return 0;
+        }
+        final AtomicInteger deleted = new AtomicInteger();
+        try (Stream<Path> files = Files.walk(objectsDir.toPath(), 2)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                if (deleteIfUnreferenced(file)) {
+                    deleted.incrementAndGet();
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "unable to collect garbage in " + objectsDir, e);
+        }
+        LOG.log(Level.FINE, "deleted {0} unreferenced objects from {1}",
+                new Object[]{deleted.get(), objectsDir});
+        return deleted.get();
+    }
+
+    /**
+     * Deletes an object if no revision links to it.
+     *
+     * @param file in the object store.
+     * @return true if deleted.
+     */
+    private static boolean deleteIfUnreferenced(final Path file) {
+        try {
+            final boolean unreferenced;
+            if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                final FileTime modified = Files.getLastModifiedTime(file);
+                unreferenced = System.currentTimeMillis() - modified.toMillis() > STALE_TEMP_FILE_AGE;
+            } else {
+                unreferenced = ((Number) Files.getAttribute(file, LINK_COUNT_ATTRIBUTE)).intValue() <= 1;
+            }
+            // a revision linking to the object just now keeps its content,
+            // it only doesn't share it anymore.
+            return unreferenced && Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to check object {0}: {1}",
+                    new Object[]{file, e.getMessage()});
+            return false;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package hudson.plugins.jobConfigHistory;
+
+import hudson.plugins.jobConfigHistory.SideBySideView.Line;
+import jenkins.util.SystemProperties;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recently shown diffs, as the diff pages ask for the lines of the same diff
+ * several times, and reviewers open the same diffs again and again.
+ * <p>
+ * A diff is keyed by the path, size and modification time of both
+ * configurations, so diffs against a configuration which changed since,
+ * like the current one of an item, are computed again. The least recently
+ * used diffs are dropped once the text of the diffs kept exceeds
+ * {@link #MAX_CHARS} characters. The patch of a diff in JSON, see
+ * {@link DiffJson#patch}, and the sorted lines of the older configuration,
+ * whose unchanged lines the diff pages show on demand, are kept the same
+ * way. Each {@link FileHistoryDao}
+ * keeps its own, shared with its views for other users.
+ */
+final class DiffCache {
+
+    /**
+     * Number of characters of the diffs kept in memory.
+     */
+    static final long MAX_CHARS = SystemProperties.getLong(
+            DiffCache.class.getName() + ".maxChars", 4_000_000L);
+
+    /**
+     * Estimated characters taken by a line apart from its text.
+     */
+    private static final int LINE_OVERHEAD = 64;
+
+    /**
+     * A computed diff and its estimated size.
+     */
+    private static final class Diff {
+
+        private final List<Line> lines;
+        private final String patch;
+        private final String[] original;
+        private final long chars;
+
+        private Diff(List<Line> lines, String patch, String[] original, long chars) {
+            this.lines = lines;
+            this.patch = patch;
+            this.original = original;
+            this.chars = chars;
+        }
+    }
+
+    /**
+     * Prefix of the keys of patches in {@link #diffs}.
+     */
+    private static final String PATCH = "patch\0";
+
+    /**
+     * Prefix of the keys of the lines of older configurations in
+     * {@link #diffs}.
+     */
+    private static final String ORIGINAL = "original\0";
+
+    /**
+     * Diffs by key, least recently used first. Guarded by this.
+     */
+    private final Map<String, Diff> diffs = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Number of characters in {@link #diffs}.
+     */
+    private long size;
+
+    /**
+     * @param left             the left configuration, may be null.
+     * @param right            the right configuration, may be null.
+     * @param hideVersionDiffs whether plugin version changes are hidden.
+     * @return the key of the diff, null if a configuration is missing.
+     */
+    static String key(File left, File right, boolean hideVersionDiffs) {
+        if (left == null || right == null) {
+            return null;
+        }
+        final long leftModified = left.lastModified();
+        final long rightModified = right.lastModified();
+        if (leftModified == 0 || rightModified == 0) {
+            return null;
+        }
+        return left.getAbsolutePath() + '\0' + left.length() + '\0' + leftModified + '\0'
+                + right.getAbsolutePath() + '\0' + right.length() + '\0' + rightModified + '\0'
+                + hideVersionDiffs;
+    }
+
+    /**
+     * @param key of the diff.
+     * @return the lines of the diff, null if it is not kept.
+     */
+    synchronized List<Line> get(String key) {
+        final Diff diff = diffs.get(key);
+        return diff == null ? null : diff.lines;
+    }
+
+    /**
+     * Keeps a diff, unless it is too large.
+     *
+     * @param key   of the diff.
+     * @param lines of the diff.
+     * @return the lines, unmodifiable.
+     */
+    List<Line> put(String key, List<Line> lines) {
+        final List<Line> kept = Collections.unmodifiableList(lines);
+        long chars = 0;
+        for (Line line : lines) {
+            chars += LINE_OVERHEAD + length(line.getLeft().getText())
+                    + length(line.getRight().getText());
+        }
+        keep(key, new Diff(kept, null, null, chars));
+        return kept;
+    }
+
+    /**
+     * @param key of the diff.
+     * @return the patch of the diff in JSON, null if it is not kept.
+     */
+    synchronized String getPatch(String key) {
+        final Diff diff = diffs.get(PATCH + key);
+        return diff == null ? null : diff.patch;
+    }
+
+    /**
+     * Keeps the patch of a diff in JSON, unless it is too large.
+     *
+     * @param key   of the diff.
+     * @param patch of the diff in JSON.
+     * @return the patch.
+     */
+    String putPatch(String key, String patch) {
+        keep(PATCH + key, new Diff(null, patch, null, patch.length()));
+        return patch;
+    }
+
+    /**
+     * @param key of the diff.
+     * @return the sorted lines of the older configuration of the diff, null
+     * if they are not kept.
+     */
+    synchronized String[] getOriginal(String key) {
+        final Diff diff = diffs.get(ORIGINAL + key);
+        return diff == null ? null : diff.original;
+    }
+
+    /**
+     * Keeps the sorted lines of the older configuration of a diff, unless
+     * they are too large. Callers must not change them afterwards.
+     *
+     * @param key      of the diff.
+     * @param original lines of the older configuration.
+     */
+    void putOriginal(String key, String[] original) {
+        long chars = 0;
+        for (String line : original) {
+            chars += LINE_OVERHEAD + line.length();
+        }
+        keep(ORIGINAL + key, new Diff(null, null, original, chars));
+    }
+
+    private void keep(String key, Diff diff) {
+        if (diff.chars > MAX_CHARS) {
+            return;
+        }
+        synchronized (this) {
+            final Diff replaced = diffs.put(key, diff);
+            if (replaced != null) {
+                size -= replaced.chars;
+            }
+            size += diff.chars;
+            final Iterator<Diff> eldest = diffs.values().iterator();
+            while (size > MAX_CHARS) {
+                size -= eldest.next().chars;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
+    }
+}
@@ -0,0 +1,278 @@
+package hudson.plugins.jobConfigHistory;
+
+import com.github.difflib.patch.AbstractDelta;
+import com.github.difflib.patch.Patch;
+import hudson.plugins.jobConfigHistory.SideBySideView.Line;
+
+import java.util.List;
+
+/**
+ * The diff of two configurations in pages of JSON, so a diff page loads
+ * the lines the user scrolls to instead of all of them at once.
+ * <p>
+ * A page holds the lines of the side-by-side view from a given line on. A
+ * line skipping unchanged lines tells the range of the original file it
+ * stands for, whose lines a {@link #context(String[], int, int)} page
+ * holds, so the skipped lines are shown on demand.
+ * <p>
+ * A {@link #patch(List, Patch, DiffLimits)} holds the hunks of the unified
+ * diff of a patch instead, for the browser to build the side-by-side view.
+ */
+final class DiffJson {
+
+    /**
+     * Lines of a page if not asked for otherwise.
+     */
+    static final int DEFAULT_PAGE_LINES = 500;
+
+    /**
+     * Most lines of a page.
+     */
+    static final int MAX_PAGE_LINES = 5000;
+
+    /**
+     * A diff given up for its {@link DiffLimits}.
+     */
+    static final String OMITTED = "{\"omitted\":true}";
+
+    private DiffJson() {
+    }
+
+    /**
+     * @param lines of the diff.
+     * @param from  index of the first line of the page.
+     * @param count number of lines of the page.
+     * @return the page, with the total number of lines.
+     */
+    static String lines(List<Line> lines, int from, int count) {
+        final int start = clamp(from, 0, lines.size());
+        final int end = start + Math.min(clamp(count, 1, MAX_PAGE_LINES), lines.size() - start);
+        final StringBuilder json = new StringBuilder();
+        json.append("{\"total\":").append(lines.size())
+                .append(",\"from\":").append(start)
+                .append(",\"lines\":[");
+        for (int i = start; i < end; i++) {
+            if (i > start) {
+                json.append(',');
+            }
+            line(lines, i, json);
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * @param originalLines the lines of the original file.
+     * @param from          number of the first line, starting at 1.
+     * @param to            number of the last line.
+     * @return the lines from the first to the last one, at most
+     * {@link #MAX_PAGE_LINES}.
+     */
+    static String context(String[] originalLines, int from, int to) {
+        final int start = clamp(from, 1, originalLines.length + 1);
+        final int end = clamp(to, start - 1, Math.min(originalLines.length, start - 1 + MAX_PAGE_LINES));
+        final StringBuilder json = new StringBuilder();
+        json.append("{\"from\":").append(start).append(",\"lines\":[");
+        for (int number = start; number <= end; number++) {
+            if (number > start) {
+                json.append(',');
+            }
+            string(originalLines[number - 1], json);
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Returns the hunks of the unified diff of a patch, with
+     * {@link GetDiffLines#CONTEXT_SIZE} lines of context. A hunk holds the
+     * numbers of its first left and right line and its lines, each prefixed
+     * like in the unified diff: ' ' for context, '-' for a removed and '+'
+     * for an added line.
+     *
+     * @param originalLines the lines of the original file.
+     * @param patch         between the original and the revised file.
+     * @param limits        of the diff.
+     * @return the hunks.
+     * @throws DiffLimits.Exceeded if the diff took too long.
+     */
+    static String patch(List<String> originalLines, Patch<String> patch, DiffLimits limits) {
+        final int contextSize = GetDiffLines.CONTEXT_SIZE;
+        final StringBuilder json = new StringBuilder();
+        json.append("{\"hunks\":[");
+        String separator = "";
+        for (List<AbstractDelta<String>> group : GetDiffLines.groups(patch.getDeltas(), contextSize)) {
+            limits.check();
+            final AbstractDelta<String> first = group.get(0);
+            int line = Math.max(first.getSource().getPosition() - contextSize, 0);
+            json.append(separator).append("{\"left\":").append(line + 1)
+                    .append(",\"right\":").append(Math.max(first.getTarget().getPosition() - contextSize, 0) + 1)
+                    .append(",\"lines\":[");
+            String lineSeparator = "";
+            for (AbstractDelta<String> delta : group) {
+                for (; line < delta.getSource().getPosition(); line++) {
+                    json.append(lineSeparator);
+                    string(' ', originalLines.get(line), json);
+                    lineSeparator = ",";
+                }
+                for (String removed : delta.getSource().getLines()) {
+                    json.append(lineSeparator);
+                    string('-', removed, json);
+                    lineSeparator = ",";
+                }
+                for (String added : delta.getTarget().getLines()) {
+                    json.append(lineSeparator);
+                    string('+', added, json);
+                    lineSeparator = ",";
+                }
+                line = GetDiffLines.end(delta);
+            }
+            for (final int contextEnd = Math.min(line + contextSize, originalLines.size()); line < contextEnd; line++) {
+                json.append(lineSeparator);
+                string(' ', originalLines.get(line), json);
+                lineSeparator = ",";
+            }
+            json.append("]}");
+            separator = ",";
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * @param value      of a request parameter, may be null.
+     * @param defaultInt if the parameter is missing or not a number.
+     * @return the number.
+     */
+    static int parse(String value, int defaultInt) {
+        if (value == null) {
+            return defaultInt;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultInt;
+        }
+    }
+
+    private static void line(List<Line> lines, int index, StringBuilder json) {
+        final Line line = lines.get(index);
+        if (line.isOmitted()) {
+            json.append("{\"omitted\":true}");
+        } else if (line.isSkipping()) {
+            json.append("{\"skipping\":true");
+            final int[] skipped = skipped(lines, index);
+            if (skipped != null) {
+                json.append(",\"leftFrom\":").append(skipped[0])
+                        .append(",\"leftTo\":").append(skipped[1])
+                        .append(",\"rightFrom\":").append(skipped[2]);
+            }
+            json.append('}');
+        } else {
+            json.append("{\"tag\":");
+            string(String.valueOf(line.getTag()), json);
+            json.append(",\"left\":");
+            item(line.getLeft(), json);
+            json.append(",\"right\":");
+            item(line.getRight(), json);
+            json.append('}');
+        }
+    }
+
+    /**
+     * @param lines of the diff.
+     * @param index of a line skipping unchanged lines.
+     * @return the numbers of the first and the last skipped left line and of
+     * the first skipped right line, null if they are not known.
+     */
+    static int[] skipped(List<Line> lines, int index) {
+        // between the last line before and the first line after
+        final int[] before = lineNumbers(lines, index, -1);
+        final int[] after = lineNumbers(lines, index, 1);
+        return before == null || after == null ? null
+                : new int[]{before[0] + 1, after[0] - 1, before[1] + 1};
+    }
+
+    /**
+     * @return the left and right line numbers of the nearest line shown on
+     * both sides in the direction, null if there is none.
+     */
+    private static int[] lineNumbers(List<Line> lines, int index, int direction) {
+        for (int i = index + direction; i >= 0 && i < lines.size(); i += direction) {
+            final Line line = lines.get(i);
+            final Integer left = line.getLeft().getNumber();
+            final Integer right = line.getRight().getNumber();
+            if (left != null && right != null) {
+                return new int[]{left, right};
+            }
+        }
+        return null;
+    }
+
+    private static void item(Line.Item item, StringBuilder json) {
+        json.append('{');
+        String separator = "";
+        if (item.getNumber() != null) {
+            json.append("\"number\":").append(item.getNumber());
+            separator = ",";
+        }
+        if (item.getText() != null) {
+            json.append(separator).append("\"text\":");
+            string(item.getText(), json);
+            separator = ",";
+        }
+        if (item.getCssClass() != null) {
+            json.append(separator).append("\"cssClass\":");
+            string(item.getCssClass(), json);
+        }
+        json.append('}');
+    }
+
+    /**
+     * Appends a JSON string.
+     */
+    static void string(String text, StringBuilder json) {
+        json.append('"');
+        escape(text, json);
+        json.append('"');
+    }
+
+    /**
+     * Appends a JSON string of a text after a prefix.
+     */
+    private static void string(char prefix, String text, StringBuilder json) {
+        json.append('"').append(prefix);
+        escape(text, json);
+        json.append('"');
+    }
+
+    private static void escape(String text, StringBuilder json) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < ' ') {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(value, max));
+    }
+}
@@ -0,0 +1,222 @@
+package hudson.plugins.jobConfigHistory;
+
+import com.github.difflib.algorithm.DiffAlgorithmListener;
+import jenkins.util.SystemProperties;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits of computing a diff, so two huge or wildly different
+ * configurations don't keep a request thread busy for minutes.
+ * <p>
+ * A configuration longer than {@link #MAX_CHARS} characters is not read,
+ * and a diff taking longer than {@link #MAX_MILLIS} milliseconds or whose
+ * thread is interrupted is given up. Non-positive values disable a limit.
+ * How often each limit was hit is counted, and the count is part of the
+ * message of the {@link Exceeded} thrown, so the logs tell when a limit is
+ * worth raising.
+ */
+final class DiffLimits {
+
+    /**
+     * Number of characters of a configuration to compare.
+     */
+    static final long MAX_CHARS = SystemProperties.getLong(
+            Limit.SIZE.getProperty(), 20_000_000L);
+
+    /**
+     * Milliseconds a diff may take.
+     */
+    static final long MAX_MILLIS = SystemProperties.getLong(
+            Limit.TIME.getProperty(), 10_000L);
+
+    /**
+     * The reasons a diff is given up.
+     */
+    enum Limit {
+        /**
+         * A configuration is too large.
+         */
+        SIZE(".maxChars"),
+        /**
+         * The diff took too long.
+         */
+        TIME(".maxMillis"),
+        /**
+         * The thread computing the diff was interrupted.
+         */
+        CANCELLED(null);
+
+        private final String property;
+
+        Limit(String property) {
+            this.property = property;
+        }
+
+        /**
+         * @return the system property setting the limit, null if there is
+         * none.
+         */
+        String getProperty() {
+            return property == null ? null : DiffLimits.class.getName() + property;
+        }
+    }
+
+    /**
+     * Thrown when a diff is given up.
+     */
+    static final class Exceeded extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Limit limit;
+
+        private Exceeded(Limit limit, long count) {
+            super("diff limit exceeded: " + limit + ", " + count + " times since startup"
+                    + (limit.getProperty() == null ? "" : ", see " + limit.getProperty()),
+                    null, false, false);
+            this.limit = limit;
+        }
+
+        /**
+         * @return the limit which was hit.
+         */
+        Limit getLimit() {
+            return limit;
+        }
+    }
+
+    /**
+     * Number of diffs given up, by limit.
+     */
+    private static final Map<Limit, AtomicLong> EXCEEDED = new EnumMap<>(Limit.class);
+
+    static {
+        for (Limit limit : Limit.values()) {
+            EXCEEDED.put(limit, new AtomicLong());
+        }
+    }
+
+    /**
+     * When the diff is given up, in {@link System#nanoTime()}.
+     */
+    private final long deadline;
+
+    /**
+     * Starts the time of a diff.
+     */
+    DiffLimits() {
+        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_MILLIS);
+    }
+
+    /**
+     * Reads a configuration to compare.
+     *
+     * @param reader of the configuration.
+     * @return the configuration.
+     * @throws IOException if the configuration could not be read.
+     * @throws Exceeded    if the configuration is too large.
+     */
+    static String read(Reader reader) throws IOException {
+        final StringBuilder content = new StringBuilder();
+        final char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            content.append(buffer, 0, read);
+            if (MAX_CHARS > 0 && content.length() > MAX_CHARS) {
+                throw exceeded(Limit.SIZE);
+            }
+        }
+        return content.toString();
+    }
+
+    /**
+     * @throws Exceeded if the diff took too long or its thread is
+     *                  interrupted.
+     */
+    void check() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw exceeded(Limit.CANCELLED);
+        }
+        if (MAX_MILLIS > 0 && System.nanoTime() - deadline > 0) {
+            throw exceeded(Limit.TIME);
+        }
+    }
+
+    /**
+     * @return a listener which {@link #check() checks} the limits on every
+     * step of a diff algorithm.
+     */
+    DiffAlgorithmListener listener() {
+        return new DiffAlgorithmListener() {
+            @Override
+            public void diffStart() {
+                check();
+            }
+
+            @Override
+            public void diffStep(int value, int max) {
+                check();
+            }
+
+            @Override
+            public void diffEnd() {
+            }
+        };
+    }
+
+    /**
+     * @param target to write to.
+     * @return a writer which {@link #check() checks} the limits on every
+     * write, e.g. of a stylesheet sorting a configuration.
+     */
+    Writer writer(Writer target) {
+        return new FilterWriter(target) {
+            @Override
+            public void write(int c) throws IOException {
+                check();
+                super.write(c);
+            }
+
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                check();
+                super.write(buffer, offset, length);
+            }
+
+            @Override
+            public void write(String text, int offset, int length) throws IOException {
+                check();
+                super.write(text, offset, length);
+            }
+        };
+    }
+
+    /**
+     * @param limit a limit.
+     * @return how often diffs were given up because of the limit.
+     */
+    static long getExceeded(Limit limit) {
+        return EXCEEDED.get(limit).get();
+    }
+
+    /**
+     * For tests.
+     */
+    static void clear() {
+        for (AtomicLong count : EXCEEDED.values()) {
+            count.set(0);
+        }
+    }
+
+    private static Exceeded exceeded(Limit limit) {
+        return new Exceeded(limit, EXCEEDED.get(limit).incrementAndGet());
+    }
+}
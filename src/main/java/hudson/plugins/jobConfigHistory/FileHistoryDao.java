@@ -26,6 +26,7 @@ package hudson.plugins.jobConfigHistory;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Functions;
+import hudson.Util;
 import hudson.XmlFile;
 import hudson.maven.MavenModule;
 import hudson.model.AbstractItem;
@@ -34,6 +35,8 @@ import hudson.model.Node;
 import jenkins.model.Jenkins;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest2;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileFilter;
@@ -41,24 +44,30 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 import static java.util.logging.Level.FINEST;
 import static java.util.logging.Level.WARNING;
@@ -81,9 +90,14 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
             .getLogger(FileHistoryDao.class.getName());
 
     /**
-     * milliseconds between attempts to save a new entry.
+     * Names of stored configuration files, see {@link #getConfigFile(File)}.
      */
-    private static final int CLASH_SLEEP_TIME = 500;
+    private static final Pattern CONFIG_FILE_NAME = Pattern.compile(".*\\.xml(\\.gz)?$");
+
+    /**
+     * Algorithm of the digest stored with each revision.
+     */
+    private static final String DIGEST_ALGORITHM = "SHA-256";
 
     /**
      * Base location for all files.
@@ -110,6 +124,56 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      */
     private final boolean saveDuplicates;
 
+    /**
+     * Digest of the newest revision per history directory of an item, shared
+     * by all views of this dao, see {@link #withUser(MimickedUser)}.
+     */
+    private final ConcurrentMap<File, RevisionDigest> lastRevisionDigests;
+
+    /**
+     * Revisions of recently shown items, shared by all views of this dao.
+     */
+    private final RevisionIndexes revisionIndexes;
+
+    /**
+     * Times of the revisions of recently built jobs, shared by all views of
+     * this dao.
+     */
+    private final ChangeIndex.Indices changeIndexes;
+
+    /**
+     * Number of revisions in the history, shared by all views of this dao,
+     * null without a history root.
+     */
+    private final RevisionCounts revisionCounts;
+
+    /**
+     * Index of the overview, shared by all views of this dao, null without a
+     * history root.
+     */
+    private final RevisionTimeline timeline;
+
+    /**
+     * Recently shown diffs, shared by all views of this dao.
+     */
+    private final DiffCache diffCache;
+
+    /**
+     * Writes the history in the background, null to write it right away.
+     */
+    private final AsyncHistoryWriter writer;
+
+    /**
+     * Every how many revisions one is stored in full, the others are stored as
+     * deltas, see {@link RevisionDeltas}. 0 or 1 stores all revisions in full.
+     */
+    private final int snapshotInterval;
+
+    /**
+     * Should configuration files be stored compressed?
+     */
+    private final boolean compressHistory;
+
     public FileHistoryDao() {
         this(null, null, null, 0, false);
     }
@@ -124,11 +188,125 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     public FileHistoryDao(final File historyRootDir, final File jenkinsHome,
                           final MimickedUser currentUser, final int maxHistoryEntries,
                           final boolean saveDuplicates) {
+        this(historyRootDir, jenkinsHome, currentUser, maxHistoryEntries,
+                saveDuplicates, null);
+    }
+
+    /**
+     * @param historyRootDir    where to store history
+     * @param jenkinsHome       JENKINS_HOME
+     * @param currentUser       of operation
+     * @param maxHistoryEntries max number of history entries
+     * @param saveDuplicates    should we save duplicate entries?
+     * @param writer            writes the history in the background, null to
+     *                          write it on the calling thread.
+     */
+    FileHistoryDao(final File historyRootDir, final File jenkinsHome,
+                   final MimickedUser currentUser, final int maxHistoryEntries,
+                   final boolean saveDuplicates, final AsyncHistoryWriter writer) {
+        this(historyRootDir, jenkinsHome, currentUser, maxHistoryEntries,
+                saveDuplicates, writer, 0, false);
+    }
+
+    /**
+     * @param historyRootDir    where to store history
+     * @param jenkinsHome       JENKINS_HOME
+     * @param currentUser       of operation
+     * @param maxHistoryEntries max number of history entries
+     * @param saveDuplicates    should we save duplicate entries?
+     * @param writer            writes the history in the background, null to
+     *                          write it on the calling thread.
+     * @param snapshotInterval  every how many revisions one is stored in full,
+     *                          0 to store all of them in full.
+     * @param compressHistory   should configuration files be stored
+     *                          compressed?
+     */
+    FileHistoryDao(final File historyRootDir, final File jenkinsHome,
+                   final MimickedUser currentUser, final int maxHistoryEntries,
+                   final boolean saveDuplicates, final AsyncHistoryWriter writer,
+                   final int snapshotInterval, final boolean compressHistory) {
         this.historyRootDir = historyRootDir;
         this.jenkinsHome = jenkinsHome;
         this.currentUser = currentUser;
         this.maxHistoryEntries = maxHistoryEntries;
         this.saveDuplicates = saveDuplicates;
+        this.lastRevisionDigests = new ConcurrentHashMap<>();
+        this.revisionIndexes = new RevisionIndexes();
+        this.changeIndexes = new ChangeIndex.Indices();
+        this.revisionCounts = historyRootDir == null ? null : new RevisionCounts(historyRootDir);
+        this.timeline = historyRootDir == null ? null : new RevisionTimeline(historyRootDir);
+        this.diffCache = new DiffCache();
+        this.writer = writer;
+        this.snapshotInterval = snapshotInterval;
+        this.compressHistory = compressHistory;
+    }
+
+    /**
+     * Creates a view of an existing dao which records changes on behalf of
+     * another user.
+     *
+     * @param shared      the dao whose configuration is reused.
+     * @param currentUser of operation
+     */
+    protected FileHistoryDao(final FileHistoryDao shared,
+                             final MimickedUser currentUser) {
+        this.historyRootDir = shared.historyRootDir;
+        this.jenkinsHome = shared.jenkinsHome;
+        this.currentUser = currentUser;
+        this.maxHistoryEntries = shared.maxHistoryEntries;
+        this.saveDuplicates = shared.saveDuplicates;
+        this.lastRevisionDigests = shared.lastRevisionDigests;
+        this.revisionIndexes = shared.revisionIndexes;
+        this.changeIndexes = shared.changeIndexes;
+        this.revisionCounts = shared.revisionCounts;
+        this.timeline = shared.timeline;
+        this.diffCache = shared.diffCache;
+        this.writer = shared.writer;
+        this.snapshotInterval = shared.snapshotInterval;
+        this.compressHistory = shared.compressHistory;
+    }
+
+    /**
+     * Waits until history handed to the background writer is written.
+     */
+    void awaitPendingWrites() {
+        if (writer != null) {
+            try {
+                if (!writer.flush(AsyncHistoryWriter.FLUSH_TIMEOUT, TimeUnit.SECONDS)) {
+                    LOG.log(WARNING, "history writer did not catch up within {0}s",
+                            AsyncHistoryWriter.FLUSH_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Runs a task writing history, either right away or, if configured, in
+     * the background. Background tasks must only use data captured before,
+     * as the saved object may have changed again until they run.
+     *
+     * @param task writing history.
+     */
+    private void write(final Runnable task) {
+        if (writer == null) {
+            task.run();
+        } else {
+            writer.submit(task);
+        }
+    }
+
+    /**
+     * Returns a dao which records changes on behalf of the given user. The
+     * returned instance shares everything else with this one, so creating it
+     * per request is cheap.
+     *
+     * @param user the user to record changes for, may be null.
+     * @return dao bound to the given user.
+     */
+    public FileHistoryDao withUser(final MimickedUser user) {
+        return new FileHistoryDao(this, user);
     }
 
     /**
@@ -165,35 +343,55 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     }
 
     /**
-     * Creates the new history dir, loops until "enough" time has passed if two
-     * events are too near.
+     * Returns the hex encoded digest which is stored with each revision.
+     *
+     * @param content of the configuration file.
+     * @return the digest.
+     */
+    static String computeDigest(final byte[] content) {
+        try {
+            return Util.toHexString(
+                    MessageDigest.getInstance(DIGEST_ALGORITHM).digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(DIGEST_ALGORITHM + " not available", e);
+        }
+    }
+
+    /**
+     * Creates the new history dir. The directory is named after the second of
+     * the event. If two events happen within the same second, the later one
+     * gets the milliseconds appended, e.g. {@literal 2013-01-18_17-33-51_042},
+     * which still sorts after the first one. If that name is taken as well, the
+     * timestamp is moved forward one millisecond at a time, so we never have to
+     * wait.
      *
      * @param itemHistoryDir  the basedir for history items.
-     * @param timestampHolder of the event.
+     * @param timestampHolder of the event. If it already holds a time, that is
+     *                        when the event happened, otherwise it's now.
      * @return new directory.
      */
-    @SuppressWarnings("SleepWhileInLoop")
     static File createNewHistoryDir(final File itemHistoryDir,
                                     final AtomicReference<Calendar> timestampHolder) throws IOException {
-        Calendar timestamp;
+        final Calendar timestamp = timestampHolder.get() != null
+                ? (Calendar) timestampHolder.get().clone()
+                : new GregorianCalendar();
         File f;
         while (true) {
-            timestamp = new GregorianCalendar();
-            f = new File(itemHistoryDir,
-                    getIdFormatter().format(timestamp.getTime()));
-
-            if (f.isDirectory()) {
-                LOG.log(Level.FINE, "clash on {0}, will wait a moment", f);
-                try {
-                    Thread.sleep(CLASH_SLEEP_TIME);
-                } catch (InterruptedException x) {
-                    throw new RuntimeException(x);
-                }
-            } else {
-                timestampHolder.set(timestamp);
+            final String secondsId = getIdFormatter().format(timestamp.getTime());
+            f = new File(itemHistoryDir, secondsId);
+            if (!f.isDirectory()) {
+                break;
+            }
+            f = new File(itemHistoryDir, String.format("%s%s%03d", secondsId,
+                    JobConfigHistoryConsts.ID_MILLIS_SEPARATOR,
+                    timestamp.get(Calendar.MILLISECOND)));
+            if (!f.isDirectory()) {
                 break;
             }
+            LOG.log(Level.FINE, "clash on {0}, trying the next millisecond", f);
+            timestamp.add(Calendar.MILLISECOND, 1);
         }
+        timestampHolder.set(timestamp);
 
         //determine write permission for not-yet-existing f.
         final File jenkinsRootDir = Jenkins.get().getRootDir();
@@ -229,8 +427,9 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
 
     /**
      * Returns the configuration data file stored in the specified history
-     * directory. It looks for a file with an 'xml' extension that is not named
-     * {@link JobConfigHistoryConsts#HISTORY_FILE}.
+     * directory. It looks for a file with an 'xml' extension, or 'xml.gz' if
+     * compressed, that is not named {@link JobConfigHistoryConsts#HISTORY_FILE}.
+     * Use {@link RevisionFiles} to read it.
      * <p>
      * Relies on the assumption that random '.xml' files will not appear in the
      * history directories.
@@ -244,6 +443,22 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     public static File getConfigFile(final File historyDir) {
         File configFile = null;
         if (HistoryFileFilter.accepts(historyDir)) {
+            final RevisionManifest.Entry entry = RevisionManifest.get(historyDir);
+            if (entry != null) {
+                final File recorded = new File(historyDir, entry.configName);
+                if (recorded.exists()) {
+                    return recorded;
+                }
+                final String configName = RevisionFiles.getConfigName(recorded);
+                if (new File(historyDir, configName + RevisionDeltas.DELTA_SUFFIX).exists()) {
+                    return null;
+                }
+                // e.g. restored uncompressed before its base was deleted
+                final File uncompressed = new File(historyDir, configName);
+                if (uncompressed.exists()) {
+                    return uncompressed;
+                }
+            }
             // get the *.xml file that is not the
             // JobConfigHistoryConsts.HISTORY_FILE
             // assumes random .xml files won't appear in the history directory
@@ -252,7 +467,7 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
                 for (final File file : listing) {
                     if (!file.getName()
                             .equals(JobConfigHistoryConsts.HISTORY_FILE)
-                            && file.getName().matches(".*\\.xml$")) {
+                            && CONFIG_FILE_NAME.matcher(file.getName()).matches()) {
                         configFile = file;
                     }
                 }
@@ -292,19 +507,54 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     void createHistoryXmlFile(final Calendar timestamp,
                               final File timestampedDir, final String operation,
                               final String newName, String oldName, String changeReasonComment) throws IOException {
+        createHistoryXmlFile(timestamp, timestampedDir, operation, newName,
+                oldName, changeReasonComment, null);
+    }
+
+    /**
+     * Creates the historical description for this action.
+     *
+     * @param timestamp      when the action did happen.
+     * @param timestampedDir the directory where to save the history.
+     * @param operation      description of operation.
+     * @param configDigest   digest of the saved configuration, may be null.
+     * @throws IOException if writing the history fails.
+     */
+    private void createHistoryXmlFile(final Calendar timestamp,
+                                      final File timestampedDir, final String operation,
+                                      final String newName, String oldName, String changeReasonComment,
+                                      final String configDigest) throws IOException {
         oldName = ((oldName == null) ? "" : oldName);
 
         // Mimicking User.getUnknown() that can not be instantiated here as a lot of tests are run without Jenkins
         final String user = currentUser != null ? currentUser.getFullName() : JobConfigHistoryConsts.UNKNOWN_USER_NAME;
         final String userId = currentUser != null ? currentUser.getId() : JobConfigHistoryConsts.UNKNOWN_USER_ID;
 
+        // the directory name has a millisecond suffix after a clash, see
+        // createNewHistoryDir, and the timestamp has to match it.
+        final String formattedTimestamp = getIdFormatter().format(timestamp.getTime());
+        final String dirName = timestampedDir.getName();
+        final String identifier = dirName.startsWith(formattedTimestamp) ? dirName : formattedTimestamp;
         final XmlFile historyDescription = getHistoryXmlFile(timestampedDir);
         final HistoryDescr myDescr =
-                new HistoryDescr(user, userId, operation, getIdFormatter().format(timestamp.getTime()),
+                new HistoryDescr(user, userId, operation, identifier,
                         (newName == null) ? "" : newName,
                         (newName == null) ? "" : ((newName.equals(oldName)) ? "" : oldName),
-                        changeReasonComment);
-        historyDescription.write(myDescr);
+                        changeReasonComment, configDigest);
+        if (historyRootDir == null) {
+            HistoryDescrCodec.write(historyDescription, myDescr);
+            revisionIndexes.invalidate(timestampedDir.getParentFile());
+            changeIndexes.added(timestampedDir);
+            return;
+        }
+        synchronized (revisionCounts) {
+            // the revision is counted once its history.xml exists
+            HistoryDescrCodec.write(historyDescription, myDescr);
+            revisionCounts.added(timestampedDir);
+        }
+        revisionIndexes.invalidate(timestampedDir.getParentFile());
+        changeIndexes.added(timestampedDir);
+        timeline.added(timestampedDir, myDescr);
     }
 
     /**
@@ -321,58 +571,167 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     @Override
     public void createNewItem(final Item item) {
         final AbstractItem aItem = (AbstractItem) item;
-        createNewHistoryEntryAndCopyConfig(aItem.getConfigFile(),
-                Messages.ConfigHistoryListenerHelper_CREATED(), null, null, Optional.empty());
+        final XmlFile configFile = aItem.getConfigFile();
+        final byte[] content = readConfig(configFile);
+        final Calendar timestamp = new GregorianCalendar();
+        final String operation = Messages.ConfigHistoryListenerHelper_CREATED();
+        write(() -> createNewHistoryEntryAndWriteConfig(configFile, content,
+                computeDigest(content), timestamp, operation, null, null,
+                Optional.empty()));
     }
 
     /**
-     * Creates a new history entry and copies the old config.xml to a
-     * timestamped dir.
+     * Creates a new history entry and writes the already read content of the
+     * config.xml to the timestamped dir. The digest goes to the history.xml
+     * and is remembered as the digest of the newest revision.
      *
-     * @param configFile to copy.
+     * @param configFile the file the content was read from.
+     * @param content    of the configuration file.
+     * @param digest     of the content.
+     * @param timestamp  when the change happened.
      * @param operation  operation
      */
-    private void createNewHistoryEntryAndCopyConfig(final XmlFile configFile,
-                                                    final String operation, final String newName,
-                                                    final String oldName, final Optional<String> changeReasonCommentOptional) {
+    private void createNewHistoryEntryAndWriteConfig(final XmlFile configFile,
+                                                     final byte[] content, final String digest,
+                                                     final Calendar timestamp,
+                                                     final String operation, final String newName,
+                                                     final String oldName, final Optional<String> changeReasonCommentOptional) {
         final File timestampedDir = createNewHistoryEntry(configFile, operation,
-                newName, oldName, changeReasonCommentOptional.orElse(null));
+                newName, oldName, changeReasonCommentOptional.orElse(null), digest, timestamp);
         try {
-            copyConfigFile(configFile.getFile(), timestampedDir);
+            writeRevisionConfig(timestampedDir, configFile.getFile().getName(),
+                    content, digest);
         } catch (IOException ex) {
             throw new RuntimeException("Unable to copy " + configFile, ex);
         }
+        compactPreviousRevision(timestampedDir, content);
+        rememberRevisionDigest(timestampedDir, digest);
+    }
+
+    /**
+     * Writes the configuration of a new revision, compressed if configured.
+     *
+     * @param timestampedDir the directory of the new revision.
+     * @param name           of the configuration file.
+     * @param content        of the configuration.
+     * @param digest         of the content.
+     * @throws IOException if writing fails.
+     */
+    private void writeRevisionConfig(final File timestampedDir, final String name,
+                                     final byte[] content, final String digest) throws IOException {
+        final File target;
+        if (compressHistory) {
+            target = new File(timestampedDir, name + RevisionFiles.COMPRESSED_SUFFIX);
+            writeConfig(target, RevisionFiles.compress(content), digest);
+        } else {
+            target = new File(timestampedDir, name);
+            writeConfig(target, content, digest);
+        }
+        RevisionManifest.added(timestampedDir, target, digest);
+    }
+
+    /**
+     * Writes the configuration of a new revision.
+     *
+     * @param target  the configuration file in the revision directory.
+     * @param content of the configuration.
+     * @param digest  of the content.
+     * @throws IOException if writing fails.
+     */
+    protected void writeConfig(final File target, final byte[] content,
+                               final String digest) throws IOException {
+        Files.write(target.toPath(), content);
+    }
+
+    /**
+     * Stores the revision before a newly written one as delta, if configured.
+     *
+     * @param timestampedDir the directory of the new revision.
+     * @param content        of the new revision's configuration.
+     */
+    private void compactPreviousRevision(final File timestampedDir,
+                                         final byte[] content) {
+        if (snapshotInterval > 1) {
+            RevisionDeltas.compact(timestampedDir, content, snapshotInterval);
+        }
+    }
+
+    /**
+     * Returns the configuration file of a revision, like
+     * {@link #getConfigFile(File)}, reconstructing it if the revision is
+     * stored as delta and returning its virtual file if it is packed.
+     *
+     * @param historyDir The history directory to look under.
+     * @return The configuration file or null if no file is found.
+     */
+    File getRevisionConfigFile(final File historyDir) {
+        final File configFile = getConfigFile(historyDir);
+        if (configFile != null) {
+            return configFile;
+        }
+        if (HistoryFileFilter.accepts(historyDir)) {
+            return RevisionDeltas.materialize(historyDir);
+        }
+        return historyDir.exists() ? null : RevisionPack.getConfigFile(historyDir);
+    }
+
+    /**
+     * Reads the whole configuration file, so that hashing and writing the
+     * copy use the same bytes.
+     *
+     * @param configFile to read.
+     * @return the content.
+     */
+    private static byte[] readConfig(final XmlFile configFile) {
+        try {
+            return Files.readAllBytes(configFile.getFile().toPath());
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to read " + configFile, ex);
+        }
     }
 
     @Override
     public void saveItem(final XmlFile file) {
         Optional<String> changeReasonCommentOptional = JobLocalConfiguration.lastChangeReasonComment(file);
 
-        if (checkDuplicate(file)) {
-            createNewHistoryEntryAndCopyConfig(file,
-                    Messages.ConfigHistoryListenerHelper_CHANGED(), null, null, changeReasonCommentOptional);
-        }
+        final byte[] content = readConfig(file);
+        final Calendar timestamp = new GregorianCalendar();
+        final String operation = Messages.ConfigHistoryListenerHelper_CHANGED();
+        write(() -> {
+            final String digest = computeDigest(content);
+            if (checkDuplicate(getHistoryDir(file.getFile()), digest, file)) {
+                createNewHistoryEntryAndWriteConfig(file, content, digest,
+                        timestamp, operation, null, null, changeReasonCommentOptional);
+            }
+        });
     }
 
     @Override
     public void deleteItem(final Item item) {
         final AbstractItem aItem = (AbstractItem) item;
-        createNewHistoryEntry(aItem.getConfigFile(),
-                Messages.ConfigHistoryListenerHelper_DELETED(), null, null, null);
-        final File configFile = aItem.getConfigFile().getFile();
-        final File currentHistoryDir = getHistoryDir(configFile);
-        final SimpleDateFormat buildDateFormat = new SimpleDateFormat(
-                "yyyyMMdd_HHmmss_SSS");
-        final String timestamp = buildDateFormat.format(new Date());
-        final String deletedHistoryName = item.getName()
-                + DeletedFileFilter.DELETED_MARKER + timestamp;
-        final File deletedHistoryDir = new File(
-                currentHistoryDir.getParentFile(), deletedHistoryName);
-        if (!currentHistoryDir.renameTo(deletedHistoryDir)) {
-            LOG.log(WARNING,
-                    "unable to rename deleted history dir to: {0}",
-                    deletedHistoryDir);
-        }
+        final XmlFile xmlFile = aItem.getConfigFile();
+        final String name = item.getName();
+        final Calendar now = new GregorianCalendar();
+        final String operation = Messages.ConfigHistoryListenerHelper_DELETED();
+        write(() -> {
+            createNewHistoryEntry(xmlFile, operation, null, null, null, null, now);
+            final File configFile = xmlFile.getFile();
+            final File currentHistoryDir = getHistoryDir(configFile);
+            final SimpleDateFormat buildDateFormat = new SimpleDateFormat(
+                    "yyyyMMdd_HHmmss_SSS");
+            final String timestamp = buildDateFormat.format(now.getTime());
+            final String deletedHistoryName = name
+                    + DeletedFileFilter.DELETED_MARKER + timestamp;
+            final File deletedHistoryDir = new File(
+                    currentHistoryDir.getParentFile(), deletedHistoryName);
+            if (!currentHistoryDir.renameTo(deletedHistoryDir)) {
+                LOG.log(WARNING,
+                        "unable to rename deleted history dir to: {0}",
+                        deletedHistoryDir);
+            } else {
+                recordMoved(currentHistoryDir, deletedHistoryDir);
+            }
+        });
     }
 
     private File getHistoryDir(Item item) {
@@ -381,42 +740,56 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
 
     @Override
     public void changeItemLocation(Item item, String oldFullName, String newFullName) {
-        final String onLocationChangedDescription = "old full name: " + oldFullName
-                + ", new full name: " + newFullName;
         if (historyRootDir != null) {
-            final String jobsStr;
             final File newHistoryDir = getHistoryDir(item);
-            if (Functions.isWindows()) {
-                //windows
-                jobsStr = "\\jobs\\";
-            } else {
-                jobsStr = "/jobs/";
-            }
-            final File oldHistoryDir = new File(newHistoryDir.getAbsolutePath()
-                    .replaceFirst(
-                            newFullName.replaceAll("/", jobsStr),
-                            oldFullName.replaceAll("/", jobsStr)
-                    )
-            );
-
-            if (oldHistoryDir.exists()) {
-                final FilePath newHistoryFilePath = new FilePath(newHistoryDir);
-                final FilePath oldHistoryFilePath = new FilePath(oldHistoryDir);
-                try {
-                    oldHistoryFilePath.copyRecursiveTo(newHistoryFilePath);
-                    oldHistoryFilePath.deleteRecursive();
-                    LOG.log(FINEST,
-                            "completed move of old history files on location change {0}{1}",
-                            onLocationChangedDescription);
-                } catch (IOException e) {
-                    final String ioExceptionStr = "unable to move old history on location change."
-                            + onLocationChangedDescription;
-                    LOG.log(Level.SEVERE, ioExceptionStr, e);
-                } catch (InterruptedException e) {
-                    final String irExceptionStr = "interrupted while moving old history on location change."
-                            + onLocationChangedDescription;
-                    LOG.log(WARNING, irExceptionStr, e);
-                }
+            write(() -> moveHistoryOnLocationChange(newHistoryDir, oldFullName, newFullName));
+        }
+    }
+
+    /**
+     * Moves the history of an item to its new location.
+     *
+     * @param newHistoryDir the history directory at the new location.
+     * @param oldFullName   old full name of the item.
+     * @param newFullName   new full name of the item.
+     */
+    private void moveHistoryOnLocationChange(final File newHistoryDir,
+                                             final String oldFullName, final String newFullName) {
+        final String onLocationChangedDescription = "old full name: " + oldFullName
+                + ", new full name: " + newFullName;
+        final String jobsStr;
+        if (Functions.isWindows()) {
+            //windows
+            jobsStr = "\\jobs\\";
+        } else {
+            jobsStr = "/jobs/";
+        }
+        final File oldHistoryDir = new File(newHistoryDir.getAbsolutePath()
+                .replaceFirst(
+                        newFullName.replaceAll("/", jobsStr),
+                        oldFullName.replaceAll("/", jobsStr)
+                )
+        );
+
+        if (oldHistoryDir.exists()) {
+            final FilePath newHistoryFilePath = new FilePath(newHistoryDir);
+            final FilePath oldHistoryFilePath = new FilePath(oldHistoryDir);
+            try {
+                oldHistoryFilePath.copyRecursiveTo(newHistoryFilePath);
+                oldHistoryFilePath.deleteRecursive();
+                forgetRevisionDigest(oldHistoryDir);
+                recordMoved(oldHistoryDir, newHistoryDir);
+                LOG.log(FINEST,
+                        "completed move of old history files on location change {0}{1}",
+                        onLocationChangedDescription);
+            } catch (IOException e) {
+                final String ioExceptionStr = "unable to move old history on location change."
+                        + onLocationChangedDescription;
+                LOG.log(Level.SEVERE, ioExceptionStr, e);
+            } catch (InterruptedException e) {
+                final String irExceptionStr = "interrupted while moving old history on location change."
+                        + onLocationChangedDescription;
+                LOG.log(WARNING, irExceptionStr, e);
             }
         }
     }
@@ -425,39 +798,57 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     public void renameItem(final Item item, final String oldName,
                            final String newName) {
         final AbstractItem aItem = (AbstractItem) item;
+        final XmlFile xmlFile = aItem.getConfigFile();
+        final byte[] content = readConfig(xmlFile);
+        final Calendar timestamp = new GregorianCalendar();
+        final String operation = Messages.ConfigHistoryListenerHelper_RENAMED();
+        write(() -> {
+            if (historyRootDir != null) {
+                moveHistoryOnRename(getHistoryDir(xmlFile.getFile()), oldName, newName);
+            }
+            createNewHistoryEntryAndWriteConfig(xmlFile, content,
+                    computeDigest(content), timestamp, operation, newName,
+                    oldName, Optional.empty());
+        });
+    }
+
+    /**
+     * Moves the history stored under the old name of an item to the history
+     * directory for its new name.
+     *
+     * @param currentHistoryDir the history directory for the new name.
+     * @param oldName           old name of the item.
+     * @param newName           new name of the item.
+     */
+    private void moveHistoryOnRename(final File currentHistoryDir,
+                                     final String oldName, final String newName) {
         final String onRenameDesc = " old name: " + oldName + ", new name: "
                 + newName;
-        if (historyRootDir != null) {
-            final File configFile = aItem.getConfigFile().getFile();
-            final File currentHistoryDir = getHistoryDir(configFile);
-            final File historyParentDir = currentHistoryDir.getParentFile();
-            final File oldHistoryDir = new File(historyParentDir, oldName);
-            if (oldHistoryDir.exists()) {
-                final FilePath fp = new FilePath(oldHistoryDir);
-                // catch all exceptions so Jenkins can continue with other
-                // rename
-                // tasks.
-                try {
-                    fp.copyRecursiveTo(new FilePath(currentHistoryDir));
-                    fp.deleteRecursive();
-                    LOG.log(FINEST,
-                            "completed move of old history files on rename.{0}",
-                            onRenameDesc);
-                } catch (IOException e) {
-                    final String ioExceptionStr = "unable to move old history on rename."
-                            + onRenameDesc;
-                    LOG.log(Level.SEVERE, ioExceptionStr, e);
-                } catch (InterruptedException e) {
-                    final String irExceptionStr = "interrupted while moving old history on rename."
-                            + onRenameDesc;
-                    LOG.log(WARNING, irExceptionStr, e);
-                }
+        final File historyParentDir = currentHistoryDir.getParentFile();
+        final File oldHistoryDir = new File(historyParentDir, oldName);
+        if (oldHistoryDir.exists()) {
+            final FilePath fp = new FilePath(oldHistoryDir);
+            // catch all exceptions so Jenkins can continue with other
+            // rename
+            // tasks.
+            try {
+                fp.copyRecursiveTo(new FilePath(currentHistoryDir));
+                fp.deleteRecursive();
+                forgetRevisionDigest(oldHistoryDir);
+                recordMoved(oldHistoryDir, currentHistoryDir);
+                LOG.log(FINEST,
+                        "completed move of old history files on rename.{0}",
+                        onRenameDesc);
+            } catch (IOException e) {
+                final String ioExceptionStr = "unable to move old history on rename."
+                        + onRenameDesc;
+                LOG.log(Level.SEVERE, ioExceptionStr, e);
+            } catch (InterruptedException e) {
+                final String irExceptionStr = "interrupted while moving old history on rename."
+                        + onRenameDesc;
+                LOG.log(WARNING, irExceptionStr, e);
             }
-
         }
-        createNewHistoryEntryAndCopyConfig(aItem.getConfigFile(),
-                Messages.ConfigHistoryListenerHelper_RENAMED(), newName,
-                oldName, Optional.empty());
     }
 
     @Override
@@ -475,11 +866,21 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      * Returns a sorted map of all revisions for this configFile.
      *
      * @param historiesDir to search.
-     * @param configFile   for exception
-     * @return sorted map
+     * @return unmodifiable sorted map
      */
     private SortedMap<String, HistoryDescr> getRevisionsFromHistoriesDir(
             final File historiesDir) {
+        return revisionIndexes.get(historiesDir, this::listRevisions);
+    }
+
+    /**
+     * Lists the revisions in a history directory, reading their history
+     * descriptions only on demand.
+     *
+     * @param historiesDir to search.
+     * @return sorted map
+     */
+    private SortedMap<String, HistoryDescr> listRevisions(final File historiesDir) {
         final File[] historyDirsOfItem = historiesDir
                 .listFiles(HistoryFileFilter.INSTANCE);
         final TreeMap<String, HistoryDescr> map = new TreeMap<>();
@@ -491,53 +892,66 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
                 map.put(historyDir.getName(), historyDescription);
             }
         }
+        for (String packed : RevisionPack.getEntries(historiesDir).keySet()) {
+            map.putIfAbsent(packed, new LazyHistoryDescr(new XmlFile(
+                    RevisionPack.getHistoryFile(new File(historiesDir, packed)))));
+        }
         return map;
     }
 
     @Override
     public int getRevisionAmount(XmlFile xmlFile) {
         final File configFile = xmlFile.getFile();
-        final File historiesDir = getHistoryDir(configFile);
-        final File[] historyDirsOfItem = historiesDir.listFiles(HistoryFileFilter.INSTANCE);
-        if (historyDirsOfItem == null) {
-            LOG.log(WARNING, "Error occurred while trying to calculate the current revision amount: {0}.listFiles(..) returned null.", historiesDir);
-        }
-        return historyDirsOfItem != null ? historyDirsOfItem.length : -1;
+        return getItemRevisionAmount(getHistoryDir(configFile));
     }
 
     @Override
     public int getRevisionAmount(Node node) {
-        final File historiesDir = getHistoryDirForNode(node);
-        final File[] historyDirsOfItem = historiesDir.listFiles(HistoryFileFilter.INSTANCE);
-        if (historyDirsOfItem == null) {
+        return getItemRevisionAmount(getHistoryDirForNode(node));
+    }
+
+    private int getItemRevisionAmount(File historiesDir) {
+        final int amount = revisionCounts.getItemAmount(historiesDir);
+        if (amount < 0) {
             LOG.log(WARNING, "Error occurred while trying to calculate the current revision amount: {0}.listFiles(..) returned null.", historiesDir);
         }
-        return historyDirsOfItem != null ? historyDirsOfItem.length : -1;
+        return amount;
     }
 
     @Override
     public int getSystemRevisionAmount(String sysConfigName) {
-        return getSystemHistory(sysConfigName).size();
+        final File systemSubFolder = new File(historyRootDir, sysConfigName);
+        if (!fileIsContainedInDirectory(systemSubFolder, historyRootDir)) {
+            return 0;
+        }
+        return Math.max(0, revisionCounts.getItemAmount(systemSubFolder));
     }
 
     @Override
     public int getSystemRevisionAmount() {
-        return countSubDirs(getSystemConfigs());
+        return revisionCounts.getSystemAmount(this);
     }
 
     @Override
     public int getJobRevisionAmount() {
-        return countSubDirs(getJobs()) + getDeletedJobAmount();
+        return revisionCounts
+                .getJobAmount(this, JobConfigHistoryConsts.JOBS_HISTORY_DIR) + getDeletedJobAmount();
     }
 
     @Override
     public int getDeletedJobAmount() {
-        return getDeletedJobs().length;    //not counting subdirs since only one entry is to be displayed
+        //not counting subdirs since only one entry is to be displayed
+        return revisionCounts.getDeletedJobAmount(this);
     }
 
     @Override
     public int getJobRevisionAmount(String jobName) {
-        return getJobHistory(jobName).size();
+        final File jobHistoryRootDir = getJobHistoryRootDir();
+        final File jobNameSubFolder = new File(jobHistoryRootDir, jobName);
+        if (!fileIsContainedInDirectory(jobNameSubFolder, jobHistoryRootDir)) {
+            return 0;
+        }
+        return Math.max(0, revisionCounts.getItemAmount(jobNameSubFolder));
     }
 
     @Override
@@ -545,32 +959,50 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
         return getJobRevisionAmount() + getSystemRevisionAmount();
     }
 
-    private int countSubDirs(File[] files) {
-
-        boolean seen = false;
-        Integer acc = null;
-        for (File file : files) {
-            final File[] listFiles = file.listFiles(HistoryFileFilter.INSTANCE);
-            Integer length = listFiles != null ? listFiles.length : 0;
-            if (!seen) {
-                seen = true;
-                acc = length;
-            } else {
-                acc = acc + length;
-            }
-        }
-        return seen ? acc : 0;
+    @Override
+    public XmlFile getOldRevision(final AbstractItem item,
+                                  final String identifier) {
+        final File historyDir = getRevisionDir(item, identifier);
+        return new XmlFile(historyDir == null ? null : getRevisionConfigFile(historyDir));
     }
 
     @Override
-    public XmlFile getOldRevision(final AbstractItem item,
+    public boolean hasOldRevision(final AbstractItem item,
                                   final String identifier) {
+        final File historyDir = getRevisionDir(item, identifier);
+        return historyDir != null && hasRevisionConfig(historyDir);
+    }
+
+    /**
+     * Tells whether a revision holds a configuration, without reconstructing
+     * or unpacking it.
+     *
+     * @param historyDir the revision directory.
+     * @return true if {@link #getRevisionConfigFile(File)} would find one.
+     */
+    private boolean hasRevisionConfig(final File historyDir) {
+        if (getConfigFile(historyDir) != null) {
+            return true;
+        }
+        if (HistoryFileFilter.accepts(historyDir)) {
+            return RevisionDeltas.getDeltaFile(historyDir) != null;
+        }
+        return !historyDir.exists() && RevisionPack.getConfigFile(historyDir) != null;
+    }
+
+    /**
+     * @param item       the item.
+     * @param identifier of a revision.
+     * @return the revision directory, null if the identifier points outside
+     * the history of the item.
+     */
+    private File getRevisionDir(final AbstractItem item, final String identifier) {
         final File configFile = item.getConfigFile().getFile();
         final File historyDirFromConfigFile = getHistoryDir(configFile);
         final File historyDir = new File(historyDirFromConfigFile, identifier);
 
         if(!fileIsContainedInDirectory(historyDir, historyDirFromConfigFile)) {
-            return new XmlFile(null);
+            return null;
         }
 
         if (PluginUtils.isMavenPluginAvailable()
@@ -581,10 +1013,9 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
                     + "/modules/"
                     + ((MavenModule) item).getModuleName().toFileSystemName()
                     + "/" + identifier;
-            return new XmlFile(getConfigFile(new File(path)));
-        } else {
-            return new XmlFile(getConfigFile(historyDir));
+            return new File(path);
         }
+        return historyDir;
     }
 
     @Override
@@ -597,7 +1028,7 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     private XmlFile getOldRevision(final File configFile,
                                    final String identifier) {
         final File historyDir = new File(getHistoryDir(configFile), identifier);
-        return new XmlFile(getConfigFile(historyDir));
+        return new XmlFile(getRevisionConfigFile(historyDir));
     }
 
     @Override
@@ -605,7 +1036,7 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
                                   final String identifier) {
         final File historyDir = new File(
                 new File(historyRootDir, configFileName), identifier);
-        final File configFile = getConfigFile(historyDir);
+        final File configFile = getRevisionConfigFile(historyDir);
         if (configFile == null) {
             throw new IllegalArgumentException("Could not find " + historyDir);
         }
@@ -622,21 +1053,32 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
         try {
             timestampDir = getSubDirectory(currentHistoryDir, identifier);
             try {
+                RevisionDeltas.detach(timestampDir);
                 FileUtils.deleteDirectory(timestampDir);
+                recordRemoved(currentHistoryDir, Collections.singleton(identifier));
             } catch (IOException e) {
                 LOG.log(WARNING, "unable to delete revision {0}: {1}", new Object[]{identifier, e.getMessage()});
             }
         } catch (FileNotFoundException e) {
-            LOG.log(WARNING, "unable to delete revision {0}: file not found.", identifier);
+            deletePackedRevision(currentHistoryDir, identifier);
         }
         LOG.log(FINEST, "{0} 's revision {1} deleted.", new Object[]{abstractItem.getFullName(), identifier});
     }
 
     @Override
     public void deleteRevision(Node node, String identifier) {
-        final File timestampDir = getOldRevision(node, identifier).getFile().getParentFile();
+        final File historyDirForNode = getHistoryDirForNode(node);
+        final File timestampDir;
+        try {
+            timestampDir = getSubDirectory(historyDirForNode, identifier);
+        } catch (FileNotFoundException e) {
+            deletePackedRevision(historyDirForNode, identifier);
+            return;
+        }
         try {
+            RevisionDeltas.detach(timestampDir);
             FileUtils.deleteDirectory(timestampDir);
+            recordRemoved(historyDirForNode, Collections.singleton(identifier));
         } catch (IOException e) {
             LOG.log(WARNING, "unable to delete revision {0}: {1}", new Object[]{identifier, e.getMessage()});
         }
@@ -649,44 +1091,164 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
         try {
             timestampDir = getSubDirectory(historyDir, identifier);
             try {
+                RevisionDeltas.detach(timestampDir);
                 FileUtils.deleteDirectory(timestampDir);
+                recordRemoved(historyDir, Collections.singleton(identifier));
             } catch (IOException e) {
                 LOG.log(WARNING, "unable to delete revision {0}: {1}", new Object[]{identifier, e.getMessage()});
             }
         } catch (FileNotFoundException e) {
-            LOG.log(WARNING, "unable to delete revision {0}: file not found.", identifier);
+            deletePackedRevision(historyDir, identifier);
         }
         LOG.log(FINEST, "{0} 's revision {1} deleted.", new Object[]{historyDir.getName(), identifier});
     }
 
+    /**
+     * Deletes a revision from the pack of an item.
+     *
+     * @param itemHistoryDir history directory of the item.
+     * @param identifier     of the revision.
+     */
+    private void deletePackedRevision(File itemHistoryDir, String identifier) {
+        try {
+            if (RevisionPack.remove(itemHistoryDir, Collections.singleton(identifier)) == 0) {
+                LOG.log(WARNING, "unable to delete revision {0}: file not found.", identifier);
+            } else {
+                recordRemoved(itemHistoryDir, Collections.singleton(identifier));
+            }
+        } catch (IOException e) {
+            LOG.log(WARNING, "unable to delete revision {0}: {1}", new Object[]{identifier, e.getMessage()});
+        }
+    }
+
+    /**
+     * Returns the timeline of this history for the overview, loading it if
+     * needed.
+     *
+     * @return the timeline, null if it is not available.
+     */
+    RevisionTimeline getTimeline() {
+        return timeline != null && timeline.load(this) ? timeline : null;
+    }
+
+    /**
+     * @return the recently shown diffs, shared by all views of this dao.
+     */
+    DiffCache getDiffCache() {
+        return diffCache;
+    }
+
+    /**
+     * Records removed revisions in the manifest of the item, the listed
+     * revisions, the change times, the revision counts and the timeline.
+     *
+     * @param itemHistoryDir history directory of the item.
+     * @param identifiers    of the removed revisions.
+     */
+    void recordRemoved(File itemHistoryDir, Collection<String> identifiers) {
+        RevisionManifest.removed(itemHistoryDir, identifiers);
+        revisionIndexes.invalidate(itemHistoryDir);
+        changeIndexes.invalidate(itemHistoryDir);
+        if (historyRootDir != null) {
+            revisionCounts.removed(itemHistoryDir);
+            timeline.removed(itemHistoryDir, identifiers);
+        }
+    }
+
+    /**
+     * Records the move of the history of an item in the listed revisions, the
+     * change times, the revision counts and the timeline.
+     *
+     * @param oldHistoryDir old history directory of the item.
+     * @param newHistoryDir new history directory of the item.
+     */
+    private void recordMoved(File oldHistoryDir, File newHistoryDir) {
+        revisionIndexes.invalidate(oldHistoryDir);
+        revisionIndexes.invalidate(newHistoryDir);
+        changeIndexes.invalidate(oldHistoryDir);
+        changeIndexes.invalidate(newHistoryDir);
+        if (historyRootDir != null) {
+            revisionCounts.moved(oldHistoryDir, newHistoryDir);
+            timeline.moved(oldHistoryDir, newHistoryDir);
+        }
+    }
+
     @Override
     public boolean revisionEqualsCurrent(AbstractItem project, String identifier1) {
-
+        final File configFile = project.getConfigFile().getFile();
+        final String currentDigest;
         try {
-            return FileUtils.contentEquals(
-                    getConfigFile(getSubDirectory(getHistoryDir(project), identifier1)),
-                    project.getConfigFile().getFile()
-            );
+            currentDigest = getCurrentDigest(configFile.getPath(),
+                    () -> Files.readAllBytes(configFile.toPath()));
         } catch (IOException e) {
-            LOG.log(WARNING, " could not access config file while trying to check revision equality.");
-            e.printStackTrace();
+            LOG.log(WARNING, "could not access config file while trying to check revision equality", e);
             return false;
         }
+        return hasDigest(getRevisionDir(project, identifier1), currentDigest);
     }
 
     @Override
     public boolean revisionEqualsCurrent(Node node, String identifier1) {
-        String currentContent = Jenkins.XSTREAM2.toXML(node);
+        final String currentDigest;
         try {
-            return Objects.equals(
-                    FileUtils.readFileToString(getOldRevision(node, identifier1).getFile(), "UTF-8"),
-                    currentContent
-            );
+            currentDigest = getCurrentDigest(getHistoryDirForNode(node).getPath(),
+                    () -> Jenkins.XSTREAM2.toXML(node).getBytes(StandardCharsets.UTF_8));
         } catch (IOException e) {
-            LOG.log(WARNING, " could not access config file while trying to check revision equality.");
-            e.printStackTrace();
+            LOG.log(WARNING, "could not serialize node while trying to check revision equality", e);
             return false;
         }
+        return hasDigest(getRevisionDir(node, identifier1), currentDigest);
+    }
+
+    /**
+     * Returns the digest of a current configuration. The history pages ask
+     * for every revision shown whether it equals the current configuration,
+     * so the digest is computed only once per request.
+     *
+     * @param key     identifies the configuration within the request.
+     * @param content reads the current configuration.
+     * @return the digest.
+     * @throws IOException if the configuration can't be read.
+     */
+    private static String getCurrentDigest(final String key,
+                                           final CurrentContent content) throws IOException {
+        final StaplerRequest2 request = Stapler.getCurrentRequest2();
+        final String attribute = FileHistoryDao.class.getName() + ".currentDigest:" + key;
+        if (request != null && request.getAttribute(attribute) instanceof String cached) {
+            return cached;
+        }
+        final String digest = computeDigest(content.read());
+        if (request != null) {
+            request.setAttribute(attribute, digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Reads a current configuration.
+     */
+    @FunctionalInterface
+    private interface CurrentContent {
+        byte[] read() throws IOException;
+    }
+
+    /**
+     * Compares the digest stored with a revision, so neither the revision
+     * directory is listed nor the configuration read.
+     *
+     * @param historyDir the revision directory, may be null.
+     * @param digest     to compare with.
+     * @return true if the revision has a configuration with this digest.
+     */
+    private boolean hasDigest(final File historyDir, final String digest) {
+        return historyDir != null && digest.equals(readRevisionDigest(historyDir));
+    }
+
+    @Override
+    public String[] getConfigChangeDates(final XmlFile xmlFile, final long lastBuildTime) {
+        return changeIndexes.get(getHistoryDir(xmlFile.getFile()),
+                        () -> getRevisions(xmlFile).keySet())
+                .getConfigChangeDates(lastBuildTime);
     }
 
     @Override
@@ -694,7 +1256,7 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
                                   final String identifier) {
         final File configFile = xmlFile.getFile();
         final XmlFile oldRevision = getOldRevision(configFile, identifier);
-        return oldRevision.getFile() != null && oldRevision.getFile().exists();
+        return oldRevision.getFile() != null && RevisionFiles.exists(oldRevision.getFile());
     }
 
     /**
@@ -757,26 +1319,148 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
             final int entriesToLeave = maxEntries - 1;
             final File[] historyDirs = itemHistoryRoot
                     .listFiles(HistoryFileFilter.INSTANCE);
-            if (historyDirs != null && historyDirs.length >= entriesToLeave) {
-                Arrays.sort(historyDirs, Collections.reverseOrder());
-                for (int i = entriesToLeave; i < historyDirs.length; i++) {
-                    if (isCreatedEntry(historyDirs[i])) {
+            final SortedMap<String, RevisionPack.Entry> packed = RevisionPack
+                    .getEntries(itemHistoryRoot);
+            if (historyDirs != null && historyDirs.length + packed.size() >= entriesToLeave) {
+                // newest first, packed revisions have no directory
+                final SortedMap<String, File> revisions = new TreeMap<>(Collections.reverseOrder());
+                for (String name : packed.keySet()) {
+                    revisions.put(name, null);
+                }
+                for (File historyDir : historyDirs) {
+                    revisions.put(historyDir.getName(), historyDir);
+                }
+                final List<String> packedToPurge = new ArrayList<>();
+                int i = 0;
+                for (Map.Entry<String, File> revision : revisions.entrySet()) {
+                    if (i++ < entriesToLeave
+                            || isCreatedEntry(new File(itemHistoryRoot, revision.getKey()))) {
+                        continue;
+                    }
+                    if (revision.getValue() == null) {
+                        packedToPurge.add(revision.getKey());
                         continue;
                     }
                     LOG.log(Level.FINE,
                             "purging old directory from history logs: {0}",
-                            historyDirs[i]);
-                    deleteDirectory(historyDirs[i]);
+                            revision.getValue());
+                    deleteDirectory(revision.getValue());
+                    recordRemoved(itemHistoryRoot, Collections.singleton(revision.getKey()));
+                }
+                if (!packedToPurge.isEmpty()) {
+                    LOG.log(Level.FINE,
+                            "purging {0} packed entries from history logs of {1}",
+                            new Object[]{packedToPurge.size(), itemHistoryRoot});
+                    try {
+                        RevisionPack.remove(itemHistoryRoot, packedToPurge);
+                        recordRemoved(itemHistoryRoot, packedToPurge);
+                    } catch (IOException e) {
+                        LOG.log(WARNING, "unable to purge packed entries of {0}: {1}",
+                                new Object[]{itemHistoryRoot, e.getMessage()});
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Moves the revisions of an item older than the given identifier into its
+     * {@link RevisionPack}. The newest revision is never packed, so the next
+     * save still finds it on disk to compare and to base a delta on. Packed
+     * configurations are always stored in full and compressed. Revisions
+     * removed from the pack since are dropped from it.
+     *
+     * @param itemHistoryDir history directory of the item.
+     * @param packBefore     identifier, revisions sorting before it are packed.
+     * @return the number of packed revisions.
+     */
+    int packRevisions(final File itemHistoryDir, final String packBefore) {
+        final File[] historyDirs = itemHistoryDir.listFiles(HistoryFileFilter.INSTANCE);
+        if (historyDirs == null || historyDirs.length < 2) {
+            compactPack(itemHistoryDir);
+            return 0;
+        }
+        Arrays.sort(historyDirs);
+        final List<RevisionPack.Revision> revisions = new ArrayList<>();
+        final List<File> packedDirs = new ArrayList<>();
+        try {
+            for (int i = 0; i < historyDirs.length - 1
+                    && historyDirs[i].getName().compareTo(packBefore) < 0; i++) {
+                final File historyDir = historyDirs[i];
+                final byte[] history = Files.readAllBytes(new File(historyDir,
+                        JobConfigHistoryConsts.HISTORY_FILE).toPath());
+                final File configFile = getRevisionConfigFile(historyDir);
+                if (configFile == null) {
+                    revisions.add(new RevisionPack.Revision(historyDir.getName(),
+                            history, "", new byte[0]));
+                } else {
+                    final File stored = getConfigFile(historyDir);
+                    final String deltaName = stored != null ? null
+                            : RevisionDeltas.getDeltaFile(historyDir).getName();
+                    final String configName = stored != null
+                            ? RevisionFiles.getConfigName(stored)
+                            : deltaName.substring(0, deltaName.length()
+                            - RevisionDeltas.DELTA_SUFFIX.length());
+                    final byte[] compressed = stored != null && RevisionFiles.isCompressed(stored)
+                            ? Files.readAllBytes(stored.toPath())
+                            : RevisionFiles.compress(RevisionFiles.readAllBytes(configFile));
+                    revisions.add(new RevisionPack.Revision(historyDir.getName(), history,
+                            configName + RevisionFiles.COMPRESSED_SUFFIX, compressed));
+                }
+                packedDirs.add(historyDir);
+            }
+            if (revisions.isEmpty()) {
+                compactPack(itemHistoryDir);
+                return 0;
+            }
+            // drops the revisions removed from the pack too
+            RevisionPack.add(itemHistoryDir, revisions);
+        } catch (IOException e) {
+            LOG.log(WARNING, "unable to pack history of {0}: {1}",
+                    new Object[]{itemHistoryDir, e.getMessage()});
+            return 0;
+        }
+        // only older revisions are based on packed ones, and they are packed
+        // too, so the directories are deleted without detaching them
+        for (File historyDir : packedDirs) {
+            try {
+                FileUtils.deleteDirectory(historyDir);
+            } catch (IOException e) {
+                LOG.log(WARNING, "unable to delete packed revision {0}: {1}",
+                        new Object[]{historyDir, e.getMessage()});
+            }
+        }
+        revisionIndexes.invalidate(itemHistoryDir);
+        LOG.log(Level.FINE, "packed {0} revisions of {1}",
+                new Object[]{packedDirs.size(), itemHistoryDir});
+        return packedDirs.size();
+    }
+
+    /**
+     * Rewrites the pack of an item without the revisions removed since it
+     * was last written.
+     *
+     * @param itemHistoryDir history directory of an item.
+     */
+    private void compactPack(final File itemHistoryDir) {
+        try {
+            if (RevisionPack.compact(itemHistoryDir)) {
+                LOG.log(Level.FINE, "compacted pack of {0}", itemHistoryDir);
+            }
+        } catch (IOException e) {
+            LOG.log(WARNING, "unable to compact pack of {0}: {1}",
+                    new Object[]{itemHistoryDir, e.getMessage()});
+        }
+    }
+
     @Override
     public boolean isCreatedEntry(final File historyDir) {
-        final XmlFile historyXml = getHistoryXmlFile(historyDir);
+        final File packedHistoryXml = historyDir.exists() ? null
+                : RevisionPack.getHistoryFile(historyDir);
+        final XmlFile historyXml = packedHistoryXml != null
+                ? new XmlFile(packedHistoryXml) : getHistoryXmlFile(historyDir);
         try {
-            final HistoryDescr histDescr = (HistoryDescr) historyXml.read();
+            final HistoryDescr histDescr = HistoryDescrCodec.read(historyXml);
             LOG.log(FINEST, "historyDir: {0}", historyDir);
             LOG.log(FINEST, "histDescr.getOperation(): {0}",
                     histDescr.getOperation());
@@ -804,6 +1488,7 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
         if (files == null) {
             LOG.log(WARNING, "Directory already deleted or null: {0}", dir);
         } else {
+            RevisionDeltas.detach(dir);
             for (File file : files) {
                 if (!file.delete()) {
                     LOG.log(WARNING, "problem deleting history file: {0}", file);
@@ -824,24 +1509,17 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      * the previously saved information.
      */
     boolean hasDuplicateHistory(final XmlFile xmlFile) {
-        boolean isDuplicated = false;
-        final ArrayList<String> timeStamps = new ArrayList<>(
-                getRevisions(xmlFile).keySet());
-        if (!timeStamps.isEmpty()) {
-            timeStamps.sort(Collections.reverseOrder());
-            final XmlFile lastRevision = getOldRevision(xmlFile,
-                    timeStamps.get(0));
-            try {
-                if (xmlFile.asString().equals(lastRevision.asString())) {
-                    isDuplicated = true;
-                }
-            } catch (IOException e) {
-                LOG.log(WARNING,
-                        "unable to check for duplicate previous history file: {0}\n{1}",
-                        new Object[]{lastRevision, e});
-            }
+        final byte[] content;
+        try {
+            content = Files.readAllBytes(xmlFile.getFile().toPath());
+        } catch (IOException e) {
+            LOG.log(WARNING,
+                    "unable to check for duplicate previous history file: {0}\n{1}",
+                    new Object[]{xmlFile, e});
+            return false;
         }
-        return isDuplicated;
+        return isDuplicate(getHistoryDir(xmlFile.getFile()),
+                computeDigest(content));
     }
 
     /**
@@ -861,6 +1539,134 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
         }
     }
 
+    /**
+     * Checks whether a configuration with the given digest should not be saved
+     * because it's a duplicate.
+     *
+     * @param itemHistoryDir the history directory of the item.
+     * @param digest         of the configuration to save.
+     * @param what           the saved object, for logging.
+     * @return True if it should be saved
+     */
+    private boolean checkDuplicate(final File itemHistoryDir,
+                                   final String digest, final Object what) {
+        if (!saveDuplicates && isDuplicate(itemHistoryDir, digest)) {
+            LOG.log(Level.FINE, "found duplicate history, skipping save of {0}",
+                    what);
+            return false;
+        } else {
+            return true;
+        }
+    }
+
+    /**
+     * Determines if the newest revision in the history directory has the given
+     * digest.
+     *
+     * @param itemHistoryDir the history directory of the item.
+     * @param digest         of the configuration to save.
+     * @return true if the newest revision has the same digest.
+     */
+    private boolean isDuplicate(final File itemHistoryDir, final String digest) {
+        final RevisionDigest last = getLastRevisionDigest(itemHistoryDir);
+        return last != null && digest.equals(last.digest);
+    }
+
+    /**
+     * Returns the digest of the newest revision in the history directory. The
+     * result is kept in memory, so only the first call for an item has to look
+     * at the history on disk. A remembered revision which vanished in the
+     * meantime is looked up again.
+     *
+     * @param itemHistoryDir the history directory of the item.
+     * @return the digest or null if there is no revision with a configuration.
+     */
+    private RevisionDigest getLastRevisionDigest(final File itemHistoryDir) {
+        final RevisionDigest cached = lastRevisionDigests.get(itemHistoryDir);
+        if (cached != null
+                && new File(itemHistoryDir, cached.revision).isDirectory()) {
+            return cached;
+        }
+        final File[] historyDirs = itemHistoryDir
+                .listFiles(HistoryFileFilter.INSTANCE);
+        if (historyDirs == null || historyDirs.length == 0) {
+            lastRevisionDigests.remove(itemHistoryDir);
+            return null;
+        }
+        File newest = historyDirs[0];
+        for (File historyDir : historyDirs) {
+            if (historyDir.getName().compareTo(newest.getName()) > 0) {
+                newest = historyDir;
+            }
+        }
+        final String digest = readRevisionDigest(newest);
+        if (digest == null) {
+            lastRevisionDigests.remove(itemHistoryDir);
+            return null;
+        }
+        final RevisionDigest loaded = new RevisionDigest(newest.getName(), digest);
+        lastRevisionDigests.put(itemHistoryDir, loaded);
+        return loaded;
+    }
+
+    /**
+     * Reads the digest of a revision from its history.xml. Revisions written
+     * by older versions don't have one, so their configuration is hashed.
+     *
+     * @param historyDir the revision directory.
+     * @return the digest or null if the revision has no configuration.
+     */
+    private String readRevisionDigest(final File historyDir) {
+        final RevisionManifest.Entry entry = RevisionManifest.get(historyDir);
+        if (entry != null && entry.digest != null) {
+            return entry.digest;
+        }
+        try {
+            final String stored = HistoryDescrCodec.read(getHistoryXmlFile(historyDir))
+                    .getConfigDigest();
+            if (stored != null) {
+                return stored;
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.log(FINEST, "Unable to read digest from history of {0}",
+                    historyDir);
+        }
+        final File configFile = getRevisionConfigFile(historyDir);
+        if (configFile == null) {
+            return null;
+        }
+        try {
+            return computeDigest(RevisionFiles.readAllBytes(configFile));
+        } catch (IOException e) {
+            LOG.log(WARNING,
+                    "unable to check for duplicate previous history file: {0}\n{1}",
+                    new Object[]{configFile, e});
+            return null;
+        }
+    }
+
+    /**
+     * Remembers the digest of a newly written revision.
+     *
+     * @param timestampedDir the new revision directory.
+     * @param digest         of its configuration.
+     */
+    private void rememberRevisionDigest(final File timestampedDir,
+                                        final String digest) {
+        lastRevisionDigests.put(timestampedDir.getParentFile(),
+                new RevisionDigest(timestampedDir.getName(), digest));
+    }
+
+    /**
+     * Forgets the remembered digest of an item, e.g. because revisions were
+     * deleted or moved.
+     *
+     * @param itemHistoryDir the history directory of the item.
+     */
+    private void forgetRevisionDigest(final File itemHistoryDir) {
+        lastRevisionDigests.remove(itemHistoryDir);
+    }
+
     @Override
     public File[] getDeletedJobs() {
         return returnEmptyFileArrayForNull(getJobFilesIncludingThoseInFolders(DeletedFileFilter.INSTANCE));
@@ -899,76 +1705,19 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     }
 
     private File[] getJobFilesIncludingThoseInFolders(final FileFilter fileFilter) {
-        final List<File> folderFiles = getJobFilesIncludingThoseInFolders();
-
-        return folderFiles.stream().filter(fileFilter::accept).toArray(File[]::new);
-    }
-
-    /**
-     * @return all jobs
-     */
-    private List<File> getJobFilesIncludingThoseInFolders() {
-        return getJobFilesIncludingThoseInFolders(getJobHistoryRootDir());
-    }
-
-    private boolean isFolder(File file) {
-        //a file is a jenkins-folder if its contained in a "jobs" directory and has one itself.
-        boolean hasJobsSubdirectory = false;
-        File[] files = file.listFiles();
-        if (files == null) {
-            return false;
-        }
-        for (File child : files) {
-            if (child.getName().equals("jobs")) {
-                hasJobsSubdirectory = true;
-                break;
-            }
-        }
-        return file.getParentFile().getName().equals("jobs") && file.isDirectory() && hasJobsSubdirectory;
-    }
-
-    private boolean isJobFile(File file) {
-        return file.getParentFile().getName().equals("jobs");
+        return HistoryTreeScanner.scan(getJobHistoryRootDir()).stream()
+                .filter(fileFilter::accept).toArray(File[]::new);
     }
 
     private File getSubDirectory(File file, String subdirectoryName) throws FileNotFoundException {
-        FileNotFoundException up = new FileNotFoundException("File " + new File(file, subdirectoryName) + " not found.");
-
-        File[] files = file.listFiles();
-        if (files == null) {
-            throw up;
-        }
-        for (File child : files) {
-            if (child.getName().equals(subdirectoryName)) {
-                return child;
-            }
-        }
-
-        throw up;
-    }
-
-    private List<File> getJobFilesIncludingThoseInFolders(File fromFile) {
-        List<File> folderNames = new LinkedList<>();
-
-        File[] currentChildren = fromFile.listFiles();
-        if (currentChildren == null) {
-            return folderNames;
+        final File child = new File(file, subdirectoryName);
+        // only a direct child, so a name like ".." doesn't lead out of the directory
+        if (!child.getName().equals(subdirectoryName) || ".".equals(subdirectoryName)
+                || "..".equals(subdirectoryName) || !file.equals(child.getParentFile())
+                || !child.exists() || !fileIsContainedInDirectory(child, file)) {
+            throw new FileNotFoundException("File " + child + " not found.");
         }
-        for (File child : currentChildren) {
-            if (isFolder(child)) {
-                //get everything from the jobs subdirectory (which it has)
-                try {
-                    folderNames.addAll(getJobFilesIncludingThoseInFolders(getSubDirectory(child, "jobs")));
-                } catch (FileNotFoundException e) {
-                    //do nothing, this cannot happen. If it happens, it should probably be logged.
-                    LOG.log(Level.SEVERE, "File not found although it should have been found: " + new File(child, "jobs"));
-                }
-            } else if (isJobFile(child)) {
-                //stop recursion, for the job found can't be a folder.
-                folderNames.add(child);
-            }
-        }
-        return folderNames;
+        return child;
     }
 
     @Override
@@ -1036,6 +1785,7 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
         try {
             FileUtils.copyDirectory(oldFile, newFile);
             FileUtils.deleteDirectory(oldFile);
+            recordMoved(oldFile, newFile);
         } catch (IOException ex) {
             throw new IllegalArgumentException(
                     "Unable to move from " + oldFile + " to " + newFile, ex);
@@ -1045,8 +1795,10 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     @Override
     public void createNewNode(final Node node) {
         final String content = Jenkins.XSTREAM2.toXML(node);
-        createNewHistoryEntryAndSaveConfig(node, content,
-                Messages.ConfigHistoryListenerHelper_CREATED(), null, null, Optional.empty());
+        final Calendar timestamp = new GregorianCalendar();
+        final String operation = Messages.ConfigHistoryListenerHelper_CREATED();
+        write(() -> createNewHistoryEntryAndSaveConfig(node, content, timestamp,
+                operation, null, null, Optional.empty()));
     }
 
     /**
@@ -1054,88 +1806,79 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      *
      * @param node      node.
      * @param content   content.
+     * @param timestamp when the change happened.
      * @param operation operation.
      */
     private void createNewHistoryEntryAndSaveConfig(final Node node,
                                                     final String content,
+                                                    final Calendar timestamp,
                                                     final String operation, final String newName,
                                                     final String oldName,
                                                     final Optional<String> changeReasonCommentOptional) {
+        final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        final String digest = computeDigest(bytes);
         final File timestampedDir = createNewHistoryEntry(node, operation,
-                newName, oldName, changeReasonCommentOptional.orElse(null));
-        final File nodeConfigHistoryFile = new File(timestampedDir,
-                "config.xml");
-        try (PrintStream stream = new PrintStream(nodeConfigHistoryFile, StandardCharsets.UTF_8)) {
-            stream.print(content);
+                newName, oldName, changeReasonCommentOptional.orElse(null), digest, timestamp);
+        try {
+            writeRevisionConfig(timestampedDir, "config.xml", bytes, digest);
         } catch (IOException ex) {
             throw new RuntimeException(
-                    "Unable to write " + nodeConfigHistoryFile, ex);
+                    "Unable to write config.xml of " + timestampedDir, ex);
         }
+        compactPreviousRevision(timestampedDir, bytes);
+        rememberRevisionDigest(timestampedDir, digest);
 
     }
 
     @Override
     public void deleteNode(final Node node) {
-        createNewHistoryEntry(node,
-                Messages.ConfigHistoryListenerHelper_DELETED(), null, null, null);
-        // final File configFile = aItem.getConfigFile().getFile();
-        final File currentHistoryDir = getHistoryDirForNode(node);
-        final SimpleDateFormat buildDateFormat = new SimpleDateFormat(
-                "yyyyMMdd_HHmmss_SSS");
-        final String timestamp = buildDateFormat.format(new Date());
-        final String deletedHistoryName = node.getNodeName()
-                + DeletedFileFilter.DELETED_MARKER + timestamp;
-        final File deletedHistoryDir = new File(
-                currentHistoryDir.getParentFile(), deletedHistoryName);
-        if (!currentHistoryDir.renameTo(deletedHistoryDir)) {
-            LOG.log(WARNING,
-                    "unable to rename deleted history dir to: {0}",
-                    deletedHistoryDir);
-        }
+        final String nodeName = node.getNodeName();
+        final Calendar now = new GregorianCalendar();
+        final String operation = Messages.ConfigHistoryListenerHelper_DELETED();
+        write(() -> {
+            createNewHistoryEntry(node, operation, null, null, null, null, now);
+            // final File configFile = aItem.getConfigFile().getFile();
+            final File currentHistoryDir = getHistoryDirForNode(node);
+            final SimpleDateFormat buildDateFormat = new SimpleDateFormat(
+                    "yyyyMMdd_HHmmss_SSS");
+            final String timestamp = buildDateFormat.format(now.getTime());
+            final String deletedHistoryName = nodeName
+                    + DeletedFileFilter.DELETED_MARKER + timestamp;
+            final File deletedHistoryDir = new File(
+                    currentHistoryDir.getParentFile(), deletedHistoryName);
+            if (!currentHistoryDir.renameTo(deletedHistoryDir)) {
+                LOG.log(WARNING,
+                        "unable to rename deleted history dir to: {0}",
+                        deletedHistoryDir);
+            } else {
+                recordMoved(currentHistoryDir, deletedHistoryDir);
+            }
+        });
     }
 
     @Override
     public void renameNode(final Node node, final String oldName,
                            final String newName) {
-        final String onRenameDesc = " old name: " + oldName + ", new name: "
-                + newName;
-        if (historyRootDir != null) {
-            // final File configFile = aItem.getConfigFile().getAgentFile();
-            final File currentHistoryDir = getHistoryDirForNode(node);
-            final File historyParentDir = currentHistoryDir.getParentFile();
-            final File oldHistoryDir = new File(historyParentDir, oldName);
-            if (oldHistoryDir.exists()) {
-                final FilePath fp = new FilePath(oldHistoryDir);
-                // catch all exceptions so Jenkins can continue with other
-                // rename
-                // tasks.
-                try {
-                    fp.copyRecursiveTo(new FilePath(currentHistoryDir));
-                    fp.deleteRecursive();
-                    LOG.log(FINEST,
-                            "completed move of old history files on rename.{0}",
-                            onRenameDesc);
-                } catch (IOException e) {
-                    final String ioExceptionStr = "unable to move old history on rename."
-                            + onRenameDesc;
-                    LOG.log(Level.SEVERE, ioExceptionStr, e);
-                } catch (InterruptedException e) {
-                    final String irExceptionStr = "interrupted while moving old history on rename."
-                            + onRenameDesc;
-                    LOG.log(WARNING, irExceptionStr, e);
-                }
-            }
-
-        }
         final String content = Jenkins.XSTREAM2.toXML(node);
-        createNewHistoryEntryAndSaveConfig(node, content,
-                Messages.ConfigHistoryListenerHelper_RENAMED(), newName,
-                oldName, Optional.empty());
+        final Calendar timestamp = new GregorianCalendar();
+        final String operation = Messages.ConfigHistoryListenerHelper_RENAMED();
+        write(() -> {
+            if (historyRootDir != null) {
+                moveHistoryOnRename(getHistoryDirForNode(node), oldName, newName);
+            }
+            createNewHistoryEntryAndSaveConfig(node, content, timestamp,
+                    operation, newName, oldName, Optional.empty());
+        });
     }
 
     @Override
     public SortedMap<String, HistoryDescr> getRevisions(final Node node) {
-        final File historiesDir = getHistoryDirForNode(node);
+        return revisionIndexes.get(getHistoryDirForNode(node),
+                historiesDir -> listRevisions(node, historiesDir));
+    }
+
+    private SortedMap<String, HistoryDescr> listRevisions(final Node node,
+                                                          final File historiesDir) {
         final File[] historyDirsOfItem = historiesDir
                 .listFiles(HistoryFileFilter.INSTANCE);
         final TreeMap<String, HistoryDescr> map = new TreeMap<>();
@@ -1144,7 +1887,7 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
                 final XmlFile historyXml = getHistoryXmlFile(historyDir);
                 final HistoryDescr historyDescription;
                 try {
-                    historyDescription = (HistoryDescr) historyXml.read();
+                    historyDescription = HistoryDescrCodec.read(historyXml);
                 } catch (IOException ex) {
                     throw new RuntimeException("Unable to read history for "
                             + node.getDisplayName(), ex);
@@ -1152,6 +1895,10 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
                 map.put(historyDir.getName(), historyDescription);
             }
         }
+        for (String packed : RevisionPack.getEntries(historiesDir).keySet()) {
+            map.putIfAbsent(packed, new LazyHistoryDescr(new XmlFile(
+                    RevisionPack.getHistoryFile(new File(historiesDir, packed)))));
+        }
         return map;
     }
 
@@ -1165,14 +1912,18 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     }
 
     private File createNewHistoryEntry(final Node node, final String operation,
-                                       final String newName, final String oldName, String changeReasonComment) {
+                                       final String newName, final String oldName, String changeReasonComment,
+                                       final String configDigest, final Calendar timestamp) {
         try {
-            final AtomicReference<Calendar> timestampHolder = new AtomicReference<>();
+            final AtomicReference<Calendar> timestampHolder = new AtomicReference<>(timestamp);
             final File timestampedDir = getRootDir(node, timestampHolder);
             LOG.log(Level.FINE, "{0} on {1}",
                     new Object[]{this, timestampedDir});
+            forgetRevisionDigest(timestampedDir.getParentFile());
+            // before the configuration is written, which is recorded in it
+            RevisionManifest.create(timestampedDir.getParentFile());
             createHistoryXmlFile(timestampHolder.get(), timestampedDir,
-                    operation, newName, oldName, changeReasonComment);
+                    operation, newName, oldName, changeReasonComment, configDigest);
             assert timestampHolder.get() != null;
             return timestampedDir;
         } catch (IOException e) {
@@ -1198,13 +1949,31 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      */
     File createNewHistoryEntry(final XmlFile xmlFile, final String operation,
                                final String newName, final String oldName, String changeReasonComment) {
+        return createNewHistoryEntry(xmlFile, operation, newName, oldName,
+                changeReasonComment, null, null);
+    }
+
+    /* Creates a new history entry.
+     *
+     * @param xmlFile      to save.
+     * @param operation    description
+     * @param configDigest digest of the configuration saved afterwards, may be null.
+     * @param timestamp    when the change happened, null for now.
+     * @return timestampedDir
+     */
+    private File createNewHistoryEntry(final XmlFile xmlFile, final String operation,
+                                       final String newName, final String oldName, String changeReasonComment,
+                                       final String configDigest, final Calendar timestamp) {
         try {
-            final AtomicReference<Calendar> timestampHolder = new AtomicReference<>();
+            final AtomicReference<Calendar> timestampHolder = new AtomicReference<>(timestamp);
             final File timestampedDir = getRootDir(xmlFile, timestampHolder);
             LOG.log(Level.FINE, "{0} on {1}",
                     new Object[]{this, timestampedDir});
+            forgetRevisionDigest(timestampedDir.getParentFile());
+            // before the configuration is written, which is recorded in it
+            RevisionManifest.create(timestampedDir.getParentFile());
             createHistoryXmlFile(timestampHolder.get(), timestampedDir,
-                    operation, newName, oldName, changeReasonComment);
+                    operation, newName, oldName, changeReasonComment, configDigest);
             assert timestampHolder.get() != null;
             return timestampedDir;
         } catch (IOException e) {
@@ -1247,75 +2016,87 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     @Override
     public boolean hasDuplicateHistory(final Node node) {
         final String content = Jenkins.XSTREAM2.toXML(node);
-        boolean isDuplicated = false;
-        final ArrayList<String> timeStamps = new ArrayList<>(
-                getRevisions(node).keySet());
-        if (!timeStamps.isEmpty()) {
-            timeStamps.sort(Collections.reverseOrder());
-            final XmlFile lastRevision = getOldRevision(node,
-                    timeStamps.get(0));
-            try {
-                if (content.equals(lastRevision.asString())) {
-                    isDuplicated = true;
-                }
-            } catch (IOException e) {
-                LOG.log(WARNING,
-                        "unable to check for duplicate previous history file: {0}\n{1}",
-                        new Object[]{lastRevision, e});
-            }
-        }
-        return isDuplicated;
-    }
-
-    /**
-     * Check if it is a duplicate.
-     *
-     * @param node node
-     * @return true if it is a duplicate
-     */
-    private boolean checkDuplicate(final Node node) {
-        if (!saveDuplicates && hasDuplicateHistory(node)) {
-            LOG.log(Level.FINE, "found duplicate history, skipping save of {0}",
-                    node.getDisplayName());
-            return false;
-        } else {
-            return true;
-        }
+        // callers decide which node to save based on this, so they have to
+        // see entries still waiting for the background writer.
+        awaitPendingWrites();
+        return isDuplicate(getHistoryDirForNode(node),
+                computeDigest(content.getBytes(StandardCharsets.UTF_8)));
     }
 
     @Override
     public void saveNode(final Node node) {
         final String content = Jenkins.XSTREAM2.toXML(node);
         Optional<String> changeReasonCommentOptional = NodeLocalConfiguration.lastChangeReasonComment(node);
-        if (checkDuplicate(node)) {
-            createNewHistoryEntryAndSaveConfig(node, content,
-                    Messages.ConfigHistoryListenerHelper_CHANGED(), null, null, changeReasonCommentOptional);
-        }
+        final String displayName = node.getDisplayName();
+        final Calendar timestamp = new GregorianCalendar();
+        final String operation = Messages.ConfigHistoryListenerHelper_CHANGED();
+        write(() -> {
+            if (checkDuplicate(getHistoryDirForNode(node),
+                    computeDigest(content.getBytes(StandardCharsets.UTF_8)),
+                    displayName)) {
+                createNewHistoryEntryAndSaveConfig(node, content, timestamp,
+                        operation, null, null, changeReasonCommentOptional);
+            }
+        });
     }
 
     @Override
     public XmlFile getOldRevision(final Node node, final String identifier) {
+        final File historyDir = getRevisionDir(node, identifier);
+        return new XmlFile(historyDir == null ? null : getRevisionConfigFile(historyDir));
+    }
+
+    /**
+     * @param node       the node.
+     * @param identifier of a revision.
+     * @return the revision directory, null if the identifier points outside
+     * the history of the node.
+     */
+    private File getRevisionDir(final Node node, final String identifier) {
         final File historyDirForNode = getHistoryDirForNode(node);
         final File historyDir = new File(historyDirForNode,
                 identifier);
 
         if(!fileIsContainedInDirectory(historyDir, historyDirForNode)) {
-            return new XmlFile(null);
+            return null;
         }
-
-        return new XmlFile(getConfigFile(historyDir));
+        return historyDir;
     }
 
     private boolean fileIsContainedInDirectory(File file, File directory) {
         try {
-            return file.toPath().toRealPath().startsWith(directory.toPath().toRealPath());
+            // packed revisions have no directory, so only their parent is resolved
+            final Path path = file.exists() ? file.toPath().toRealPath()
+                    : file.getParentFile().toPath().toRealPath().resolve(file.getName()).normalize();
+            return path.startsWith(directory.toPath().toRealPath());
         } catch (IOException ignored) {}
         return false;
     }
 
     @Override
     public boolean hasOldRevision(final Node node, final String identifier) {
-        final XmlFile oldRevision = getOldRevision(node, identifier);
-        return oldRevision.getFile() != null && oldRevision.getFile().exists();
+        final File historyDir = getRevisionDir(node, identifier);
+        return historyDir != null && hasRevisionConfig(historyDir);
+    }
+
+    /**
+     * Digest of the configuration saved in a revision.
+     */
+    private static final class RevisionDigest {
+
+        /**
+         * Name of the revision directory.
+         */
+        private final String revision;
+
+        /**
+         * Digest of its configuration.
+         */
+        private final String digest;
+
+        RevisionDigest(final String revision, final String digest) {
+            this.revision = revision;
+            this.digest = digest;
+        }
     }
 }
@@ -23,14 +23,18 @@
  */
 package hudson.plugins.jobConfigHistory;
 
+import com.github.difflib.DiffUtils;
 import com.github.difflib.UnifiedDiffUtils;
+import com.github.difflib.algorithm.DiffAlgorithmListener;
 import com.github.difflib.patch.AbstractDelta;
+import com.github.difflib.patch.ChangeDelta;
 import com.github.difflib.patch.Chunk;
 import com.github.difflib.patch.DiffException;
 import com.github.difflib.patch.Patch;
 import com.github.difflib.text.DiffRow;
 import com.github.difflib.text.DiffRowGenerator;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -42,9 +46,26 @@ import java.util.List;
 public class GetDiffLines {
 
     /**
-     * Lines.
+     * Lines of context around the changes, as in the unified diff.
+     */
+    static final int CONTEXT_SIZE = 3;
+
+    /**
+     * Lines, null when constructed from a patch.
      */
     private final List<String> diffLines;
+    /**
+     * Lines of the original file, when constructed from a patch.
+     */
+    private final List<String> originalLines;
+    /**
+     * Patch, when constructed from one.
+     */
+    private final Patch<String> patch;
+    /**
+     * Limits of the diff, may be null.
+     */
+    private final DiffLimits limits;
     /**
      * View.
      */
@@ -60,11 +81,42 @@ public class GetDiffLines {
      * @param diffLines to construct the {@link SideBySideView} for.
      */
     public GetDiffLines(List<String> diffLines) {
+        this(diffLines, null, null, null);
+    }
+
+    /**
+     * Constructor for a patch, which is shown like its unified diff with
+     * {@link #CONTEXT_SIZE} lines of context, without writing and parsing
+     * the unified diff.
+     *
+     * @param originalLines the lines of the original file.
+     * @param patch         between the original and the revised file.
+     */
+    public GetDiffLines(List<String> originalLines, Patch<String> patch) {
+        this(null, originalLines, patch, null);
+    }
+
+    /**
+     * Constructor for a patch, shown within limits.
+     *
+     * @param originalLines the lines of the original file.
+     * @param patch         between the original and the revised file.
+     * @param limits        of the diff.
+     */
+    GetDiffLines(List<String> originalLines, Patch<String> patch, DiffLimits limits) {
+        this(null, originalLines, patch, limits);
+    }
+
+    private GetDiffLines(List<String> diffLines, List<String> originalLines, Patch<String> patch,
+                         DiffLimits limits) {
 
         final DiffRowGenerator.Builder builder = DiffRowGenerator.create();
         builder.columnWidth(Integer.MAX_VALUE);
         dfg = builder.build();
         this.diffLines = diffLines;
+        this.originalLines = originalLines;
+        this.patch = patch;
+        this.limits = limits;
         view = new SideBySideView();
     }
 
@@ -75,15 +127,93 @@ public class GetDiffLines {
      */
     public List<SideBySideView.Line> get() throws DiffException {
 
-        final Patch<String> diff = UnifiedDiffUtils.parseUnifiedDiff(diffLines);
+        final List<AbstractDelta<String>> hunks = diffLines != null
+                ? UnifiedDiffUtils.parseUnifiedDiff(diffLines).getDeltas()
+                : hunks(originalLines, patch.getDeltas(), CONTEXT_SIZE);
         int previousLeftPos = 0;
-        for (final AbstractDelta<String> delta : diff.getDeltas()) {
+        for (final AbstractDelta<String> delta : hunks) {
+            if (limits != null) {
+                limits.check();
+            }
             previousLeftPos = deltaLoop(delta, previousLeftPos);
         }
         view.clearDuplicateLines();
         return view.getLines();
     }
 
+    /**
+     * Returns the hunks of the unified diff of a patch, as parsing the
+     * unified diff would: deltas closer than twice the context are joined and
+     * every hunk becomes a change from its original to its revised lines,
+     * context included. The lines are the ones of the patch and the original
+     * file.
+     *
+     * @param originalLines the lines of the original file.
+     * @param deltas        of the patch.
+     * @param contextSize   lines of context around the deltas.
+     * @return hunks of the unified diff.
+     */
+    static List<AbstractDelta<String>> hunks(List<String> originalLines,
+                                             List<AbstractDelta<String>> deltas, int contextSize) {
+        final List<AbstractDelta<String>> hunks = new ArrayList<>();
+        for (List<AbstractDelta<String>> group : groups(deltas, contextSize)) {
+            hunks.add(hunk(originalLines, group, contextSize));
+        }
+        return hunks;
+    }
+
+    /**
+     * Groups the deltas of a patch into the hunks of its unified diff:
+     * deltas closer than twice the context are joined.
+     *
+     * @param deltas      of the patch.
+     * @param contextSize lines of context around the deltas.
+     * @return the deltas of each hunk.
+     */
+    static List<List<AbstractDelta<String>>> groups(List<AbstractDelta<String>> deltas, int contextSize) {
+        final List<List<AbstractDelta<String>>> groups = new ArrayList<>();
+        int first = 0;
+        for (int i = 1; i <= deltas.size(); i++) {
+            if (i == deltas.size() || end(deltas.get(i - 1)) + contextSize
+                    < deltas.get(i).getSource().getPosition() - contextSize) {
+                groups.add(deltas.subList(first, i));
+                first = i;
+            }
+        }
+        return groups;
+    }
+
+    private static AbstractDelta<String> hunk(List<String> originalLines,
+                                              List<AbstractDelta<String>> deltas, int contextSize) {
+        final int originalStart = Math.max(deltas.get(0).getSource().getPosition() - contextSize, 0);
+        final int revisedStart = Math.max(deltas.get(0).getTarget().getPosition() - contextSize, 0);
+        final List<String> original = new ArrayList<>();
+        final List<String> revised = new ArrayList<>();
+        int line = originalStart;
+        for (AbstractDelta<String> delta : deltas) {
+            for (; line < delta.getSource().getPosition(); line++) {
+                original.add(originalLines.get(line));
+                revised.add(originalLines.get(line));
+            }
+            original.addAll(delta.getSource().getLines());
+            revised.addAll(delta.getTarget().getLines());
+            line = end(delta);
+        }
+        for (final int contextEnd = Math.min(line + contextSize, originalLines.size()); line < contextEnd; line++) {
+            original.add(originalLines.get(line));
+            revised.add(originalLines.get(line));
+        }
+        return new ChangeDelta<>(new Chunk<>(originalStart, original), new Chunk<>(revisedStart, revised));
+    }
+
+    /**
+     * @param delta of a patch.
+     * @return the index of the original line after the delta.
+     */
+    static int end(AbstractDelta<String> delta) {
+        return delta.getSource().getPosition() + delta.getSource().getLines().size();
+    }
+
     /**
      * Extends view with lines of a single delta.
      *
@@ -92,7 +222,8 @@ public class GetDiffLines {
      * @return new previousLeftPos
      */
     int deltaLoop(final AbstractDelta<String> delta, int previousLeftPos) {
-        return new DeltaLoop(view, dfg, delta).loop(previousLeftPos);
+        return new DeltaLoop(view, dfg, delta,
+                limits == null ? null : limits.listener()).loop(previousLeftPos);
     }
 
     /**
@@ -112,6 +243,10 @@ public class GetDiffLines {
          * delta.
          */
         private final AbstractDelta<?> delta;
+        /**
+         * Listener of the diff of the rows, may be null.
+         */
+        private final DiffAlgorithmListener listener;
         /**
          * Current leftPos.
          */
@@ -128,9 +263,21 @@ public class GetDiffLines {
          */
         public DeltaLoop(SideBySideView view, DiffRowGenerator dfg,
                          AbstractDelta<?> delta) {
+            this(view, dfg, delta, null);
+        }
+
+        /**
+         * @param view     to extend.
+         * @param dfg      dfg
+         * @param delta    delta
+         * @param listener of the diff of the rows, may be null.
+         */
+        DeltaLoop(SideBySideView view, DiffRowGenerator dfg,
+                  AbstractDelta<?> delta, DiffAlgorithmListener listener) {
             this.view = view;
             this.dfg = dfg;
             this.delta = delta;
+            this.listener = listener;
         }
 
         /**
@@ -142,9 +289,12 @@ public class GetDiffLines {
         int loop(int previousLeftPos) {
             final Chunk<?> original = delta.getSource();
             final Chunk<?> revised = delta.getTarget();
-            @SuppressWarnings("unchecked") final List<DiffRow> diffRows = dfg.generateDiffRows(
-                    (List<String>) original.getLines(),
-                    (List<String>) revised.getLines());
+            @SuppressWarnings("unchecked") final List<String> originalLines = (List<String>) original.getLines();
+            @SuppressWarnings("unchecked") final List<String> revisedLines = (List<String>) revised.getLines();
+            // the rows of the same patch the generator computes, within the limits
+            final List<DiffRow> diffRows = listener == null
+                    ? dfg.generateDiffRows(originalLines, revisedLines)
+                    : dfg.generateDiffRows(originalLines, DiffUtils.diff(originalLines, revisedLines, listener));
             // Chunk#getPosition() returns 0-origin line numbers, but we need
             // 1-origin line numbers
             leftPos = original.getPosition() + 1;
@@ -94,6 +94,19 @@ public interface HistoryDao {
      */
     XmlFile getOldRevision(AbstractItem item, String identifier);
 
+    /**
+     * Tells whether an item has an old configuration, which implementations
+     * may find out without reading it.
+     *
+     * @param item       project
+     * @param identifier timestamp or hash
+     * @return true if {@link #getOldRevision(AbstractItem, String)} returns
+     * an existing configuration.
+     */
+    default boolean hasOldRevision(AbstractItem item, String identifier) {
+        return getOldRevision(item, identifier).getFile() != null;
+    }
+
     /**
      * Returns one old configuration of node.
      *
@@ -156,6 +169,23 @@ public interface HistoryDao {
      */
     boolean hasOldRevision(XmlFile xmlFile, String identifier);
 
+    /**
+     * Returns the revisions to compare for a build which started after the
+     * configuration of its job was changed. Called on every build start.
+     *
+     * @param xmlFile       configuration of the job.
+     * @param lastBuildTime when the previous build started, in milliseconds
+     *                      since the epoch.
+     * @return the identifiers of the newest revision and of the newest one
+     * older than the previous build, or of the second newest one if there is
+     * none; null if the configuration did not change since the previous
+     * build.
+     */
+    default String[] getConfigChangeDates(XmlFile xmlFile, long lastBuildTime) {
+        return ChangeIndex.of(getRevisions(xmlFile).keySet())
+                .getConfigChangeDates(lastBuildTime);
+    }
+
     /**
      * Determines whether the given node has already been recorded in the
      * history.
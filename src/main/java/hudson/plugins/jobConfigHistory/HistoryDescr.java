@@ -70,6 +70,18 @@ public class HistoryDescr implements ParsedDate {
     /* The reason for this configuration change*/
     private final String changeReasonComment;
 
+    /**
+     * SHA-256 digest of the saved configuration file, null for entries
+     * written by older versions or without a configuration file.
+     */
+    private final String configDigest;
+
+    /**
+     * The parsed timestamp in milliseconds, 0 until it is parsed. Not
+     * written to {@link JobConfigHistoryConsts#HISTORY_FILE}.
+     */
+    private transient long parsedTime;
+
     /**
      * @param user        display name of the user doing the operation
      * @param userId      id of the user doing the operation
@@ -87,6 +99,7 @@ public class HistoryDescr implements ParsedDate {
         this.currentName = currentName;
         this.oldName = oldName;
         this.changeReasonComment = null;
+        this.configDigest = null;
     }
 
     /**
@@ -99,6 +112,23 @@ public class HistoryDescr implements ParsedDate {
      */
     public HistoryDescr(String user, String userId, String operation,
                         String timestamp, String currentName, String oldName, String changeReasonComment) {
+        this(user, userId, operation, timestamp, currentName, oldName,
+                changeReasonComment, null);
+    }
+
+    /**
+     * @param user                display name of the user doing the operation
+     * @param userId              id of the user doing the operation
+     * @param operation           name of the operation
+     * @param timestamp           timestamp of the operation
+     * @param currentName         the current name after renaming
+     * @param oldName             the name before renaming
+     * @param changeReasonComment the reason for the change, may be null
+     * @param configDigest        digest of the saved configuration, may be null
+     */
+    public HistoryDescr(String user, String userId, String operation,
+                        String timestamp, String currentName, String oldName,
+                        String changeReasonComment, String configDigest) {
         this.user = user;
         this.userId = userId;
         this.operation = operation;
@@ -106,6 +136,7 @@ public class HistoryDescr implements ParsedDate {
         this.currentName = currentName;
         this.oldName = oldName;
         this.changeReasonComment = changeReasonComment;
+        this.configDigest = configDigest;
     }
 
     /**
@@ -151,7 +182,17 @@ public class HistoryDescr implements ParsedDate {
      */
     @Override
     public Date parsedDate() {
-        return PluginUtils.parsedDate(getTimestamp());
+        return new Date(parsedTime());
+    }
+
+    @Override
+    public long parsedTime() {
+        long time = parsedTime;
+        if (time == 0) {
+            time = PluginUtils.parsedTime(getTimestamp());
+            parsedTime = time;
+        }
+        return time;
     }
 
     /**
@@ -192,4 +233,12 @@ public class HistoryDescr implements ParsedDate {
     public String getChangeReasonComment() {
         return changeReasonComment;
     }
+
+    /**
+     * @return the hex encoded SHA-256 digest of the saved configuration file.
+     * null, if not recorded.
+     */
+    public String getConfigDigest() {
+        return configDigest;
+    }
 }
@@ -0,0 +1,249 @@
+package hudson.plugins.jobConfigHistory;
+
+import hudson.PluginWrapper;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.util.AtomicFileWriter;
+import jenkins.model.Jenkins;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads and writes {@link JobConfigHistoryConsts#HISTORY_FILE} with a StAX
+ * reader and a {@link StringBuilder} instead of XStream.
+ * <p>
+ * The files written are the same as those XStream writes for a
+ * {@link HistoryDescr}. Files which look different, e.g. as they were
+ * edited, are read with XStream.
+ */
+final class HistoryDescrCodec {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(HistoryDescrCodec.class.getName());
+
+    /**
+     * Root element written by XStream.
+     */
+    private static final String ROOT = HistoryDescr.class.getName();
+
+    /**
+     * The attribute XStream adds to the root element, naming our plugin.
+     */
+    private static final String PLUGIN_ATTRIBUTE = "plugin";
+
+    /**
+     * Fields in the order XStream writes them.
+     */
+    private static final String[] FIELDS = {"user", "userId", "operation",
+            "timestamp", "currentName", "oldName", "changeReasonComment",
+            "configDigest"};
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newDefaultFactory();
+
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Value of {@link #PLUGIN_ATTRIBUTE}, null until known.
+     */
+    private static volatile String plugin;
+
+    private HistoryDescrCodec() {
+    }
+
+    /**
+     * Reads a history description, which may be packed.
+     *
+     * @param xmlFile the history description.
+     * @return the history description.
+     * @throws IOException if the file can't be read.
+     */
+    static HistoryDescr read(final XmlFile xmlFile) throws IOException {
+        final File file = xmlFile.getFile();
+        try (InputStream in = RevisionFiles.newInputStream(file)) {
+            final HistoryDescr historyDescr = decode(in);
+            if (historyDescr != null) {
+                return historyDescr;
+            }
+        } catch (XMLStreamException e) {
+            LOG.log(Level.FINEST, "unable to read " + file + " without XStream", e);
+        }
+        return (HistoryDescr) RevisionFiles.read(xmlFile);
+    }
+
+    /**
+     * Writes a history description like {@link XmlFile#write(Object)}.
+     *
+     * @param xmlFile      the history description file.
+     * @param historyDescr to write.
+     * @throws IOException if the file can't be written.
+     */
+    static void write(final XmlFile xmlFile, final HistoryDescr historyDescr) throws IOException {
+        if (historyDescr.getClass() != HistoryDescr.class) {
+            xmlFile.write(historyDescr);
+            return;
+        }
+        final File file = xmlFile.getFile();
+        final File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        final AtomicFileWriter w = new AtomicFileWriter(file.toPath(), StandardCharsets.UTF_8);
+        try {
+            w.write(encode(historyDescr, getPlugin()));
+            w.commit();
+        } finally {
+            w.abort();
+        }
+    }
+
+    /**
+     * Reads a history description.
+     *
+     * @param in the content of {@link JobConfigHistoryConsts#HISTORY_FILE}.
+     * @return the history description, null if the file has an unknown
+     * shape.
+     * @throws XMLStreamException if the content is no XML.
+     */
+    static HistoryDescr decode(final InputStream in) throws XMLStreamException {
+        final XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            if (reader.nextTag() != XMLStreamConstants.START_ELEMENT
+                    || !ROOT.equals(reader.getLocalName())
+                    || reader.getAttributeCount() > 1
+                    || (reader.getAttributeCount() == 1
+                    && !PLUGIN_ATTRIBUTE.equals(reader.getAttributeLocalName(0)))) {
+                return null;
+            }
+            final String[] values = new String[FIELDS.length];
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                final int field = indexOf(reader.getLocalName());
+                if (field < 0 || values[field] != null || reader.getAttributeCount() > 0) {
+                    return null;
+                }
+                // throws if the field has elements
+                values[field] = reader.getElementText();
+            }
+            // users, operations and names repeat across the revisions of a listing
+            return new HistoryDescr(Util.intern(values[0]), Util.intern(values[1]),
+                    Util.intern(values[2]), values[3], Util.intern(values[4]),
+                    Util.intern(values[5]), values[6], values[7]);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Writes a history description like XStream.
+     *
+     * @param historyDescr to write.
+     * @param plugin       value of the plugin attribute, may be null.
+     * @return the content of {@link JobConfigHistoryConsts#HISTORY_FILE}.
+     */
+    static String encode(final HistoryDescr historyDescr, final String plugin) {
+        final String[] values = {historyDescr.getUser(), historyDescr.getUserID(),
+                historyDescr.getOperation(), historyDescr.getTimestamp(),
+                historyDescr.getCurrentName(), historyDescr.getOldName(),
+                historyDescr.getChangeReasonComment(), historyDescr.getConfigDigest()};
+        final StringBuilder xml = new StringBuilder(320);
+        xml.append("<?xml version='1.1' encoding='UTF-8'?>\n<").append(ROOT);
+        if (plugin != null) {
+            xml.append(' ').append(PLUGIN_ATTRIBUTE).append("=\"");
+            escape(xml, plugin);
+            xml.append('"');
+        }
+        boolean empty = true;
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (values[i] == null) {
+                continue;
+            }
+            if (empty) {
+                xml.append('>');
+                empty = false;
+            }
+            xml.append("\n  <").append(FIELDS[i]).append('>');
+            escape(xml, values[i]);
+            xml.append("</").append(FIELDS[i]).append('>');
+        }
+        return empty ? xml.append("/>").toString()
+                : xml.append("\n</").append(ROOT).append('>').toString();
+    }
+
+    private static int indexOf(final String field) {
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (FIELDS[i].equals(field)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Escapes text like XStream does for XML 1.1.
+     */
+    private static void escape(final StringBuilder xml, final String text) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    xml.append("&amp;");
+                    break;
+                case '<':
+                    xml.append("&lt;");
+                    break;
+                case '>':
+                    xml.append("&gt;");
+                    break;
+                case '"':
+                    xml.append("&quot;");
+                    break;
+                case '\'':
+                    xml.append("&apos;");
+                    break;
+                case '\r':
+                    xml.append("&#xd;");
+                    break;
+                case '\t':
+                case '\n':
+                    xml.append(c);
+                    break;
+                default:
+                    if (Character.isDefined(c) && !Character.isISOControl(c)) {
+                        xml.append(c);
+                    } else {
+                        xml.append("&#x").append(Integer.toHexString(c)).append(';');
+                    }
+            }
+        }
+    }
+
+    /**
+     * @return the plugin attribute XStream would write, null if unknown.
+     */
+    private static String getPlugin() {
+        if (plugin == null) {
+            final Jenkins jenkins = Jenkins.getInstanceOrNull();
+            final PluginWrapper wrapper = jenkins == null ? null
+                    : jenkins.getPluginManager().whichPlugin(HistoryDescr.class);
+            if (wrapper != null) {
+                plugin = wrapper.getShortName() + '@'
+                        + wrapper.getVersion().replaceFirst(" .+$", "");
+            }
+        }
+        return plugin;
+    }
+}
@@ -51,7 +51,7 @@ public class HistoryFileFilter implements FileFilter {
 
     @Override
     public boolean accept(File file) {
-        return file.exists()
-                && new File(file, JobConfigHistoryConsts.HISTORY_FILE).exists();
+        // implies that the directory exists
+        return new File(file, JobConfigHistoryConsts.HISTORY_FILE).exists();
     }
 }
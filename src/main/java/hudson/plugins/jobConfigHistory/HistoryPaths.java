@@ -0,0 +1,61 @@
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/**
+ * Paths of history directories relative to the history root and the kind of
+ * item they belong to, shared by {@link RevisionTimeline} and
+ * {@link RevisionCounts}, so both agree on what is counted and shown.
+ */
+final class HistoryPaths {
+
+    /**
+     * Prefix of the relative path of job history directories.
+     */
+    static final String JOBS_PREFIX = JobConfigHistoryConsts.JOBS_HISTORY_DIR + "/";
+
+    private HistoryPaths() {
+    }
+
+    /**
+     * @param historyRootDir the history root.
+     * @param itemDir        history directory of an item.
+     * @return its path relative to the history root, separated by slashes,
+     * null if it is outside.
+     */
+    static String relativePath(File historyRootDir, File itemDir) {
+        final Path relative = historyRootDir.getAbsoluteFile().toPath()
+                .relativize(itemDir.getAbsoluteFile().toPath()).normalize();
+        if (relative.toString().isEmpty() || relative.startsWith("..")) {
+            return null;
+        }
+        final StringBuilder path = new StringBuilder();
+        for (Path name : relative) {
+            if (path.length() > 0) {
+                path.append('/');
+            }
+            path.append(name);
+        }
+        return path.toString();
+    }
+
+    /**
+     * @param path relative to the history root.
+     * @return the category of the item, null if it is neither a system
+     * configuration nor a job, e.g. a node or a jobs history directory.
+     */
+    static RevisionTimeline.Category category(String path) {
+        if (path.startsWith(JOBS_PREFIX)) {
+            final String name = path.substring(path.lastIndexOf('/') + 1);
+            return DeletedFileFilter.accepts(name)
+                    ? RevisionTimeline.Category.DELETED_JOB : RevisionTimeline.Category.JOB;
+        }
+        if (path.indexOf('/') >= 0 || path.endsWith(JobConfigHistoryConsts.JOBS_HISTORY_DIR)
+                || path.equals(JobConfigHistoryConsts.NODES_HISTORY_DIR)
+                || path.equals(JobConfigHistoryConsts.OBJECTS_HISTORY_DIR)) {
+            return null;
+        }
+        return RevisionTimeline.Category.SYSTEM;
+    }
+}
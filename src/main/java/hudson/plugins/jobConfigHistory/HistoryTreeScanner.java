@@ -0,0 +1,93 @@
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds the history directories of the jobs in a jobs history directory,
+ * including the jobs in folders.
+ * <p>
+ * An entry of a jobs history directory is the history of a folder if it has
+ * a jobs history directory itself, which is scanned in turn. That takes a
+ * single lookup per entry, so the revisions of a job are never listed to
+ * tell it from a folder. Folders are scanned in parallel on a small pool
+ * shared by all histories.
+ */
+final class HistoryTreeScanner {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(HistoryTreeScanner.class.getName());
+
+    /**
+     * Scans the folders. Small, as the scans are bound by the file system.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private HistoryTreeScanner() {
+    }
+
+    /**
+     * @param jobsDir a jobs history directory.
+     * @return the history directories of the jobs in it and in its folders,
+     * but not those of the folders. Empty if the directory doesn't exist.
+     */
+    static List<File> scan(File jobsDir) {
+        return POOL.invoke(new ScanTask(jobsDir.toPath()));
+    }
+
+    /**
+     * Scans a jobs history directory, forking a task per folder.
+     */
+    private static final class ScanTask extends RecursiveTask<List<File>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path jobsDir;
+
+        private ScanTask(Path jobsDir) {
+            this.jobsDir = jobsDir;
+        }
+
+        @Override
+        protected List<File> compute() {
+            final List<File> jobs = new ArrayList<>();
+            final List<ScanTask> folders = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(jobsDir)) {
+                for (Path child : children) {
+                    final Path childJobsDir = child.resolve(JobConfigHistoryConsts.JOBS_HISTORY_DIR);
+                    if (Files.isDirectory(childJobsDir)) {
+                        final ScanTask folder = new ScanTask(childJobsDir);
+                        folder.fork();
+                        folders.add(folder);
+                    } else {
+                        jobs.add(child.toFile());
+                    }
+                }
+            } catch (NoSuchFileException | NotDirectoryException e) {
+                LOG.log(Level.FINEST, "no jobs in {0}", jobsDir);
+            } catch (IOException | DirectoryIteratorException e) {
+                LOG.log(Level.WARNING, "unable to list " + jobsDir, e);
+            }
+            for (ScanTask folder : folders) {
+                jobs.addAll(folder.join());
+            }
+            return jobs;
+        }
+    }
+}
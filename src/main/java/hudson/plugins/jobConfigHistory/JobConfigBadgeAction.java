@@ -32,10 +32,7 @@ import hudson.model.listeners.RunListener;
 import jenkins.model.Jenkins;
 import jenkins.model.RunAction2;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
-import java.util.List;
 
 /**
  * This class adds a badge to the build history marking builds that occurred
@@ -222,19 +219,10 @@ public class JobConfigBadgeAction implements BuildBadgeAction, RunAction2 {
                 if (previousBuild != null)
                     lastBuildDate = previousBuild.getTime();
             }
-            final List<HistoryDescr> historyDescriptions = getRevisions(
-                    project);
-            if (historyDescriptions.size() > 1) {
-                historyDescriptions.sort(ParsedDateComparator.DESCENDING);
-                final HistoryDescr lastChange = Collections.min(
-                        historyDescriptions, ParsedDateComparator.DESCENDING);
-                final Date lastConfigChange = lastChange.parsedDate();
-
-                if (lastBuildDate != null
-                        && lastConfigChange.after(lastBuildDate)) {
-                    final String[] dates = {lastChange.getTimestamp(),
-                            findLastRelevantConfigChangeDate(
-                                    historyDescriptions, lastBuildDate),};
+            if (lastBuildDate != null) {
+                final String[] dates = getConfigChangeDates(project,
+                        lastBuildDate.getTime());
+                if (dates != null) {
                     build.addAction(new JobConfigBadgeAction(dates));
                 }
             }
@@ -245,34 +233,14 @@ public class JobConfigBadgeAction implements BuildBadgeAction, RunAction2 {
         /**
          * For tests.
          *
-         * @param project to inspect.
-         * @return list of revisions
+         * @param project       to inspect.
+         * @param lastBuildTime when the previous build started.
+         * @return the dates of the last two config changes, null if the
+         * config did not change since the previous build.
          */
-        List<HistoryDescr> getRevisions(final Job<?, ?> project) {
+        String[] getConfigChangeDates(final Job<?, ?> project, final long lastBuildTime) {
             final HistoryDao historyDao = PluginUtils.getHistoryDao();
-            return new ArrayList<>(historyDao.getRevisions(project.getConfigFile()).values());
-        }
-
-        /**
-         * Finds the date of the last config change that happened before the
-         * last build. This is needed for the link in the build history that
-         * shows the difference between the current configuration and the
-         * version that was in place when the last build happened.
-         *
-         * @param historyDescriptions An ArrayList full of HistoryDescr.
-         * @param lastBuildDate       The date of the lastBuild (as Date).
-         * @return The date of the last relevant config change (as String).
-         */
-        private String findLastRelevantConfigChangeDate(
-                List<HistoryDescr> historyDescriptions, Date lastBuildDate) {
-            for (HistoryDescr oldConfigChange : historyDescriptions.subList(1,
-                    historyDescriptions.size())) {
-                final Date changeDate = oldConfigChange.parsedDate();
-                if (changeDate != null && changeDate.before(lastBuildDate)) {
-                    return oldConfigChange.getTimestamp();
-                }
-            }
-            return historyDescriptions.get(1).getTimestamp();
+            return historyDao.getConfigChangeDates(project.getConfigFile(), lastBuildTime);
         }
     } // end Listener
 }
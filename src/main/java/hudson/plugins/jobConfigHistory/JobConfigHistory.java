@@ -87,6 +87,11 @@ public class JobConfigHistory extends GlobalConfiguration {
      * Maximum number of history entries to keep.
      */
     private String maxHistoryEntries;
+    /**
+     * Every how many history entries one keeps the full configuration, the
+     * others only keep the changes to the next entry.
+     */
+    private String snapshotInterval;
     /**
      * Maximum number of history entries to show per page.
      */
@@ -95,6 +100,11 @@ public class JobConfigHistory extends GlobalConfiguration {
      * Maximum number of days to keep history entries.
      */
     private String maxDaysToKeepEntries;
+    /**
+     * Number of days after which history entries are moved into the pack of
+     * their item.
+     */
+    private String packEntriesOlderThanDays;
     /**
      * Comma separated list of usernames whose changes should not get detected.
      */
@@ -128,6 +138,23 @@ public class JobConfigHistory extends GlobalConfiguration {
      * Whether the change reason comment is mandatory (must not be empty).
      */
     private boolean changeReasonCommentIsMandatory = false;
+    /**
+     * Whether history entries are written by a background thread.
+     */
+    private boolean writeHistoryAsynchronously = false;
+    /**
+     * Whether identical configuration files are stored only once.
+     */
+    private boolean contentAddressedStorage = false;
+    /**
+     * Whether configuration files are stored compressed.
+     */
+    private boolean compressHistory = false;
+    /**
+     * The history dao shared by all listeners and actions, built lazily from
+     * the settings above.
+     */
+    private transient volatile FileHistoryDao sharedHistoryDao;
 
     @DataBoundConstructor
     @Restricted(NoExternalUse.class)
@@ -148,6 +175,17 @@ public class JobConfigHistory extends GlobalConfiguration {
         return true;
     }
     
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Drops the shared history dao, so it gets rebuilt with the new settings.
+     */
+    @Override
+    public synchronized void save() {
+        sharedHistoryDao = null;
+        super.save();
+    }
+
     @Override
     protected XmlFile getConfigFile() {
         return new XmlFile(new File(Jenkins.get().getRootDir(),"jobConfigHistory.xml"));
@@ -205,6 +243,30 @@ public class JobConfigHistory extends GlobalConfiguration {
         save();
     }
 
+    /**
+     * Gets every how many history entries the full configuration is kept.
+     *
+     * @return Every how many history entries the full configuration is kept.
+     */
+    public String getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * Sets every how many history entries the full configuration is kept. Entries in between only keep the
+     * changes to the next newer entry.
+     *
+     * @param snapshotInterval Every how many history entries the full configuration is kept.
+     */
+    @DataBoundSetter
+    public void setSnapshotInterval(String snapshotInterval) {
+        String trimmedValue = snapshotInterval == null || snapshotInterval.trim().isEmpty() ? null : snapshotInterval.trim();
+        if (trimmedValue == null || isPositiveInteger(trimmedValue)) {
+            this.snapshotInterval = trimmedValue;
+        }
+        save();
+    }
+
     /**
      * Gets the maximum number of history entries to show per page.
      *
@@ -251,6 +313,29 @@ public class JobConfigHistory extends GlobalConfiguration {
         save();
     }
 
+    /**
+     * Gets the number of days after which history entries are packed.
+     *
+     * @return The number of days after which history entries are packed.
+     */
+    public String getPackEntriesOlderThanDays() {
+        return packEntriesOlderThanDays;
+    }
+
+    /**
+     * Sets the number of days after which history entries are moved into a single pack file per item.
+     *
+     * @param packDaysInput The number of days after which history entries are packed.
+     */
+    @DataBoundSetter
+    public void setPackEntriesOlderThanDays(String packDaysInput) {
+        String trimmedValue = packDaysInput == null || packDaysInput.trim().isEmpty() ? null : packDaysInput.trim();
+        if (trimmedValue == null || isPositiveInteger(trimmedValue)) {
+            packEntriesOlderThanDays = trimmedValue;
+        }
+        save();
+    }
+
     /**
      * Checks if a string evaluates to a positive integer number.
      *
@@ -401,6 +486,71 @@ public class JobConfigHistory extends GlobalConfiguration {
         save();
     }
 
+    /**
+     * Gets whether history entries are written by a background thread instead of the thread saving the
+     * configuration.
+     *
+     * @return Whether history entries are written asynchronously.
+     */
+    public boolean getWriteHistoryAsynchronously() {
+        return writeHistoryAsynchronously;
+    }
+
+    /**
+     * Sets whether history entries are written by a background thread instead of the thread saving the
+     * configuration.
+     *
+     * @param writeHistoryAsynchronously Whether history entries are written asynchronously.
+     */
+    @DataBoundSetter
+    public void setWriteHistoryAsynchronously(boolean writeHistoryAsynchronously) {
+        this.writeHistoryAsynchronously = writeHistoryAsynchronously;
+        save();
+    }
+
+    /**
+     * Gets whether identical configuration files, e.g. of jobs generated from the same template, are stored
+     * only once and hard linked into the history.
+     *
+     * @return Whether content addressed storage is used.
+     */
+    public boolean getContentAddressedStorage() {
+        return contentAddressedStorage;
+    }
+
+    /**
+     * Sets whether identical configuration files, e.g. of jobs generated from the same template, are stored
+     * only once and hard linked into the history.
+     *
+     * @param contentAddressedStorage Whether content addressed storage is used.
+     */
+    @DataBoundSetter
+    public void setContentAddressedStorage(boolean contentAddressedStorage) {
+        this.contentAddressedStorage = contentAddressedStorage;
+        save();
+    }
+
+    /**
+     * Gets whether the configuration files of new history entries are stored gzip compressed.
+     *
+     * @return Whether configuration files are stored compressed.
+     */
+    public boolean getCompressHistory() {
+        return compressHistory;
+    }
+
+    /**
+     * Sets whether the configuration files of new history entries are stored gzip compressed. Existing entries
+     * are read either way.
+     *
+     * @param compressHistory Whether configuration files are stored compressed.
+     */
+    @DataBoundSetter
+    public void setCompressHistory(boolean compressHistory) {
+        this.compressHistory = compressHistory;
+        save();
+    }
+
     /**
      * Whether build badges should appear for the builds of this project.
      *
@@ -587,6 +737,22 @@ public class JobConfigHistory extends GlobalConfiguration {
         }
     }
 
+    /**
+     * Validates the user entry for the interval of history items keeping the
+     * full configuration. Must be blank or a non-negative integer.
+     *
+     * @param value The form input entered by the user.
+     * @return ok if the entry is blank or a non-negative integer.
+     */
+    public FormValidation doCheckSnapshotInterval(@QueryParameter String value) {
+        String trimmedValue = value == null || value.trim().isEmpty() ? null : value.trim();
+        if (trimmedValue == null || isPositiveInteger(trimmedValue)) {
+            return FormValidation.ok();
+        } else {
+            return FormValidation.error("Enter a valid positive integer");
+        }
+    }
+
     /**
      * Validates the user entry for the maximum number of history items to show
      * per page. Must be blank or a non-negative integer.
@@ -619,6 +785,22 @@ public class JobConfigHistory extends GlobalConfiguration {
         }
     }
 
+    /**
+     * Validates the user entry for the number of days after which history
+     * items are packed. Must be blank or a non-negative integer.
+     *
+     * @param value The form input entered by the user.
+     * @return ok if the entry is blank or a non-negative integer.
+     */
+    public FormValidation doCheckPackEntriesOlderThanDays(@QueryParameter String value) {
+        String trimmedValue = value == null || value.trim().isEmpty() ? null : value.trim();
+        if (trimmedValue == null || isPositiveInteger(trimmedValue)) {
+            return FormValidation.ok();
+        } else {
+            return FormValidation.error("Enter a valid positive integer");
+        }
+    }
+
     /**
      * Validates the user entry for the regular expression of system file names
      * to exclude from saving.
@@ -635,6 +817,57 @@ public class JobConfigHistory extends GlobalConfiguration {
         }
     }
 
+    /**
+     * Returns the history dao shared by all listeners, actions and REST calls.
+     * It is not bound to a user, see {@link FileHistoryDao#withUser(MimickedUser)}.
+     * The instance lives until the global configuration is saved the next
+     * time, so anything it caches survives across requests.
+     *
+     * @return The shared history DAO.
+     */
+    FileHistoryDao getSharedHistoryDao() {
+        FileHistoryDao dao = sharedHistoryDao;
+        if (dao == null) {
+            synchronized (this) {
+                dao = sharedHistoryDao;
+                if (dao == null) {
+                    dao = createHistoryDao();
+                    sharedHistoryDao = dao;
+                }
+            }
+        }
+        return dao;
+    }
+
+    /**
+     * Creates a new history dao from the current settings.
+     *
+     * @return The history DAO.
+     */
+    private FileHistoryDao createHistoryDao() {
+        int maxEntries;
+        try {
+            maxEntries = Integer.parseInt(maxHistoryEntries);
+        } catch (NumberFormatException e) {
+            maxEntries = 0;
+        }
+        int interval;
+        try {
+            interval = Integer.parseInt(snapshotInterval);
+        } catch (NumberFormatException e) {
+            interval = 0;
+        }
+        final AsyncHistoryWriter writer = writeHistoryAsynchronously ? AsyncHistoryWriter.get() : null;
+        if (contentAddressedStorage) {
+            return new ContentAddressedHistoryDao(getConfiguredHistoryRootDir(),
+                    getJenkinsHome(), null, maxEntries, !skipDuplicateHistory, writer, interval,
+                    compressHistory);
+        }
+        return new FileHistoryDao(getConfiguredHistoryRootDir(),
+                getJenkinsHome(), null, maxEntries, !skipDuplicateHistory, writer, interval,
+                compressHistory);
+    }
+
     /**
      * For tests.
      *
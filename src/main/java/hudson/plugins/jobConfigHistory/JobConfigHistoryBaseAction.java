@@ -26,31 +26,25 @@ package hudson.plugins.jobConfigHistory;
 import com.github.difflib.DiffUtils;
 import com.github.difflib.UnifiedDiffUtils;
 import com.github.difflib.patch.AbstractDelta;
+import com.github.difflib.patch.Chunk;
 import com.github.difflib.patch.Patch;
-import com.google.common.collect.Lists;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.XmlFile;
 import hudson.model.Action;
 import hudson.plugins.jobConfigHistory.SideBySideView.Line;
 import hudson.security.AccessControlled;
 import hudson.util.MultipartFormDataParser;
+import jenkins.util.SystemProperties;
+import org.apache.commons.io.IOUtils;
 import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.StaplerResponse2;
-import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
-import org.xmlunit.builder.DiffBuilder;
-import org.xmlunit.builder.Input;
-import org.xmlunit.diff.ComparisonResult;
-import org.xmlunit.diff.ComparisonType;
-import org.xmlunit.diff.DefaultNodeMatcher;
-import org.xmlunit.diff.Diff;
-import org.xmlunit.diff.Difference;
-import org.xmlunit.diff.DifferenceEvaluator;
-import org.xmlunit.diff.ElementSelectors;
 
 import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
 import javax.xml.XMLConstants;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -58,25 +52,27 @@ import javax.xml.transform.TransformerFactoryConfigurationError;
 import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 import static java.util.logging.Level.WARNING;
 
@@ -89,13 +85,25 @@ import static java.util.logging.Level.WARNING;
 public abstract class JobConfigHistoryBaseAction implements Action {
 
     private static final Logger LOG = Logger.getLogger(JobConfigHistoryBaseAction.class.getName());
-    private final TransformerFactory transformerFactory;
 
-    public JobConfigHistoryBaseAction() {
-        transformerFactory = TransformerFactory.newInstance();
-        transformerFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-        transformerFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
-    }
+    /**
+     * The version in a {@code plugin="name@version"} attribute, with all of
+     * the attribute before it as group 1.
+     */
+    private static final Pattern PLUGIN_VERSION = Pattern.compile("(\\bplugin=\"[^\"@]*@)[^\"]*");
+
+    /**
+     * Whether diff pages are built in the browser from the patch, see
+     * {@link #doDiffPatch}, unless asked for otherwise.
+     */
+    private static final boolean CLIENT_SIDE_DIFF = SystemProperties.getBoolean(
+            JobConfigHistoryBaseAction.class.getName() + ".clientSideDiff");
+
+    /**
+     * The compiled {@code xslt/sort.xslt}, for the configurations the
+     * {@link XmlSorter} leaves to it.
+     */
+    private static volatile Templates sortTemplates;
 
     @Override
     public String getDisplayName() {
@@ -193,6 +201,17 @@ public abstract class JobConfigHistoryBaseAction implements Action {
         }
     }
 
+    private List<Line> getDiffLines(List<String> originalLines, Patch<String> patch, DiffLimits limits) {
+        try {
+            return new GetDiffLines(originalLines, patch, limits).get();
+        } catch (DiffLimits.Exceeded e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, "DiffException occurred while trying to get diffs: {0}", e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
     /**
      * Returns a unified diff between two string arrays.
      *
@@ -207,47 +226,6 @@ public abstract class JobConfigHistoryBaseAction implements Action {
         return getDiffAsString(file1, file2, file1Lines, file2Lines, false);
     }
 
-    private Diff getVersionDiffsOnly(final String file1Str, final String file2Str) {
-        //takes the comparison and the result that a possible previous DifferenceEvaluator created for this node
-// and compares the node based on whether there was a version change or not.
-// if there wasn't, "comparisonResult" is returned.
-        DifferenceEvaluator versionDifferenceEvaluator = (comparison, comparisonResult) -> {
-            if (comparison.getType() != ComparisonType.ATTR_VALUE) {
-                //only want to compare attribute values!
-                return ComparisonResult.EQUAL;
-            }
-
-            Node controlNode = comparison.getControlDetails().getTarget();
-            Node testNode = comparison.getTestDetails().getTarget();
-            if (controlNode == null || testNode == null) {
-                return ComparisonResult.EQUAL;
-            }
-
-            String[] controlValue = controlNode.getNodeValue().split("@");
-            String[] testValue = testNode.getNodeValue().split("@");
-            if (!controlValue[0].equals(testValue[0])
-                    || controlValue.length != 2 || testValue.length != 2) {
-                //different plugins or misformatted plugin attribute: version number not determinable
-                return ComparisonResult.EQUAL;
-            }
-            if (controlValue[1].equals(testValue[1])) {
-                return ComparisonResult.EQUAL;
-            } else {
-                return ComparisonResult.DIFFERENT;
-            }
-
-        };
-
-        return DiffBuilder.compare(Input.fromString(file1Str)).withTest(Input.fromString(file2Str))
-                .ignoreWhitespace()
-                .withNodeMatcher(new DefaultNodeMatcher(ElementSelectors.byNameAndText))
-                //the next line should be used if one wanted to use XMLUnit for the computing of all diffs.
-                //.withDifferenceEvaluator(DifferenceEvaluators.chain(DifferenceEvaluators.Default, versionDifferenceEvaluator))
-                .withDifferenceEvaluator(versionDifferenceEvaluator)
-                .build();
-    }
-
-
     /**
      * Get the current request's 'showVersionDiffs'-parameter. If there is none, "True" is returned.
      *
@@ -275,33 +253,49 @@ public abstract class JobConfigHistoryBaseAction implements Action {
 
     public abstract List<Line> getLines(boolean useRegex) throws IOException;
 
-    private String reformatAndConcatStringArray(String[] arr) {
-        String ret = "";
-
-        //this needs to be done because the sorting  process writes the first line as:
-        //<?xml version="1.0" encoding="UTF-8"?><project>
-        //which can't be processed by xmlUnit...
-        final String firstLineRegex = "<[^<>]*>";
-        final String firstLine = arr[0];
+    /**
+     * @return the number of lines of the diff rendered with the page, the
+     * others are loaded as the user scrolls, see {@link #doDiffLines}.
+     */
+    public int getPageLines() {
+        return DiffJson.DEFAULT_PAGE_LINES;
+    }
 
-        if (firstLine.matches(firstLineRegex)) {
-            ret += firstLine;
-        } else {
-            //extract anything that doesnt match.
-            String tagThatBelongsInTheNextLine = firstLine.replaceFirst(firstLineRegex, "");
+    /**
+     * Returns the lines skipped by a line of a diff, so they are loaded on
+     * demand, see {@link #doDiffContext}.
+     *
+     * @param lines of the diff.
+     * @param index of a line skipping unchanged lines.
+     * @return the numbers of the first and the last skipped left line and of
+     * the first skipped right line, null if they are not known.
+     */
+    public int[] getSkipped(List<Line> lines, int index) {
+        return DiffJson.skipped(lines, index);
+    }
 
-            ret += firstLine.substring(0, firstLine.length() - tagThatBelongsInTheNextLine.length()) + "\n"
-                    + tagThatBelongsInTheNextLine + "\n";
-        }
+    /**
+     * Returns the two config files compared by {@link #getLines(boolean)},
+     * checking the permissions like it does.
+     *
+     * @return the older and the newer config file, null if they may not be
+     * compared.
+     */
+    protected XmlFile[] getComparedConfigs() {
+        return null;
+    }
 
-        for (int i = 1; i < arr.length; ++i) {
-            if (i < arr.length - 1) {
-                ret = ret.concat(arr[i]).concat("\n");
-            } else {
-                ret = ret.concat(arr[i]);
-            }
-        }
-        return ret;
+    /**
+     * Whether the diff page is built in the browser from the patch served by
+     * {@link #doDiffPatch}: if the request parameter 'render' is 'client', or
+     * by default if the system property {@code clientSideDiff} is set and the
+     * parameter is not 'server'.
+     *
+     * @return whether the diff is rendered client-side.
+     */
+    public boolean isClientSideDiff() {
+        final String render = getRequestParameter("render");
+        return render == null ? CLIENT_SIDE_DIFF : "client".equals(render);
     }
 
     /**
@@ -317,73 +311,77 @@ public abstract class JobConfigHistoryBaseAction implements Action {
      */
     protected final String getDiffAsString(final File file1, final File file2, final String[] file1Lines,
                                            final String[] file2Lines, final boolean hideVersionDiffs) {
+        final Patch<String> patch = getPatch(file1Lines, file2Lines, hideVersionDiffs, null);
+        if (patch == null) {
+            return "";
+        }
+        return String.join(
+                "\n",
+                UnifiedDiffUtils.generateUnifiedDiff(
+                        file1.getPath(),
+                        file2.getPath(),
+                        Arrays.asList(file1Lines),
+                        patch,
+                        GetDiffLines.CONTEXT_SIZE
+                )
+        ) + "\n";
+    }
+
+    /**
+     * @param lines of a configuration.
+     * @return the lines with the plugin versions of the
+     * {@code plugin="name@version"} attributes masked.
+     */
+    static List<String> maskVersions(List<String> lines) {
+        final List<String> masked = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            masked.add(line.indexOf('@') < 0 ? line : PLUGIN_VERSION.matcher(line).replaceAll("$1"));
+        }
+        return masked;
+    }
+
+    /**
+     * Returns the patch between two string arrays representing an xml file.
+     *
+     * @param file1Lines       the lines of the first file.
+     * @param file2Lines       the lines of the second file.
+     * @param hideVersionDiffs determines whether version diffs shall be shown or not.
+     * @param limits           of the diff, may be null.
+     * @return the patch, null if it could not be calculated.
+     */
+    private Patch<String> getPatch(final String[] file1Lines, final String[] file2Lines,
+                                   final boolean hideVersionDiffs, final DiffLimits limits) {
+
+        // a plugin version changed alone leaves the masked lines equal
+        final List<String> lines1 = Arrays.asList(file1Lines);
+        final List<String> lines2 = Arrays.asList(file2Lines);
 
         //calculate all diffs.
         final Patch<String> patch;
         try {
-            patch = DiffUtils.diff(Arrays.asList(file1Lines), Arrays.asList(file2Lines));
+            patch = hideVersionDiffs
+                    ? diff(maskVersions(lines1), maskVersions(lines2), limits)
+                    : diff(lines1, lines2, limits);
+        } catch (DiffLimits.Exceeded e) {
+            throw e;
         } catch (Exception e) {
             LOG.log(Level.SEVERE, "DiffException occurred while trying to calculate diffs: {0}", e.getMessage());
-            return "";
+            return null;
         }
         if (hideVersionDiffs) {
-            //calculate diffs to be excluded from the output.
-            Diff versionDiffs = getVersionDiffsOnly(reformatAndConcatStringArray(file1Lines), reformatAndConcatStringArray(file2Lines));
-            //feature in library: empty deltas are shown, too.
-            List<AbstractDelta<String>> deltasToBeRemovedAfterTheMainLoop = new LinkedList<>();
-
+            // show the lines as they are
             for (AbstractDelta<String> delta : patch.getDeltas()) {
-                // Modify both deltas and save the changes.
-
-                List<String> originalLines = Lists.newArrayList(delta.getSource().getLines());
-                List<String> revisedLines = Lists.newArrayList(delta.getTarget().getLines());
-                for (Difference versionDifference : versionDiffs.getDifferences()) {
-                    //check for each calculated versionDifference where it occurred and delete it.
-                    String controlValue = versionDifference.getComparison().getControlDetails().getValue().toString();
-                    String testValue = versionDifference.getComparison().getTestDetails().getValue().toString();
-
-                    //go through both line lists and find pairs.
-                    for (int oriLineNumber = 0; oriLineNumber < originalLines.size(); oriLineNumber++) {
-                        String currentOriLine = originalLines.get(oriLineNumber);
-
-                        String otherValue = "";
-                        if (currentOriLine.contains(controlValue)) {
-                            otherValue = testValue;
-
-                        } else if (currentOriLine.contains(testValue)) {
-                            otherValue = controlValue;
-                        } else continue;
-                        //search for test value in the other list
-                        for (int revLineNumber = 0; revLineNumber < revisedLines.size(); revLineNumber++) {
-                            String currentRevLine = revisedLines.get(revLineNumber);
-                            if (currentRevLine.contains(otherValue)) {
-                                //found both lines. Delete them
-                                originalLines.remove(oriLineNumber);
-                                revisedLines.remove(revLineNumber);
-                            }
-                        }
-                    }
-                }
-                if (originalLines.isEmpty() && revisedLines.isEmpty()) {
-                    //remove the delta from the list.
-                    deltasToBeRemovedAfterTheMainLoop.add(delta);
-                }
-                delta.getSource().setLines(originalLines);
-                delta.getTarget().setLines(revisedLines);
+                final Chunk<String> source = delta.getSource();
+                final Chunk<String> target = delta.getTarget();
+                source.setLines(lines1.subList(source.getPosition(), source.getPosition() + source.size()));
+                target.setLines(lines2.subList(target.getPosition(), target.getPosition() + target.size()));
             }
-            patch.getDeltas().removeAll(deltasToBeRemovedAfterTheMainLoop);
         }
+        return patch;
+    }
 
-        return String.join(
-                "\n",
-                UnifiedDiffUtils.generateUnifiedDiff(
-                        file1.getPath(),
-                        file2.getPath(),
-                        Arrays.asList(file1Lines),
-                        patch,
-                        3
-                )
-        ) + "\n";
+    private static Patch<String> diff(List<String> lines1, List<String> lines2, DiffLimits limits) {
+        return limits == null ? DiffUtils.diff(lines1, lines2) : DiffUtils.diff(lines1, lines2, limits.listener());
     }
 
     /**
@@ -482,7 +480,7 @@ public abstract class JobConfigHistoryBaseAction implements Action {
         String timestamp1 = req.getParameter("timestamp1");
         String timestamp2 = req.getParameter("timestamp2");
 
-        if (PluginUtils.parsedDate(timestamp1).after(PluginUtils.parsedDate(timestamp2))) {
+        if (PluginUtils.parsedTime(timestamp1) > PluginUtils.parsedTime(timestamp2)) {
             timestamp1 = req.getParameter("timestamp2");
             timestamp2 = req.getParameter("timestamp1");
         }
@@ -503,6 +501,91 @@ public abstract class JobConfigHistoryBaseAction implements Action {
         rsp.sendRedirect("showDiffFiles?timestamp1=" + timestamp1 + "&timestamp2=" + timestamp2);
     }
 
+    /**
+     * Serves a page of the lines of {@link #getLines()} as JSON, see
+     * {@link DiffJson}. Takes the parameters of {@literal showDiffFiles}, the
+     * index of the first line as 'from' and the number of lines as 'count'.
+     * The diff is computed once for all pages, see {@link DiffCache}.
+     *
+     * @param req incoming request
+     * @param rsp outgoing response
+     * @throws IOException if the configurations can't be read.
+     */
+    public final void doDiffLines(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        // getLines() may return no lines instead of failing without permission
+        if (getComparedConfigs() == null) {
+            rsp.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        final List<Line> lines = getLines();
+        writeJson(rsp, DiffJson.lines(lines, DiffJson.parse(req.getParameter("from"), 0),
+                DiffJson.parse(req.getParameter("count"), DiffJson.DEFAULT_PAGE_LINES)));
+    }
+
+    /**
+     * Serves lines of the older configuration skipped by the diff as JSON,
+     * see {@link DiffJson}. Takes the parameters of {@literal showDiffFiles}
+     * and the numbers of the first and the last line as 'from' and 'to'.
+     * The lines are the ones the diff was computed from, unless the diff was
+     * dropped from the {@link DiffCache} since.
+     *
+     * @param req incoming request
+     * @param rsp outgoing response
+     * @throws IOException if the configuration can't be read.
+     */
+    public final void doDiffContext(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        final XmlFile[] configs = getComparedConfigs();
+        if (configs == null) {
+            rsp.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        final boolean hideVersionDiffs = !Boolean.parseBoolean(getShowVersionDiffs());
+        final DiffCache diffCache = getDiffCache();
+        final String key = diffCache == null ? null
+                : DiffCache.key(configs[0].getFile(), configs[1].getFile(), hideVersionDiffs);
+        String[] configLines = key == null ? null : diffCache.getOriginal(key);
+        if (configLines == null) {
+            try {
+                configLines = sort(configs[0].getFile(), new DiffLimits()).toString().split("\\n");
+            } catch (DiffLimits.Exceeded e) {
+                LOG.log(Level.INFO, "Not showing lines of {0}, {1}",
+                        new Object[]{configs[0].getFile(), e.getMessage()});
+                rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            if (key != null) {
+                diffCache.putOriginal(key, configLines);
+            }
+        }
+        writeJson(rsp, DiffJson.context(configLines, DiffJson.parse(req.getParameter("from"), 1),
+                DiffJson.parse(req.getParameter("to"), 0)));
+    }
+
+    /**
+     * Serves the patch between the configurations compared on
+     * {@literal showDiffFiles} as JSON, see {@link DiffJson#patch}, for the
+     * browser to build the diff. Takes the parameters of
+     * {@literal showDiffFiles}.
+     *
+     * @param req incoming request
+     * @param rsp outgoing response
+     * @throws IOException if the configurations can't be read.
+     */
+    public final void doDiffPatch(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        final XmlFile[] configs = getComparedConfigs();
+        if (configs == null) {
+            rsp.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        final boolean hideVersionDiffs = !Boolean.parseBoolean(getShowVersionDiffs());
+        writeJson(rsp, getPatchJson(configs[0], configs[1], hideVersionDiffs));
+    }
+
+    private static void writeJson(StaplerResponse2 rsp, String json) throws IOException {
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().write(json);
+    }
+
     /**
      * Overridable for tests.
      *
@@ -530,31 +613,74 @@ public abstract class JobConfigHistoryBaseAction implements Action {
         return PluginUtils.getHistoryDao();
     }
 
+    /**
+     * @return the recently shown diffs of the history, null if it keeps none.
+     */
+    private DiffCache getDiffCache() {
+        return getHistoryDao() instanceof FileHistoryDao dao ? dao.getDiffCache() : null;
+    }
+
     @SuppressFBWarnings(value = "DCN_NULLPOINTER_EXCEPTION", justification = "Unsure where the NPE can be thrown, so ok for the moment.")
-    private Writer sort(File file) throws IOException {
+    private Writer sort(File file, DiffLimits limits) throws IOException {
         //this produces a sorted xml without indentation.
-        try (Reader source = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
-            InputStream xslt = JobConfigHistoryBaseAction.class.getResourceAsStream("xslt/sort.xslt");
-            Objects.requireNonNull(xslt);
-            Transformer transformer = transformerFactory.newTransformer(new StreamSource(xslt));
+        final String content;
+        try (Reader source = new BufferedReader(new InputStreamReader(
+                RevisionFiles.newInputStream(file), StandardCharsets.UTF_8))) {
+            content = DiffLimits.read(source);
+        }
+        Writer sorted = new StringWriter();
+        if (XmlSorter.sort(new StringReader(content), sorted, limits)) {
+            return sorted;
+        }
+        try {
+            Transformer transformer = getSortTemplates().newTransformer();
             Writer result = new StringWriter();
-            transformer.transform(new SAXSource(new InputSource(source)), new StreamResult(result));
+            transformer.transform(new SAXSource(new InputSource(new StringReader(content))),
+                    new StreamResult(limits.writer(result)));
             transformer.reset();
 
             return result;
-        } catch (TransformerFactoryConfigurationError | TransformerException | NullPointerException e) {
-            LogRecord lr = new LogRecord(Level.WARNING, "Diff may have extra changes for XML config {0}");
-            lr.setParameters(new Object[]{file.toPath()});
-            lr.setThrown(e);
-            LOG.log(lr);
+        } catch (TransformerException e) {
+            // the stylesheet wraps the limits checked while it writes
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof DiffLimits.Exceeded exceeded) {
+                    throw exceeded;
+                }
+            }
+            logUnsorted(file, e);
+        } catch (TransformerFactoryConfigurationError | NullPointerException e) {
+            logUnsorted(file, e);
         }
 
         // fallback - return an original file as is
         Writer fallback = new StringWriter();
-        new XmlFile(file).writeRawTo(fallback);
+        try (Reader raw = RevisionFiles.newReader(new XmlFile(file))) {
+            IOUtils.copy(raw, fallback);
+        }
         return fallback;
     }
 
+    private static void logUnsorted(File file, Throwable e) {
+        LogRecord lr = new LogRecord(Level.WARNING, "Diff may have extra changes for XML config {0}");
+        lr.setParameters(new Object[]{file.toPath()});
+        lr.setThrown(e);
+        LOG.log(lr);
+    }
+
+    private static Templates getSortTemplates() throws TransformerException {
+        Templates templates = sortTemplates;
+        if (templates == null) {
+            TransformerFactory transformerFactory = TransformerFactory.newInstance();
+            transformerFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            transformerFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+            InputStream xslt = JobConfigHistoryBaseAction.class.getResourceAsStream("xslt/sort.xslt");
+            Objects.requireNonNull(xslt);
+            templates = transformerFactory.newTemplates(new StreamSource(xslt));
+            sortTemplates = templates;
+        }
+        return templates;
+    }
+
     /**
      * Takes the two config files and returns the diff between them as a list of
      * single lines.
@@ -565,15 +691,93 @@ public abstract class JobConfigHistoryBaseAction implements Action {
      * @throws IOException If diff doesn't work or xml files can't be read.
      */
     protected final List<Line> getLines(XmlFile leftConfig, XmlFile rightConfig, boolean hideVersionDiffs) throws IOException {
+        // revisions don't change, so their diffs are kept
+        final DiffCache diffCache = getDiffCache();
+        final String key = diffCache == null ? null
+                : DiffCache.key(leftConfig.getFile(), rightConfig.getFile(), hideVersionDiffs);
+        final List<Line> cached = key == null ? null : diffCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
 
-        final String[] leftLines = sort(leftConfig.getFile()).toString().split("\\n");
-        final String[] rightLines = sort(rightConfig.getFile()).toString().split("\\n");
+        final DiffLimits limits = new DiffLimits();
+        List<Line> lines;
+        try {
+            final String[] leftLines = sort(leftConfig.getFile(), limits).toString().split("\\n");
+            final String[] rightLines = sort(rightConfig.getFile(), limits).toString().split("\\n");
+
+            // straight from the patch, the lines shown are the ones of its unified diff
+            final Patch<String> patch = getPatch(leftLines, rightLines, hideVersionDiffs, limits);
+            lines = patch == null ? Collections.emptyList()
+                    : getDiffLines(Arrays.asList(leftLines), patch, limits);
+            if (key != null && lines.stream().anyMatch(Line::isSkipping)) {
+                // for expanding the skipped lines
+                diffCache.putOriginal(key, leftLines);
+            }
+        } catch (DiffLimits.Exceeded e) {
+            logExceeded(leftConfig, rightConfig, e);
+            final Line omitted = new Line();
+            omitted.setOmitted(true);
+            lines = Collections.singletonList(omitted);
+            if (e.getLimit() == DiffLimits.Limit.CANCELLED) {
+                // may well be compared next time
+                return lines;
+            }
+        }
+        return key == null ? lines : diffCache.put(key, lines);
+    }
 
-        final String diffAsString = getDiffAsString(leftConfig.getFile(), rightConfig.getFile(), leftLines,
-                rightLines, hideVersionDiffs);
-        final List<String> diffLines = Arrays.asList(diffAsString.split("\n"));
+    /**
+     * Takes the two config files and returns the patch between them as JSON,
+     * see {@link DiffJson#patch}.
+     *
+     * @param leftConfig       first config file
+     * @param rightConfig      second config file
+     * @param hideVersionDiffs determines whether version diffs shall be shown or not.
+     * @return the patch as JSON.
+     * @throws IOException If xml files can't be read.
+     */
+    private String getPatchJson(XmlFile leftConfig, XmlFile rightConfig, boolean hideVersionDiffs) throws IOException {
+        final DiffCache diffCache = getDiffCache();
+        final String key = diffCache == null ? null
+                : DiffCache.key(leftConfig.getFile(), rightConfig.getFile(), hideVersionDiffs);
+        final String cached = key == null ? null : diffCache.getPatch(key);
+        if (cached != null) {
+            return cached;
+        }
 
-        return getDiffLines(diffLines);
+        final DiffLimits limits = new DiffLimits();
+        String json;
+        try {
+            final String[] leftLines = sort(leftConfig.getFile(), limits).toString().split("\\n");
+            final String[] rightLines = sort(rightConfig.getFile(), limits).toString().split("\\n");
+
+            final Patch<String> patch = getPatch(leftLines, rightLines, hideVersionDiffs, limits);
+            json = DiffJson.patch(Arrays.asList(leftLines), patch == null ? new Patch<>() : patch, limits);
+            if (key != null && patch != null
+                    && GetDiffLines.groups(patch.getDeltas(), GetDiffLines.CONTEXT_SIZE).size() > 1) {
+                // for expanding the lines between the hunks
+                diffCache.putOriginal(key, leftLines);
+            }
+        } catch (DiffLimits.Exceeded e) {
+            logExceeded(leftConfig, rightConfig, e);
+            json = DiffJson.OMITTED;
+            if (e.getLimit() == DiffLimits.Limit.CANCELLED) {
+                // may well be compared next time
+                return json;
+            }
+        }
+        return key == null ? json : diffCache.putPatch(key, json);
+    }
+
+    /**
+     * Logs a diff given up, with how often its limit was hit, so operators
+     * know when to raise it. Cancelled diffs are only logged as fine.
+     */
+    private static void logExceeded(XmlFile leftConfig, XmlFile rightConfig, DiffLimits.Exceeded e) {
+        LOG.log(e.getLimit() == DiffLimits.Limit.CANCELLED ? Level.FINE : Level.INFO,
+                "Not comparing {0} and {1}, {2}",
+                new Object[]{leftConfig.getFile(), rightConfig.getFile(), e.getMessage()});
     }
 
 }
@@ -51,6 +51,10 @@ public final class JobConfigHistoryConsts {
      * Default directory for storing node history.
      */
     public static final String NODES_HISTORY_DIR = "nodes";
+    /**
+     * Directory of the object store of {@link ContentAddressedHistoryDao}.
+     */
+    public static final String OBJECTS_HISTORY_DIR = "objects";
     /**
      * name of history xml file.
      */
@@ -63,6 +67,12 @@ public final class JobConfigHistoryConsts {
      * Format for timestamped dirs.
      */
     public static final String ID_FORMATTER = "yyyy-MM-dd_HH-mm-ss";
+    /**
+     * Separates the optional milliseconds from an identifier formatted with
+     * {@link #ID_FORMATTER}, e.g. 2013-01-18_17-33-51_042. They are only
+     * appended if two entries were saved within the same second.
+     */
+    public static final String ID_MILLIS_SEPARATOR = "_";
     /**
      * Maximum entries to be displayed in the history table pages.
      */
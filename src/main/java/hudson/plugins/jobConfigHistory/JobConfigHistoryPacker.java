@@ -0,0 +1,123 @@
+package hudson.plugins.jobConfigHistory;
+
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moves history entries older than the configured number of days into the
+ * {@link RevisionPack} of their item.
+ */
+@Extension
+public class JobConfigHistoryPacker extends PeriodicWork {
+
+    /**
+     * The logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(JobConfigHistoryPacker.class.getName());
+
+    /**
+     * Our plugin.
+     */
+    private JobConfigHistory plugin;
+
+    /**
+     * The dao, null if history is not stored in files.
+     */
+    private FileHistoryDao historyDao;
+
+    /**
+     * Whether the history dao is looked up before each run, as it changes
+     * with the global configuration.
+     */
+    private final boolean lookupHistoryDao;
+
+    /**
+     * Standard constructor using instance.
+     */
+    public JobConfigHistoryPacker() {
+        lookupHistoryDao = true;
+    }
+
+    /**
+     * For tests with injected plugin.
+     *
+     * @param plugin     injected plugin
+     * @param historyDao injected dao
+     */
+    JobConfigHistoryPacker(JobConfigHistory plugin, FileHistoryDao historyDao) {
+        lookupHistoryDao = false;
+        this.plugin = plugin;
+        this.historyDao = historyDao;
+    }
+
+    private void lookupHistoryDao() {
+        plugin = PluginUtils.getPlugin();
+        final JobConfigHistoryStrategy dao = PluginUtils.getAnonymousHistoryDao(plugin);
+        historyDao = dao instanceof FileHistoryDao ? (FileHistoryDao) dao : null;
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return DAY;
+    }
+
+    @Override
+    protected void doRun() {
+        if (lookupHistoryDao) {
+            lookupHistoryDao();
+        }
+        final String daysString = plugin.getPackEntriesOlderThanDays();
+        if (historyDao == null || daysString == null || daysString.isEmpty()) {
+            return;
+        }
+        final int days;
+        try {
+            days = Integer.parseInt(daysString);
+        } catch (NumberFormatException e) {
+            LOG.log(Level.WARNING,
+                    "days before packing history entries not formatted properly, unable to pack: {0}",
+                    daysString);
+            return;
+        }
+        if (days > 0) {
+            final Calendar packBefore = new GregorianCalendar();
+            packBefore.add(Calendar.DAY_OF_YEAR, -days);
+            packHistory(new SimpleDateFormat(JobConfigHistoryConsts.ID_FORMATTER)
+                    .format(packBefore.getTime()));
+        }
+    }
+
+    /**
+     * Packs the history entries of all items.
+     *
+     * @param packBefore identifier, entries sorting before it are packed.
+     * @return the number of packed entries.
+     */
+    int packHistory(String packBefore) {
+        int packed = packItems(historyDao.getSystemConfigs(), packBefore)
+                + packItems(historyDao.getJobs(), packBefore)
+                + packItems(historyDao.getDeletedJobs(), packBefore)
+                + packItems(historyDao.getNodeHistoryRootDir().listFiles(File::isDirectory), packBefore);
+        LOG.log(Level.FINE, "packed {0} history entries older than {1}",
+                new Object[]{packed, packBefore});
+        return packed;
+    }
+
+    private int packItems(File[] itemDirs, String packBefore) {
+        int packed = 0;
+        if (itemDirs != null) {
+            for (File itemDir : itemDirs) {
+                packed += historyDao.packRevisions(itemDir, packBefore);
+            }
+        }
+        return packed;
+    }
+}
@@ -177,9 +177,7 @@ public class JobConfigHistoryProjectAction extends JobConfigHistoryBaseAction {
         ArrayList<ConfigInfo> configs = new ArrayList<>();
         for (final HistoryDescr historyDescr : historyDescrs.subList(from, to)) {
             final String timestamp = historyDescr.getTimestamp();
-            final XmlFile oldRevision = getHistoryDao().getOldRevision(project,
-                    timestamp);
-            if (oldRevision.getFile() != null) {
+            if (getHistoryDao().hasOldRevision(project, timestamp)) {
                 configs.add(ConfigInfo.create(project.getFullName(), true,
                         historyDescr, true));
             } else if ("Deleted".equals(historyDescr.getOperation())) {
@@ -220,7 +218,7 @@ public class JobConfigHistoryProjectAction extends JobConfigHistoryBaseAction {
         }
         final String timestamp = getRequestParameter("timestamp");
         final XmlFile xmlFile = getOldConfigXml(timestamp);
-        return xmlFile.asString();
+        return RevisionFiles.asString(xmlFile);
     }
 
     /**
@@ -422,13 +420,19 @@ public class JobConfigHistoryProjectAction extends JobConfigHistoryBaseAction {
      * @throws IOException If diff doesn't work or xml files can't be read.
      */
     public final List<Line> getLines(boolean hideVersionDiffs) throws IOException {
+        final XmlFile[] configs = getComparedConfigs();
+        return configs == null ? null : getLines(configs[0], configs[1], hideVersionDiffs);
+    }
+
+    @Override
+    protected final XmlFile[] getComparedConfigs() {
         if (!hasConfigurePermission() && !hasReadExtensionPermission()) {
             checkConfigurePermission();
             return null;
         }
         final String timestamp1 = getRequestParameter("timestamp1");
         final String timestamp2 = getRequestParameter("timestamp2");
-        return getLines(getOldConfigXml(timestamp1), getOldConfigXml(timestamp2), hideVersionDiffs);
+        return new XmlFile[]{getOldConfigXml(timestamp1), getOldConfigXml(timestamp2)};
     }
 
     public XmlSyntaxChecker.Answer checkXmlSyntax(String timestamp) {
@@ -473,7 +477,7 @@ public class JobConfigHistoryProjectAction extends JobConfigHistoryBaseAction {
         final XmlFile xmlFile = getHistoryDao().getOldRevision(project,
                 timestamp);
         final InputStream is = new ByteArrayInputStream(
-                xmlFile.asString().getBytes(StandardCharsets.UTF_8));
+                RevisionFiles.asString(xmlFile).getBytes(StandardCharsets.UTF_8));
 
         project.updateByXml((Source) new StreamSource(is));
         project.save();
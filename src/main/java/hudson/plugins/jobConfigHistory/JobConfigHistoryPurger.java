@@ -27,12 +27,13 @@ import hudson.Extension;
 import hudson.model.PeriodicWork;
 
 import java.io.File;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.GregorianCalendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -71,15 +72,18 @@ public class JobConfigHistoryPurger extends PeriodicWork {
      */
     private OverviewHistoryDao overviewHistoryDao;
 
+    /**
+     * Whether the history dao is looked up before each run, as it changes
+     * with the global configuration.
+     */
+    private final boolean lookupHistoryDao;
+
     /**
      * Standard constructor using instance.
      */
     public JobConfigHistoryPurger() {
-        JobConfigHistory plugin = PluginUtils.getPlugin();
-        JobConfigHistoryStrategy historyDao = PluginUtils.getAnonymousHistoryDao(plugin);
-        assignValue(plugin,
-                historyDao instanceof Purgeable ? (Purgeable) historyDao : null,
-                historyDao);
+        lookupHistoryDao = true;
+        lookupHistoryDao();
     }
 
     /**
@@ -91,9 +95,18 @@ public class JobConfigHistoryPurger extends PeriodicWork {
      */
     JobConfigHistoryPurger(JobConfigHistory plugin, Purgeable purgeable,
                            OverviewHistoryDao overviewHistoryDao) {
+        lookupHistoryDao = false;
         assignValue(plugin, purgeable, overviewHistoryDao);
     }
 
+    private void lookupHistoryDao() {
+        JobConfigHistory plugin = PluginUtils.getPlugin();
+        JobConfigHistoryStrategy historyDao = PluginUtils.getAnonymousHistoryDao(plugin);
+        assignValue(plugin,
+                historyDao instanceof Purgeable ? (Purgeable) historyDao : null,
+                historyDao);
+    }
+
     private void assignValue(JobConfigHistory plugin, Purgeable purgeable,
                              OverviewHistoryDao overviewHistoryDao) {
         this.plugin = plugin;
@@ -108,6 +121,9 @@ public class JobConfigHistoryPurger extends PeriodicWork {
 
     @Override
     protected void doRun() {
+        if (lookupHistoryDao) {
+            lookupHistoryDao();
+        }
         final String maxAgeString = plugin.getMaxDaysToKeepEntries();
         int maxAge;
         if (maxAgeString != null && !maxAgeString.isEmpty()) {
@@ -126,6 +142,9 @@ public class JobConfigHistoryPurger extends PeriodicWork {
                         maxAgeString);
             }
         }
+        if (purgeable instanceof ContentAddressedHistoryDao) {
+            ((ContentAddressedHistoryDao) purgeable).collectGarbage();
+        }
     }
 
     /**
@@ -145,6 +164,7 @@ public class JobConfigHistoryPurger extends PeriodicWork {
         if (itemDirs != null && itemDirs.length > 0) {
             for (File itemDir : itemDirs) {
                 // itemDir: z.B. Test2 or hudson.tasks.Ant
+                purgePackedHistory(itemDir);
                 final File[] historyDirs = itemDir
                         .listFiles(HistoryFileFilter.INSTANCE);
                 if (historyDirs != null) {
@@ -166,6 +186,36 @@ public class JobConfigHistoryPurger extends PeriodicWork {
         }
     }
 
+    /**
+     * Purges the packed entries which are too old, which are older than all
+     * entries still in their own directory.
+     *
+     * @param itemDir Config history directory of an item.
+     */
+    void purgePackedHistory(File itemDir) {
+        final List<String> tooOld = new ArrayList<>();
+        for (String revision : RevisionPack.getEntries(itemDir).keySet()) {
+            final File historyDir = new File(itemDir, revision);
+            if (!isTooOld(historyDir)) {
+                break;
+            }
+            if (!purgeable.isCreatedEntry(historyDir)) {
+                tooOld.add(revision);
+            }
+        }
+        if (!tooOld.isEmpty()) {
+            LOG.log(FINEST, "Should delete {0} packed entries of {1}",
+                    new Object[]{tooOld.size(), itemDir});
+            try {
+                RevisionPack.remove(itemDir, tooOld);
+                recordRemoved(itemDir, tooOld);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "problem deleting packed history entries of {0}: {1}",
+                        new Object[]{itemDir, e.getMessage()});
+            }
+        }
+    }
+
     /**
      * Checks if the history directory is too old by parsing its name as a date
      * and comparing it to the current date minus the maximal allowed age in
@@ -175,22 +225,16 @@ public class JobConfigHistoryPurger extends PeriodicWork {
      * @return True if it is too old.
      */
     boolean isTooOld(File historyDir) {
-        Date parsedDate = null;
-        final SimpleDateFormat dateParser = new SimpleDateFormat(
-                JobConfigHistoryConsts.ID_FORMATTER);
+        final long historyTime;
         try {
-            parsedDate = dateParser.parse(historyDir.getName());
-        } catch (ParseException ex) {
+            historyTime = PluginUtils.parsedTime(historyDir.getName());
+        } catch (IllegalArgumentException ex) {
             LOG.log(WARNING, "Unable to parse Date: {0}", ex);
+            return false;
         }
-        final Calendar historyDate = new GregorianCalendar();
-        if (parsedDate != null) {
-            historyDate.setTime(parsedDate);
-            final Calendar oldestAllowedDate = new GregorianCalendar();
-            oldestAllowedDate.add(Calendar.DAY_OF_YEAR, -getMaxAge());
-            return historyDate.before(oldestAllowedDate);
-        }
-        return false;
+        final long oldestAllowedTime = ZonedDateTime.now()
+                .minusDays(getMaxAge()).toInstant().toEpochMilli();
+        return historyTime < oldestAllowedTime;
     }
 
     /**
@@ -202,6 +246,7 @@ public class JobConfigHistoryPurger extends PeriodicWork {
     void deleteDirectory(File dir) {
         final File[] files = dir.listFiles();
         if (files != null) {
+            RevisionDeltas.detach(dir);
             for (File file : files) {
                 if (!file.delete()) {
                     LOG.log(Level.WARNING, "problem deleting history file: {0}", file);
@@ -209,12 +254,26 @@ public class JobConfigHistoryPurger extends PeriodicWork {
             }
             if (!dir.delete()) {
                 LOG.log(Level.WARNING, "problem deleting history directory: {0}", dir);
+            } else {
+                recordRemoved(dir.getParentFile(), Collections.singleton(dir.getName()));
             }
         } else {
             LOG.log(Level.WARNING, "Directory already deleted or null: {0}", dir);
         }
     }
 
+    /**
+     * Records purged entries in the timeline of the overview.
+     *
+     * @param itemDir   Config history directory of an item.
+     * @param revisions the purged entries.
+     */
+    private void recordRemoved(File itemDir, Collection<String> revisions) {
+        if (purgeable instanceof FileHistoryDao) {
+            ((FileHistoryDao) purgeable).recordRemoved(itemDir, revisions);
+        }
+    }
+
     /**
      * @return the maxAge
      */
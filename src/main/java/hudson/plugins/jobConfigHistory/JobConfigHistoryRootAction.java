@@ -53,8 +53,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.logging.Logger;
@@ -166,6 +168,18 @@ public class JobConfigHistoryRootAction extends JobConfigHistoryBaseAction
         }
         final String filter = getRequestParameter("filter");
 
+        final Set<RevisionTimeline.Category> categories = getTimelineCategories(filter);
+        final OverviewHistoryDao overviewHistoryDao = getOverviewHistoryDao();
+        if (categories != null && overviewHistoryDao instanceof FileHistoryDao) {
+            if (!hasConfigurePermission()) {
+                return Collections.emptyList();
+            }
+            final RevisionTimeline timeline = ((FileHistoryDao) overviewHistoryDao).getTimeline();
+            if (timeline != null) {
+                return toConfigInfos(timeline.getPage(categories, from, to));
+            }
+        }
+
         HashMap<String, ConfigType> timestampNameToConfigTypeMap = new HashMap<>();
 
         SortedMap<String, Pair<String, HistoryDescr>> historyDescrSortedMap;
@@ -235,6 +249,55 @@ public class JobConfigHistoryRootAction extends JobConfigHistoryBaseAction
         return configs;
     }
 
+    /**
+     * @param filter of the overview.
+     * @return the categories of the timeline shown by the filter, null if
+     * the timeline can't tell them.
+     */
+    private static Set<RevisionTimeline.Category> getTimelineCategories(String filter) {
+        if (filter == null || filter.isEmpty() || filter.equals("system")) {
+            return EnumSet.of(RevisionTimeline.Category.SYSTEM);
+        } else if (filter.equals("all")) {
+            return EnumSet.allOf(RevisionTimeline.Category.class);
+        } else if (filter.equals("deleted")) {
+            return EnumSet.of(RevisionTimeline.Category.DELETED_JOB);
+        } else if (filter.equals("jobs")) {
+            return EnumSet.of(RevisionTimeline.Category.JOB, RevisionTimeline.Category.DELETED_JOB);
+        }
+        return null;
+    }
+
+    /**
+     * Creates the config infos for a page of the timeline, like
+     * {@link #getConfigs(int, int)} does for each config type.
+     *
+     * @param revisions page of the timeline.
+     * @return List of config infos.
+     */
+    private static List<ConfigInfo> toConfigInfos(List<RevisionTimeline.Revision> revisions) {
+        final List<ConfigInfo> configs = new ArrayList<>(revisions.size());
+        for (RevisionTimeline.Revision revision : revisions) {
+            final HistoryDescr historyDescr = revision.historyDescr;
+            switch (revision.category) {
+                case SYSTEM:
+                    configs.add(ConfigInfo.create(revision.itemName, true, historyDescr, false));
+                    break;
+                case JOB:
+                    configs.add(ConfigInfo.create(revision.itemName,
+                            !historyDescr.getOperation().equalsIgnoreCase("deleted"), historyDescr, true));
+                    break;
+                case DELETED_JOB:
+                    if (historyDescr.getOperation().equalsIgnoreCase("deleted")) {
+                        configs.add(ConfigInfo.create(revision.itemName, false, historyDescr, false));
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected category: " + revision.category);
+            }
+        }
+        return configs;
+    }
+
     /**
      * Returns the configuration history entries for all system files in this
      * Jenkins instance.
@@ -435,7 +498,7 @@ public class JobConfigHistoryRootAction extends JobConfigHistoryBaseAction
                 && hasJobConfigurePermission()) || hasConfigurePermission()) {
             final String timestamp = getRequestParameter("timestamp");
             final XmlFile xmlFile = getOldConfigXml(name, timestamp);
-            return xmlFile.asString();
+            return RevisionFiles.asString(xmlFile);
         } else {
             return "No permission to view config files";
         }
@@ -554,27 +617,24 @@ public class JobConfigHistoryRootAction extends JobConfigHistoryBaseAction
      * @throws IOException If diff doesn't work or xml files can't be read.
      */
     public final List<Line> getLines(boolean hideVersionDiffs) throws IOException {
+        final XmlFile[] configs = getComparedConfigs();
+        if (configs != null) {
+            return getLines(configs[0], configs[1], hideVersionDiffs);
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    protected final XmlFile[] getComparedConfigs() {
         final String name = getRequestParameter("name");
         if ((name.contains(DeletedFileFilter.DELETED_MARKER)
                 && hasJobConfigurePermission()) || hasConfigurePermission()) {
             final String timestamp1 = getRequestParameter("timestamp1");
             final String timestamp2 = getRequestParameter("timestamp2");
-
-            /*final XmlFile configXml1 = getOldConfigXml(name, timestamp1);
-            final String[] configXml1Lines = configXml1.asString().split("\\n");
-            final XmlFile configXml2 = getOldConfigXml(name, timestamp2);
-            final String[] configXml2Lines = configXml2.asString().split("\\n");
-
-            //compute the diff with respect to ignoredLinesPattern if hideVersionDiffs == true
-            final String diffAsString = getDiffAsString(configXml1.getFile(),
-                    configXml2.getFile(), configXml1Lines, configXml2Lines, hideVersionDiffs);
-
-            final List<String> diffLines = Arrays
-                    .asList(diffAsString.split("\n"));
-            return getDiffLines(diffLines);*/
-            return getLines(getOldConfigXml(name, timestamp1), getOldConfigXml(name, timestamp2), hideVersionDiffs);
+            return new XmlFile[]{getOldConfigXml(name, timestamp1), getOldConfigXml(name, timestamp2)};
         } else {
-            return Collections.emptyList();
+            return null;
         }
     }
 
@@ -674,7 +734,7 @@ public class JobConfigHistoryRootAction extends JobConfigHistoryBaseAction
         final XmlFile configXml = getLastAvailableConfigXml(deletedName);
 
         final InputStream is = new ByteArrayInputStream(
-                configXml.asString().getBytes(StandardCharsets.UTF_8));
+                RevisionFiles.asString(configXml).getBytes(StandardCharsets.UTF_8));
         final String calculatedNewName = findNewName(newName);
 
         //TODO problem: this only creates Items with Jenkins.get() as parent ItemGroup, which breaks the restoration of folders.
@@ -100,6 +100,14 @@ public class LazyHistoryDescr extends HistoryDescr {
         return loadAndGetHistory().getChangeReasonComment();
     }
 
+    /**
+     * {@inheritDoc}.
+     */
+    @Override
+    public String getConfigDigest() {
+        return loadAndGetHistory().getConfigDigest();
+    }
+
     /**
      * Loads configurations on first access of any property.
      *
@@ -108,7 +116,7 @@ public class LazyHistoryDescr extends HistoryDescr {
     private HistoryDescr loadAndGetHistory() {
         if (historyDescr == HistoryDescr.EMPTY_HISTORY_DESCR) {
             try {
-                historyDescr = (HistoryDescr) historyDescriptionFile.read();
+                historyDescr = HistoryDescrCodec.read(historyDescriptionFile);
             } catch (IOException ex) {
                 throw new RuntimeException(
                         "Unable to read " + historyDescriptionFile.getFile(),
@@ -50,6 +50,7 @@ class NonJobsDirectoryFileFilter implements FileFilter {
 
     @Override
     public boolean accept(File pathname) {
-        return pathname.isDirectory() && !pathname.getName().endsWith("jobs");
+        return pathname.isDirectory() && !pathname.getName().endsWith("jobs")
+                && !pathname.getName().equals(JobConfigHistoryConsts.OBJECTS_HISTORY_DIR);
     }
 }
@@ -39,4 +39,14 @@ public interface ParsedDate {
      */
     Date parsedDate();
 
+    /**
+     * Returns the time of {@link #parsedDate()}. Lists are sorted by it, so
+     * implementations should parse their date only once.
+     *
+     * @return milliseconds since the epoch.
+     */
+    default long parsedTime() {
+        return parsedDate().getTime();
+    }
+
 }
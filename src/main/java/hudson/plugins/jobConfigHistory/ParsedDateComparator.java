@@ -28,7 +28,7 @@ import java.util.Comparator;
 
 /**
  * Comparator for {@link ParsedDate}, sort order depends on
- * {@link ParsedDate#parsedDate()}.
+ * {@link ParsedDate#parsedTime()}.
  * <p>
  * Sort in descending order.
  *
@@ -50,6 +50,6 @@ final public class ParsedDateComparator
      * {@inheritDoc}
      */
     public int compare(final ParsedDate ci1, final ParsedDate ci2) {
-        return ci2.parsedDate().compareTo(ci1.parsedDate());
+        return Long.compare(ci2.parsedTime(), ci1.parsedTime());
     }
 }
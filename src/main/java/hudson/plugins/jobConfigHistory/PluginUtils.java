@@ -29,7 +29,6 @@ import hudson.model.User;
 import hudson.security.ACL;
 import jenkins.model.Jenkins;
 
-import java.io.File;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -151,16 +150,7 @@ final public class PluginUtils {
      */
     public static JobConfigHistoryStrategy getHistoryDao(
             final JobConfigHistory plugin, final MimickedUser mimickedUser) {
-        final String maxHistoryEntriesAsString = plugin.getMaxHistoryEntries();
-        int maxHistoryEntries = 0;
-        try {
-            maxHistoryEntries = Integer.parseInt(maxHistoryEntriesAsString);
-        } catch (NumberFormatException e) {
-            maxHistoryEntries = 0;
-        }
-        return new FileHistoryDao(plugin.getConfiguredHistoryRootDir(),
-                new File(Jenkins.get().root.getPath()), mimickedUser,
-                maxHistoryEntries, !plugin.getSkipDuplicateHistory());
+        return plugin.getSharedHistoryDao().withUser(mimickedUser);
     }
 
     /**
@@ -184,19 +174,65 @@ final public class PluginUtils {
     }
 
     /**
-     * Returns a {@link Date}.
+     * Returns a {@link Date}. Identifiers with a millisecond suffix, see
+     * {@link JobConfigHistoryConsts#ID_MILLIS_SEPARATOR}, keep their
+     * milliseconds.
      *
      * @param timeStamp date as string.
      * @return The parsed date as a java.util.Date.
      */
     public static Date parsedDate(final String timeStamp) {
+        return new Date(parsedTime(timeStamp));
+    }
+
+    /**
+     * Returns the time of an identifier like {@link #parsedDate(String)},
+     * without creating a {@link SimpleDateFormat} for well-formed
+     * identifiers.
+     *
+     * @param timeStamp date as string.
+     * @return milliseconds since the epoch.
+     */
+    static long parsedTime(final String timeStamp) {
+        final long key = RevisionIds.toKey(timeStamp);
+        if (key != RevisionIds.UNPARSEABLE) {
+            return RevisionIds.toEpochMillis(key);
+        }
+        // SimpleDateFormat is lenient, e.g. about trailing text
+        final Date seconds;
         try {
-            return new SimpleDateFormat(JobConfigHistoryConsts.ID_FORMATTER)
+            seconds = new SimpleDateFormat(JobConfigHistoryConsts.ID_FORMATTER)
                     .parse(timeStamp);
         } catch (ParseException ex) {
             throw new IllegalArgumentException(
                     "Could not parse Date" + timeStamp, ex);
         }
+        return seconds.getTime() + parsedMillis(timeStamp);
+    }
+
+    /**
+     * Returns the milliseconds appended to an identifier, or 0 if there are
+     * none.
+     *
+     * @param timeStamp date as string.
+     * @return the milliseconds.
+     */
+    private static int parsedMillis(final String timeStamp) {
+        final int secondsLength = JobConfigHistoryConsts.ID_FORMATTER.length();
+        final int separatorLength = JobConfigHistoryConsts.ID_MILLIS_SEPARATOR.length();
+        if (timeStamp.length() != secondsLength + separatorLength + 3
+                || !timeStamp.startsWith(JobConfigHistoryConsts.ID_MILLIS_SEPARATOR, secondsLength)) {
+            return 0;
+        }
+        int millis = 0;
+        for (int i = secondsLength + separatorLength; i < timeStamp.length(); i++) {
+            final char c = timeStamp.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            millis = millis * 10 + (c - '0');
+        }
+        return millis;
     }
 
     /**
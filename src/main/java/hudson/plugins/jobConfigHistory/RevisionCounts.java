@@ -0,0 +1,299 @@
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Number of revisions per item, per folder and of the whole history, so the
+ * pages of the history are calculated without listing every history
+ * directory.
+ * <p>
+ * Each {@link FileHistoryDao} keeps the counts of its history root, shared
+ * with its views for other users. The count of an item is taken once. The
+ * dao increments it when it adds a revision and has it taken again when it
+ * deletes or purges revisions of the item. It is also taken again when the
+ * modification time of the history directory of the item changed otherwise.
+ * The totals are
+ * counted on first use and then changed by the differences of the item
+ * counts; they are counted again after changes of the shape of the history,
+ * like new items or moved folders.
+ */
+final class RevisionCounts {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(RevisionCounts.class.getName());
+
+    /**
+     * Count of an item and the modification time of its history directory
+     * when it was taken.
+     */
+    private static final class ItemCount {
+
+        private int count;
+        private long lastModified;
+
+        private ItemCount(int count, long lastModified) {
+            this.count = count;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private final File historyRootDir;
+
+    /**
+     * Counts by history directory of the item, guarded by this.
+     */
+    private final Map<File, ItemCount> items = new HashMap<>();
+
+    /**
+     * Revisions of the jobs in a jobs history directory, including the jobs
+     * in its folders, by path relative to the history root. Null until
+     * counted.
+     */
+    private Map<String, Integer> jobs;
+
+    /**
+     * Revisions of the system configurations, valid while {@link #jobs} is.
+     */
+    private int system;
+
+    /**
+     * Number of deleted jobs, valid while {@link #jobs} is.
+     */
+    private int deletedJobs;
+
+    /**
+     * @param historyRootDir the history root.
+     */
+    RevisionCounts(File historyRootDir) {
+        this.historyRootDir = historyRootDir.getAbsoluteFile();
+    }
+
+    /**
+     * Returns the number of revisions of an item.
+     *
+     * @param itemDir history directory of the item.
+     * @return the number of revisions, -1 if the directory can't be listed.
+     */
+    synchronized int getItemAmount(File itemDir) {
+        final File key = itemDir.getAbsoluteFile();
+        final long lastModified = key.lastModified();
+        final ItemCount itemCount = items.get(key);
+        if (itemCount != null && itemCount.lastModified == lastModified && lastModified != 0) {
+            return itemCount.count;
+        }
+        return set(key, count(key), lastModified);
+    }
+
+    /**
+     * @param dao to walk the history on first use.
+     * @return the number of revisions of all system configurations.
+     */
+    synchronized int getSystemAmount(FileHistoryDao dao) {
+        countTotals(dao);
+        return system;
+    }
+
+    /**
+     * @param dao        to walk the history on first use.
+     * @param folderPath path of a jobs history directory relative to the
+     *                   history root, e.g. {@code jobs} or
+     *                   {@code jobs/folder/jobs}.
+     * @return the number of revisions of the jobs in it and in its folders,
+     * not counting deleted jobs.
+     */
+    synchronized int getJobAmount(FileHistoryDao dao, String folderPath) {
+        countTotals(dao);
+        return jobs.getOrDefault(folderPath, 0);
+    }
+
+    /**
+     * @param dao to walk the history on first use.
+     * @return the number of deleted jobs.
+     */
+    synchronized int getDeletedJobAmount(FileHistoryDao dao) {
+        countTotals(dao);
+        return deletedJobs;
+    }
+
+    /**
+     * Records a new revision. The caller holds the lock of this while it
+     * writes the history description, so the revision is not counted by
+     * someone else in between.
+     *
+     * @param revisionDir the revision directory.
+     */
+    synchronized void added(File revisionDir) {
+        final File itemDir = revisionDir.getAbsoluteFile().getParentFile();
+        final ItemCount itemCount = items.get(itemDir);
+        if (itemCount != null) {
+            set(itemDir, itemCount.count + 1, itemDir.lastModified());
+        } else if (jobs != null && getItemAmount(itemDir) <= 1) {
+            // a new item, which e.g. turns its parent into a folder
+            jobs = null;
+        }
+    }
+
+    /**
+     * Records removed revisions by counting the revisions of the item again.
+     *
+     * @param itemDir history directory of the item.
+     */
+    synchronized void removed(File itemDir) {
+        final File key = itemDir.getAbsoluteFile();
+        if (!key.exists()) {
+            remove(key);
+            jobs = null;
+            return;
+        }
+        set(key, count(key), key.lastModified());
+    }
+
+    /**
+     * Records the move of the history of an item.
+     *
+     * @param oldItemDir old history directory of the item.
+     * @param newItemDir new history directory of the item.
+     */
+    synchronized void moved(File oldItemDir, File newItemDir) {
+        final String oldPath = relativePath(oldItemDir);
+        final String newPath = relativePath(newItemDir);
+        if (oldPath == null || newPath == null || isFolder(newItemDir)) {
+            final Path oldDir = oldItemDir.getAbsoluteFile().toPath();
+            items.keySet().removeIf(itemDir -> itemDir.toPath().startsWith(oldDir));
+            jobs = null;
+            return;
+        }
+        remove(oldItemDir.getAbsoluteFile());
+        if (jobs != null) {
+            if (isDeletedJob(oldPath)) {
+                deletedJobs--;
+            }
+            if (isDeletedJob(newPath)) {
+                deletedJobs++;
+            }
+        }
+        getItemAmount(newItemDir);
+    }
+
+    /**
+     * Sets the count of an item, updating the totals by the difference.
+     *
+     * @return the count.
+     */
+    private int set(File itemDir, int count, long lastModified) {
+        if (count < 0) {
+            remove(itemDir);
+            return count;
+        }
+        final ItemCount old = items.put(itemDir, new ItemCount(count, lastModified));
+        if (jobs != null) {
+            addToTotals(itemDir, count - (old == null ? 0 : old.count));
+        }
+        return count;
+    }
+
+    private void remove(File itemDir) {
+        final ItemCount old = items.remove(itemDir);
+        if (old != null && jobs != null) {
+            addToTotals(itemDir, -old.count);
+        }
+    }
+
+    /**
+     * Walks the history to count the totals, unless they are known.
+     */
+    private void countTotals(FileHistoryDao dao) {
+        if (jobs != null) {
+            return;
+        }
+        int systemCount = 0;
+        for (File itemDir : dao.getSystemConfigs()) {
+            systemCount += Math.max(0, getItemAmount(itemDir));
+        }
+        final Map<String, Integer> jobCounts = new HashMap<>();
+        jobCounts.put(JobConfigHistoryConsts.JOBS_HISTORY_DIR, 0);
+        for (File itemDir : dao.getJobs()) {
+            final String path = relativePath(itemDir);
+            if (path != null) {
+                addToFolders(jobCounts, path, Math.max(0, getItemAmount(itemDir)));
+            }
+        }
+        deletedJobs = dao.getDeletedJobs().length;
+        system = systemCount;
+        jobs = jobCounts;
+        LOG.log(Level.FINE, "{0}: counted {1} system and {2} job revisions",
+                new Object[]{historyRootDir, system, jobs.get(JobConfigHistoryConsts.JOBS_HISTORY_DIR)});
+    }
+
+    /**
+     * Adds the difference of the count of an item to the totals. Items of
+     * other kinds, like nodes, folders and deleted jobs, are not counted.
+     */
+    private void addToTotals(File itemDir, int delta) {
+        final String path = relativePath(itemDir);
+        if (delta == 0 || path == null) {
+            return;
+        }
+        if (isSystem(path)) {
+            system += delta;
+        } else if (isJob(path) && !isFolder(itemDir)) {
+            addToFolders(jobs, path, delta);
+        }
+    }
+
+    /**
+     * Adds to the count of each jobs history directory containing a job.
+     *
+     * @param counts  by path of the jobs history directory.
+     * @param jobPath path of the job relative to the history root.
+     * @param delta   to add.
+     */
+    private static void addToFolders(Map<String, Integer> counts, String jobPath, int delta) {
+        for (int end = jobPath.lastIndexOf('/'); end > 0; end = jobPath.lastIndexOf('/', end - 1)) {
+            final String folderPath = jobPath.substring(0, end);
+            if (folderPath.equals(JobConfigHistoryConsts.JOBS_HISTORY_DIR)
+                    || folderPath.endsWith("/" + JobConfigHistoryConsts.JOBS_HISTORY_DIR)) {
+                counts.merge(folderPath, delta, Integer::sum);
+            }
+        }
+    }
+
+    private static boolean isSystem(String path) {
+        return HistoryPaths.category(path) == RevisionTimeline.Category.SYSTEM;
+    }
+
+    private static boolean isJob(String path) {
+        return HistoryPaths.category(path) == RevisionTimeline.Category.JOB;
+    }
+
+    private static boolean isDeletedJob(String path) {
+        return HistoryPaths.category(path) == RevisionTimeline.Category.DELETED_JOB;
+    }
+
+    private static boolean isFolder(File itemDir) {
+        return new File(itemDir, JobConfigHistoryConsts.JOBS_HISTORY_DIR).isDirectory();
+    }
+
+    private String relativePath(File itemDir) {
+        return HistoryPaths.relativePath(historyRootDir, itemDir);
+    }
+
+    /**
+     * Counts the revisions of an item in its history directory.
+     *
+     * @param itemDir history directory of the item.
+     * @return the number of revisions, -1 if the directory can't be listed.
+     */
+    private static int count(File itemDir) {
+        final File[] historyDirs = itemDir.listFiles(HistoryFileFilter.INSTANCE);
+        return historyDirs == null ? -1 : historyDirs.length + RevisionPack.getEntries(itemDir).size();
+    }
+}
@@ -0,0 +1,489 @@
+package hudson.plugins.jobConfigHistory;
+
+import com.github.difflib.DiffUtils;
+import com.github.difflib.patch.AbstractDelta;
+import hudson.init.Terminator;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.apache.commons.io.FileUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores older revisions as line deltas against the next newer revision.
+ * <p>
+ * The newest revision is always stored in full. When a new revision is
+ * written, the configuration of the previous one is replaced by a
+ * {@literal <name>.delta} file, which holds the name of the newer revision it
+ * is based on and the changes turning the newer configuration into the older
+ * one. Every {@code interval} revisions one is kept in full, so at most
+ * {@code interval - 1} deltas are applied to reconstruct a revision. As deltas
+ * point to newer revisions, purging the oldest entries never breaks a chain.
+ * Deleting any other revision first turns the revision based on it back into
+ * a full one, see {@link #detach(File)}.
+ * <p>
+ * Reconstructed revisions are written to a temporary directory, as callers
+ * expect a file, and kept there for the most recently used ones. Evicted ones
+ * are deleted a while later, as a caller may still be reading them.
+ */
+@Restricted(NoExternalUse.class)
+public final class RevisionDeltas {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(RevisionDeltas.class.getName());
+
+    /**
+     * Suffix appended to the name of the configuration file.
+     */
+    static final String DELTA_SUFFIX = ".delta";
+
+    /**
+     * Number of reconstructed revisions kept on disk.
+     */
+    static final int CACHE_SIZE = SystemProperties.getInteger(
+            RevisionDeltas.class.getName() + ".cacheSize", 32);
+
+    /**
+     * Seconds an evicted reconstruction stays on disk before it is deleted.
+     */
+    static final int RETIRE_DELAY = SystemProperties.getInteger(
+            RevisionDeltas.class.getName() + ".retireDelay", 300);
+
+    /**
+     * Maps each byte to one char, so the deltas reproduce any file exactly,
+     * whatever its encoding.
+     */
+    private static final Charset CHARSET = StandardCharsets.ISO_8859_1;
+
+    /**
+     * First line of a delta file, followed by the name of the base revision.
+     */
+    private static final String BASE_PREFIX = "base ";
+
+    /**
+     * Reconstructed configurations by revision directory, least recently used
+     * first. Guarded by the class.
+     */
+    private static final Map<File, File> CACHE = new LinkedHashMap<File, File>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<File, File> eldest) {
+            if (size() > CACHE_SIZE) {
+                retire(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Evicted reconstructions, in the order they may be deleted. Guarded by
+     * the class.
+     */
+    private static final Deque<Retired> RETIRED = new ArrayDeque<>();
+
+    /**
+     * Whether a {@link #sweep(long)} is pending. Guarded by the class.
+     */
+    private static boolean sweepScheduled;
+
+    /**
+     * Directory of the reconstructed configurations, created on first use.
+     */
+    private static File cacheDir;
+
+    private RevisionDeltas() {
+    }
+
+    /**
+     * Replaces the configuration of the revision preceding a new one with a
+     * delta, unless it has to stay in full.
+     *
+     * @param revisionDir the directory of the new revision.
+     * @param content     of the new revision's configuration.
+     * @param interval    every how many revisions one is stored in full.
+     */
+    static void compact(final File revisionDir, final byte[] content,
+                        final int interval) {
+        final File[] siblings = revisionDir.getParentFile()
+                .listFiles(HistoryFileFilter.INSTANCE);
+        if (siblings == null) {
+            return;
+        }
+        Arrays.sort(siblings);
+        final int index = Arrays.asList(siblings).indexOf(revisionDir);
+        if (index < 1) {
+            return;
+        }
+        final File previous = siblings[index - 1];
+        final File previousConfig = FileHistoryDao.getConfigFile(previous);
+        if (previousConfig == null) {
+            return;
+        }
+        int deltasBefore = 0;
+        for (int i = index - 2; i >= 0 && deltasBefore < interval - 1; i--) {
+            if (getDeltaFile(siblings[i]) == null) {
+                break;
+            }
+            deltasBefore++;
+        }
+        if (deltasBefore >= interval - 1) {
+            return;
+        }
+        try {
+            final byte[] previousContent = RevisionFiles.readAllBytes(previousConfig);
+            final String delta = encode(revisionDir.getName(), content, previousContent);
+            if (delta.length() >= previousContent.length
+                    || !Arrays.equals(previousContent, apply(delta, content))) {
+                return;
+            }
+            final File deltaFile = new File(previous,
+                    RevisionFiles.getConfigName(previousConfig) + DELTA_SUFFIX);
+            writeAtomically(deltaFile.toPath(), delta.getBytes(CHARSET));
+            Files.delete(previousConfig.toPath());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to store {0} as delta: {1}",
+                    new Object[]{previous, e.getMessage()});
+        }
+    }
+
+    /**
+     * Returns the configuration of a revision stored as delta, reconstructing
+     * it if needed.
+     *
+     * @param revisionDir the revision directory.
+     * @return the reconstructed configuration or null if the revision has no
+     * delta.
+     */
+    static File materialize(final File revisionDir) {
+        final File deltaFile = getDeltaFile(revisionDir);
+        if (deltaFile == null) {
+            return null;
+        }
+        synchronized (RevisionDeltas.class) {
+            final File cached = CACHE.get(revisionDir);
+            if (cached != null && cached.exists()) {
+                return cached;
+            }
+            try {
+                final byte[] content = reconstruct(revisionDir);
+                final String name = deltaFile.getName();
+                final Path file = Files.createTempFile(getCacheDir().toPath(),
+                        revisionDir.getName() + "-",
+                        "-" + name.substring(0, name.length() - DELTA_SUFFIX.length()));
+                Files.write(file, content);
+                CACHE.put(revisionDir, file.toFile());
+                return file.toFile();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "unable to reconstruct " + revisionDir, e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Turns the revision based on the given one back into a full revision, so
+     * the given one can be deleted.
+     *
+     * @param revisionDir the revision directory about to be deleted.
+     */
+    static void detach(final File revisionDir) {
+        final File itemDir = revisionDir.getParentFile();
+        final File[] siblings = itemDir == null ? null : itemDir.listFiles(HistoryFileFilter.INSTANCE);
+        if (siblings != null) {
+            File older = null;
+            for (File sibling : siblings) {
+                if (sibling.getName().compareTo(revisionDir.getName()) < 0
+                        && (older == null || sibling.getName().compareTo(older.getName()) > 0)) {
+                    older = sibling;
+                }
+            }
+            final File deltaFile = older == null ? null : getDeltaFile(older);
+            if (deltaFile != null) {
+                try {
+                    if (revisionDir.getName().equals(readBase(deltaFile))) {
+                        final String name = deltaFile.getName();
+                        final File configFile = new File(older,
+                                name.substring(0, name.length() - DELTA_SUFFIX.length()));
+                        writeAtomically(configFile.toPath(), reconstruct(older));
+                        Files.delete(deltaFile.toPath());
+                    }
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "unable to restore " + older
+                            + " before deleting " + revisionDir, e);
+                }
+            }
+        }
+        synchronized (RevisionDeltas.class) {
+            retire(CACHE.remove(revisionDir));
+        }
+    }
+
+    /**
+     * Reconstructs the configuration of a revision by applying the deltas
+     * from the nearest newer revision stored in full.
+     *
+     * @param revisionDir the revision directory.
+     * @return the configuration.
+     * @throws IOException if a revision of the chain is missing.
+     */
+    private static byte[] reconstruct(final File revisionDir) throws IOException {
+        final Deque<String> deltas = new ArrayDeque<>();
+        File current = revisionDir;
+        File configFile = FileHistoryDao.getConfigFile(current);
+        while (configFile == null) {
+            final File deltaFile = getDeltaFile(current);
+            if (deltaFile == null) {
+                throw new IOException("Neither configuration nor delta in " + current);
+            }
+            final String delta = new String(Files.readAllBytes(deltaFile.toPath()), CHARSET);
+            final String base = readBase(delta);
+            if (base.compareTo(current.getName()) <= 0) {
+                throw new IOException("Delta of " + current + " is not based on a newer revision");
+            }
+            deltas.push(delta);
+            current = new File(current.getParentFile(), base);
+            configFile = FileHistoryDao.getConfigFile(current);
+        }
+        byte[] content = RevisionFiles.readAllBytes(configFile);
+        while (!deltas.isEmpty()) {
+            content = apply(deltas.pop(), content);
+        }
+        return content;
+    }
+
+    /**
+     * Returns the delta file of a revision.
+     *
+     * @param revisionDir the revision directory.
+     * @return the delta file or null if the revision has none.
+     */
+    static File getDeltaFile(final File revisionDir) {
+        final RevisionManifest.Entry entry = RevisionManifest.get(revisionDir);
+        if (entry != null) {
+            final File recorded = new File(revisionDir, entry.configName);
+            final File deltaFile = new File(revisionDir,
+                    RevisionFiles.getConfigName(recorded) + DELTA_SUFFIX);
+            if (deltaFile.exists()) {
+                return deltaFile;
+            }
+            if (recorded.exists()) {
+                return null;
+            }
+        }
+        final File[] deltas = revisionDir.listFiles(
+                (dir, name) -> name.endsWith(".xml" + DELTA_SUFFIX));
+        return deltas == null || deltas.length == 0 ? null : deltas[0];
+    }
+
+    /**
+     * Creates a delta turning the base content into the target content.
+     *
+     * @param base          name of the revision holding the base content.
+     * @param baseContent   content of the base revision.
+     * @param targetContent content to reconstruct.
+     * @return the delta.
+     */
+    static String encode(final String base, final byte[] baseContent,
+                         final byte[] targetContent) {
+        final List<String> baseLines = toLines(baseContent);
+        final List<String> targetLines = toLines(targetContent);
+        final StringBuilder delta = new StringBuilder(BASE_PREFIX).append(base).append('\n');
+        for (AbstractDelta<String> change : DiffUtils.diff(baseLines, targetLines).getDeltas()) {
+            final List<String> inserted = change.getTarget().getLines();
+            delta.append(change.getSource().getPosition()).append(' ')
+                    .append(change.getSource().size()).append(' ')
+                    .append(inserted.size()).append('\n');
+            for (String line : inserted) {
+                delta.append(line).append('\n');
+            }
+        }
+        return delta.toString();
+    }
+
+    /**
+     * Applies a delta to the content of its base revision.
+     *
+     * @param delta       created by {@link #encode(String, byte[], byte[])}.
+     * @param baseContent content of the base revision.
+     * @return the reconstructed content.
+     * @throws IOException if the delta is malformed.
+     */
+    static byte[] apply(final String delta, final byte[] baseContent) throws IOException {
+        final List<String> baseLines = toLines(baseContent);
+        final Iterator<String> lines = toLines(delta.getBytes(CHARSET)).iterator();
+        lines.next();
+        final List<String> result = new ArrayList<>(baseLines.size());
+        int position = 0;
+        try {
+            while (lines.hasNext()) {
+                final String header = lines.next();
+                if (header.isEmpty() && !lines.hasNext()) {
+                    break;
+                }
+                final String[] counts = header.split(" ");
+                final int start = Integer.parseInt(counts[0]);
+                final int deleted = Integer.parseInt(counts[1]);
+                final int inserted = Integer.parseInt(counts[2]);
+                result.addAll(baseLines.subList(position, start));
+                for (int i = 0; i < inserted; i++) {
+                    result.add(lines.next());
+                }
+                position = start + deleted;
+            }
+            result.addAll(baseLines.subList(position, baseLines.size()));
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed delta", e);
+        }
+        return String.join("\n", result).getBytes(CHARSET);
+    }
+
+    /**
+     * Reads the name of the base revision of a delta file.
+     *
+     * @param deltaFile the delta file.
+     * @return name of the base revision.
+     * @throws IOException if the file can not be read.
+     */
+    private static String readBase(final File deltaFile) throws IOException {
+        return readBase(new String(Files.readAllBytes(deltaFile.toPath()), CHARSET));
+    }
+
+    private static String readBase(final String delta) throws IOException {
+        final int end = delta.indexOf('\n');
+        if (!delta.startsWith(BASE_PREFIX) || end < 0) {
+            throw new IOException("Malformed delta");
+        }
+        return delta.substring(BASE_PREFIX.length(), end);
+    }
+
+    /**
+     * Splits content into lines. Line separators other than the newline stay
+     * part of the lines and a trailing newline yields an empty last line, so
+     * joining the lines with newlines gives back the content.
+     *
+     * @param content to split.
+     * @return the lines.
+     */
+    private static List<String> toLines(final byte[] content) {
+        return Arrays.asList(new String(content, CHARSET).split("\n", -1));
+    }
+
+    /**
+     * Writes a file through a temporary file, so readers never see it half
+     * written.
+     *
+     * @param target  file to write.
+     * @param content of the file.
+     * @throws IOException if writing fails.
+     */
+    private static void writeAtomically(final Path target, final byte[] content)
+            throws IOException {
+        final Path temp = Files.createTempFile(target.getParent(),
+                target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Schedules the deletion of an evicted reconstruction. Callers hold the
+     * class lock.
+     *
+     * @param file the reconstructed configuration, may be null.
+     */
+    private static void retire(final File file) {
+        if (file == null) {
+            return;
+        }
+        RETIRED.add(new Retired(file,
+                System.nanoTime() + TimeUnit.SECONDS.toNanos(RETIRE_DELAY)));
+        if (!sweepScheduled) {
+            sweepScheduled = true;
+            Timer.get().schedule(() -> sweep(System.nanoTime()), RETIRE_DELAY, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Deletes the evicted reconstructions whose delay has passed.
+     *
+     * @param now the current {@link System#nanoTime()}.
+     */
+    static void sweep(final long now) {
+        synchronized (RevisionDeltas.class) {
+            while (!RETIRED.isEmpty() && RETIRED.peekFirst().deadline - now <= 0) {
+                FileUtils.deleteQuietly(RETIRED.removeFirst().file);
+            }
+            sweepScheduled = !RETIRED.isEmpty();
+            if (sweepScheduled) {
+                Timer.get().schedule(() -> sweep(System.nanoTime()),
+                        RETIRED.peekFirst().deadline - now, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static File getCacheDir() throws IOException {
+        if (cacheDir == null || !cacheDir.isDirectory()) {
+            cacheDir = Files.createTempDirectory("config-history-revisions").toFile();
+        }
+        return cacheDir;
+    }
+
+    /**
+     * Removes the reconstructed configurations when Jenkins goes down.
+     */
+    @Terminator
+    public static void clearCache() {
+        synchronized (RevisionDeltas.class) {
+            CACHE.clear();
+            RETIRED.clear();
+            if (cacheDir != null) {
+                FileUtils.deleteQuietly(cacheDir);
+                cacheDir = null;
+            }
+        }
+    }
+
+    /**
+     * A reconstruction evicted from the cache.
+     */
+    private static final class Retired {
+
+        private final File file;
+
+        /**
+         * {@link System#nanoTime()} after which the file may be deleted.
+         */
+        private final long deadline;
+
+        Retired(final File file, final long deadline) {
+            this.file = file;
+            this.deadline = deadline;
+        }
+    }
+}
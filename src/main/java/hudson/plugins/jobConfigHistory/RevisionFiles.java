@@ -0,0 +1,217 @@
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads the configuration files stored in history directories, which are
+ * either plain or, if compression is enabled, gzipped with
+ * {@link #COMPRESSED_SUFFIX} appended to their name.
+ * <p>
+ * {@link XmlFile} can't be taught to decompress, so everything reading a
+ * stored revision goes through the streams returned here instead of reading
+ * {@link XmlFile#getFile()} itself. The same holds for revisions moved into a
+ * {@link RevisionPack}, whose files only exist virtually.
+ */
+final class RevisionFiles {
+
+    /**
+     * Suffix of compressed configuration files.
+     */
+    static final String COMPRESSED_SUFFIX = ".gz";
+
+    /**
+     * Finds the encoding in the XML declaration.
+     */
+    private static final Pattern ENCODING = Pattern
+            .compile("^<\\?xml[^>]*encoding=[\"']([^\"']+)[\"']");
+
+    /**
+     * Number of bytes which hold the XML declaration.
+     */
+    private static final int DECLARATION_LENGTH = 200;
+
+    private RevisionFiles() {
+    }
+
+    /**
+     * @param file stored configuration file.
+     * @return true if the file is compressed.
+     */
+    static boolean isCompressed(final File file) {
+        return file.getName().endsWith(COMPRESSED_SUFFIX);
+    }
+
+    /**
+     * Returns the name of the configuration a stored file holds.
+     *
+     * @param file stored configuration file.
+     * @return name without {@link #COMPRESSED_SUFFIX}.
+     */
+    static String getConfigName(final File file) {
+        final String name = file.getName();
+        return isCompressed(file)
+                ? name.substring(0, name.length() - COMPRESSED_SUFFIX.length())
+                : name;
+    }
+
+    /**
+     * @param file stored configuration file.
+     * @return true if the file exists, on disk or in a pack.
+     */
+    static boolean exists(final File file) {
+        return RevisionPack.isPacked(file) ? RevisionPack.exists(file) : file.exists();
+    }
+
+    /**
+     * Opens a stored configuration file, decompressing it if needed.
+     *
+     * @param file stored configuration file.
+     * @return the content.
+     * @throws IOException if the file can't be read.
+     */
+    static InputStream newInputStream(final File file) throws IOException {
+        final InputStream in = RevisionPack.isPacked(file)
+                ? RevisionPack.newInputStream(file)
+                : Files.newInputStream(file.toPath());
+        if (!isCompressed(file)) {
+            return in;
+        }
+        try {
+            return new GZIPInputStream(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a stored configuration file, decompressing it if needed.
+     *
+     * @param file stored configuration file.
+     * @return the content.
+     * @throws IOException if the file can't be read.
+     */
+    static byte[] readAllBytes(final File file) throws IOException {
+        if (!isCompressed(file)) {
+            return RevisionPack.isPacked(file) ? RevisionPack.readAllBytes(file)
+                    : Files.readAllBytes(file.toPath());
+        }
+        try (InputStream in = newInputStream(file)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    /**
+     * Opens a stored configuration for reading characters, using the encoding
+     * of its XML declaration like {@link XmlFile#readRaw()}.
+     *
+     * @param xmlFile stored configuration.
+     * @return the content.
+     * @throws IOException if the file can't be read.
+     */
+    static Reader newReader(final XmlFile xmlFile) throws IOException {
+        final File file = xmlFile.getFile();
+        if (!isCompressed(file) && !RevisionPack.isPacked(file)) {
+            return xmlFile.readRaw();
+        }
+        final BufferedInputStream in = new BufferedInputStream(newInputStream(file));
+        try {
+            in.mark(DECLARATION_LENGTH);
+            final byte[] declaration = new byte[DECLARATION_LENGTH];
+            final int length = IOUtils.read(in, declaration);
+            in.reset();
+            return new InputStreamReader(in, sniffEncoding(declaration, length));
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a stored configuration, like {@link XmlFile#asString()}.
+     *
+     * @param xmlFile stored configuration.
+     * @return the content.
+     * @throws IOException if the file can't be read.
+     */
+    static String asString(final XmlFile xmlFile) throws IOException {
+        final File file = xmlFile.getFile();
+        if (!isCompressed(file) && !RevisionPack.isPacked(file)) {
+            return xmlFile.asString();
+        }
+        final byte[] content = readAllBytes(file);
+        return new String(content, sniffEncoding(content, content.length));
+    }
+
+    /**
+     * Reads a stored history description, like {@link XmlFile#read()}.
+     *
+     * @param xmlFile stored history description.
+     * @return the unmarshalled object.
+     * @throws IOException if the file can't be read.
+     */
+    static Object read(final XmlFile xmlFile) throws IOException {
+        final File file = xmlFile.getFile();
+        if (!RevisionPack.isPacked(file)) {
+            return xmlFile.read();
+        }
+        try (InputStream in = RevisionPack.newInputStream(file)) {
+            return xmlFile.getXStream().fromXML(in);
+        } catch (RuntimeException e) {
+            throw new IOException("Unable to read " + file, e);
+        }
+    }
+
+    /**
+     * Compresses a configuration for storing it.
+     *
+     * @param content of the configuration.
+     * @return the compressed content.
+     * @throws IOException if compressing fails.
+     */
+    static byte[] compress(final byte[] content) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(
+                Math.max(64, content.length / 4));
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(content);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Reads the encoding from the XML declaration.
+     *
+     * @param content of an XML file.
+     * @param length  number of valid bytes in content.
+     * @return the declared encoding, UTF-8 if none or an unknown one is
+     * declared.
+     */
+    private static Charset sniffEncoding(final byte[] content, final int length) {
+        final Matcher matcher = ENCODING.matcher(new String(content, 0,
+                Math.min(length, DECLARATION_LENGTH), StandardCharsets.ISO_8859_1));
+        if (matcher.find()) {
+            try {
+                return Charset.forName(matcher.group(1));
+            } catch (IllegalArgumentException e) {
+                return StandardCharsets.UTF_8;
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
@@ -0,0 +1,130 @@
+package hudson.plugins.jobConfigHistory;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Converts revision identifiers, formatted with
+ * {@link JobConfigHistoryConsts#ID_FORMATTER} and optionally followed by
+ * milliseconds, to and from a {@code long}, so large listings keep eight
+ * bytes per revision instead of a string.
+ * <p>
+ * A key is the local time of the identifier in milliseconds since the epoch,
+ * as if it were UTC, times two, plus one if the identifier has milliseconds.
+ * Keys compare like the identifiers.
+ */
+final class RevisionIds {
+
+    /**
+     * Key of anything which is no identifier.
+     */
+    static final long UNPARSEABLE = Long.MIN_VALUE;
+
+    private static final int SECONDS_LENGTH = JobConfigHistoryConsts.ID_FORMATTER.length();
+
+    private static final int MILLIS_LENGTH = SECONDS_LENGTH
+            + JobConfigHistoryConsts.ID_MILLIS_SEPARATOR.length() + 3;
+
+    private RevisionIds() {
+    }
+
+    /**
+     * @param id a revision identifier, may be null.
+     * @return its key, {@link #UNPARSEABLE} if it is no identifier.
+     */
+    static long toKey(final String id) {
+        if (id == null || (id.length() != SECONDS_LENGTH && id.length() != MILLIS_LENGTH)
+                || !hasSeparators(id)) {
+            return UNPARSEABLE;
+        }
+        final int year = digits(id, 0, 4);
+        final int month = digits(id, 5, 2);
+        final int day = digits(id, 8, 2);
+        final int hour = digits(id, 11, 2);
+        final int minute = digits(id, 14, 2);
+        final int second = digits(id, 17, 2);
+        final boolean hasMillis = id.length() == MILLIS_LENGTH;
+        final int millis = hasMillis ? digits(id, MILLIS_LENGTH - 3, 3) : 0;
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0 || millis < 0) {
+            return UNPARSEABLE;
+        }
+        final long epochSecond;
+        try {
+            epochSecond = LocalDateTime.of(year, month, day, hour, minute, second)
+                    .toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeException e) {
+            return UNPARSEABLE;
+        }
+        return (epochSecond * 1000 + millis) * 2 + (hasMillis ? 1 : 0);
+    }
+
+    /**
+     * @param key the key of a revision identifier.
+     * @return the identifier.
+     */
+    static String toId(final long key) {
+        final boolean hasMillis = (key & 1) != 0;
+        final long epochMillis = key >> 1;
+        final LocalDateTime time = LocalDateTime.ofEpochSecond(
+                Math.floorDiv(epochMillis, 1000), 0, ZoneOffset.UTC);
+        final StringBuilder id = new StringBuilder(MILLIS_LENGTH);
+        append(id, time.getYear(), 4).append('-');
+        append(id, time.getMonthValue(), 2).append('-');
+        append(id, time.getDayOfMonth(), 2).append('_');
+        append(id, time.getHour(), 2).append('-');
+        append(id, time.getMinute(), 2).append('-');
+        append(id, time.getSecond(), 2);
+        if (hasMillis) {
+            id.append(JobConfigHistoryConsts.ID_MILLIS_SEPARATOR);
+            append(id, (int) Math.floorMod(epochMillis, 1000L), 3);
+        }
+        return id.toString();
+    }
+
+    /**
+     * @param key the key of a revision identifier.
+     * @return the time of the revision in milliseconds since the epoch,
+     * taking the identifier as local time, like it is written. A time which
+     * occurs twice, when the clocks are turned back, is taken as the later
+     * one like {@link java.text.SimpleDateFormat} does.
+     */
+    static long toEpochMillis(final long key) {
+        final long localMillis = key >> 1;
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(localMillis, 1000),
+                        (int) Math.floorMod(localMillis, 1000L) * 1_000_000, ZoneOffset.UTC)
+                .atZone(ZoneId.systemDefault()).withLaterOffsetAtOverlap()
+                .toInstant().toEpochMilli();
+    }
+
+    private static boolean hasSeparators(final String id) {
+        return id.charAt(4) == '-' && id.charAt(7) == '-' && id.charAt(10) == '_'
+                && id.charAt(13) == '-' && id.charAt(16) == '-'
+                && (id.length() == SECONDS_LENGTH
+                || id.startsWith(JobConfigHistoryConsts.ID_MILLIS_SEPARATOR, SECONDS_LENGTH));
+    }
+
+    /**
+     * @return the number, -1 if there are other characters than digits.
+     */
+    private static int digits(final String id, final int start, final int length) {
+        int number = 0;
+        for (int i = start; i < start + length; i++) {
+            final char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    private static StringBuilder append(final StringBuilder id, final int number, final int length) {
+        final String digits = Integer.toString(number);
+        for (int i = digits.length(); i < length; i++) {
+            id.append('0');
+        }
+        return id.append(digits);
+    }
+}
@@ -0,0 +1,140 @@
+package hudson.plugins.jobConfigHistory;
+
+import jenkins.util.SystemProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The revisions of recently shown items, so the several calls of
+ * {@link FileHistoryDao#getRevisions(hudson.XmlFile)} and friends while
+ * rendering one page list the history directory of the item only once.
+ * <p>
+ * Each {@link FileHistoryDao} keeps its own, shared with its views for other
+ * users, and drops the revisions of an item when it adds, deletes, purges or
+ * moves revisions. They are also listed again when the
+ * modification time of the history directory of the item changed otherwise.
+ * The least recently used items are dropped once more than
+ * {@link #MAX_REVISIONS} revisions are kept.
+ */
+final class RevisionIndexes {
+
+    /**
+     * Number of revisions kept in memory, of all items together.
+     */
+    static final int MAX_REVISIONS = SystemProperties.getInteger(
+            RevisionIndexes.class.getName() + ".maxRevisions", 100_000);
+
+    /**
+     * Revisions of an item and the modification time of its history
+     * directory when they were listed.
+     */
+    private static final class Index {
+
+        private final long lastModified;
+        private final SortedMap<String, HistoryDescr> revisions;
+
+        private Index(long lastModified, SortedMap<String, HistoryDescr> revisions) {
+            this.lastModified = lastModified;
+            this.revisions = revisions;
+        }
+    }
+
+    /**
+     * Indices by history directory of the item, least recently used first.
+     * Guarded by this.
+     */
+    private final Map<File, Index> indices = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Number of revisions in {@link #indices}.
+     */
+    private int size;
+
+    /**
+     * Incremented by every change, so revisions listed before a change are
+     * not kept after it.
+     */
+    private long generation;
+
+    /**
+     * @param itemHistoryDir history directory of the item.
+     * @param lister         lists the revisions of the item.
+     * @return the unmodifiable revisions of the item, by identifier.
+     */
+    SortedMap<String, HistoryDescr> get(File itemHistoryDir,
+                                        Function<File, SortedMap<String, HistoryDescr>> lister) {
+        final File key = itemHistoryDir.getAbsoluteFile();
+        final long lastModified = lastModified(key);
+        final long listedGeneration;
+        synchronized (this) {
+            final Index cached = indices.get(key);
+            if (cached != null && cached.lastModified == lastModified) {
+                return cached.revisions;
+            }
+            listedGeneration = generation;
+        }
+        final SortedMap<String, HistoryDescr> revisions = Collections
+                .unmodifiableSortedMap(lister.apply(itemHistoryDir));
+        // a missing directory has no modification time to check against
+        if (lastModified != 0) {
+            synchronized (this) {
+                if (listedGeneration == generation) {
+                    remove(key);
+                    indices.put(key, new Index(lastModified, revisions));
+                    size += revisions.size();
+                    evict();
+                }
+            }
+        }
+        return revisions;
+    }
+
+    /**
+     * Drops the revisions of an item after they changed.
+     *
+     * @param itemHistoryDir history directory of the item.
+     */
+    synchronized void invalidate(File itemHistoryDir) {
+        generation++;
+        remove(itemHistoryDir.getAbsoluteFile());
+    }
+
+    /**
+     * @return the modification time in the finest resolution the file system
+     * has, 0 if the directory is missing.
+     */
+    private static long lastModified(File dir) {
+        try {
+            return Files.getLastModifiedTime(dir.toPath()).to(TimeUnit.NANOSECONDS);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void remove(File key) {
+        final Index removed = indices.remove(key);
+        if (removed != null) {
+            size -= removed.revisions.size();
+        }
+    }
+
+    /**
+     * Drops the least recently used items, but keeps the one just listed.
+     */
+    private void evict() {
+        final Iterator<Index> eldest = indices.values().iterator();
+        while (size > MAX_REVISIONS && indices.size() > 1) {
+            size -= eldest.next().revisions.size();
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package hudson.plugins.jobConfigHistory;
+
+import jenkins.util.SystemProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Name, size and digest of the configuration file of each revision of an
+ * item, so the configuration of a revision is found without listing its
+ * directory.
+ * <p>
+ * The manifest, {@value #MANIFEST_FILE} in the history directory of the item,
+ * is written from the revision directories when the first revision is added
+ * after the upgrade, and gets a line appended once the configuration of a new
+ * revision is written. Until the manifest exists, revisions are not recorded
+ * at all. Revisions without a configuration are not in it, and the manifest
+ * may still name revisions which were changed behind our back, e.g. by an
+ * older version of the plugin. It is therefore only a hint: callers check
+ * that the named file exists and fall back to listing the revision directory.
+ * <p>
+ * The parsed manifests of the least recently used items are dropped once
+ * more than {@link #MAX_ENTRIES} revisions are kept in memory.
+ */
+final class RevisionManifest {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(RevisionManifest.class.getName());
+
+    /**
+     * Name of the manifest in the history directory of an item.
+     */
+    static final String MANIFEST_FILE = "manifest.log";
+
+    /**
+     * First line of the manifest.
+     */
+    private static final String HEADER = "# job-config-history manifest 1";
+
+    /**
+     * Stands for a missing digest.
+     */
+    private static final String NO_DIGEST = "-";
+
+    /**
+     * Number of revisions whose configuration file is kept in memory, of all
+     * items together.
+     */
+    static final int MAX_ENTRIES = SystemProperties.getInteger(
+            RevisionManifest.class.getName() + ".maxEntries", 100_000);
+
+    /**
+     * Parsed manifests by manifest file, least recently used first. Guarded
+     * by {@link #INDICES}, as the class guards writing the manifests.
+     */
+    private static final Map<File, Index> INDICES = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Number of revisions in {@link #INDICES}.
+     */
+    private static int size;
+
+    /**
+     * The configuration file of a revision.
+     */
+    static final class Entry {
+
+        /**
+         * Name of the configuration file as written, possibly compressed.
+         */
+        final String configName;
+
+        /**
+         * Size of the configuration file as written, -1 if unknown.
+         */
+        final long size;
+
+        /**
+         * Digest of the uncompressed configuration, null if unknown.
+         */
+        final String digest;
+
+        private Entry(String configName, long size, String digest) {
+            this.configName = configName;
+            this.size = size;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * A parsed manifest, valid as long as the manifest file has the same key,
+     * size and modification time.
+     */
+    private static final class Index {
+
+        private final Object fileKey;
+        private final long size;
+        private final long lastModified;
+        private final Map<String, Entry> entries;
+
+        private Index(BasicFileAttributes attributes, Map<String, Entry> entries) {
+            this.fileKey = attributes.fileKey();
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.entries = entries;
+        }
+
+        private boolean isValidFor(BasicFileAttributes attributes) {
+            return Objects.equals(fileKey, attributes.fileKey())
+                    && size == attributes.size()
+                    && lastModified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    private RevisionManifest() {
+    }
+
+    /**
+     * @param revisionDir a revision directory.
+     * @return the recorded configuration file of the revision, null if the
+     * revision is not in the manifest.
+     */
+    static Entry get(File revisionDir) {
+        final File itemHistoryDir = revisionDir.getParentFile();
+        return itemHistoryDir == null ? null
+                : readIndex(getManifestFile(itemHistoryDir)).get(revisionDir.getName());
+    }
+
+    /**
+     * Writes the manifest of an item from its revision directories, unless it
+     * exists. Failures are logged only, as the manifest is just a hint.
+     *
+     * @param itemHistoryDir history directory of the item.
+     */
+    static synchronized void create(File itemHistoryDir) {
+        final File manifest = getManifestFile(itemHistoryDir);
+        if (manifest.exists()) {
+            return;
+        }
+        final File[] revisionDirs = itemHistoryDir.listFiles(HistoryFileFilter.INSTANCE);
+        if (revisionDirs == null) {
+            return;
+        }
+        final StringBuilder content = new StringBuilder(HEADER).append('\n');
+        for (File revisionDir : revisionDirs) {
+            final File configFile = FileHistoryDao.getConfigFile(revisionDir);
+            if (configFile != null) {
+                append(content, revisionDir.getName(),
+                        new Entry(configFile.getName(), configFile.length(), null));
+                continue;
+            }
+            final File deltaFile = RevisionDeltas.getDeltaFile(revisionDir);
+            if (deltaFile != null) {
+                final String name = deltaFile.getName();
+                append(content, revisionDir.getName(), new Entry(
+                        name.substring(0, name.length() - RevisionDeltas.DELTA_SUFFIX.length()),
+                        -1, null));
+            }
+        }
+        replace(itemHistoryDir, manifest, content);
+    }
+
+    /**
+     * Records the configuration file of a new revision, if the manifest of
+     * the item exists. Failures are logged only, as the manifest is just a
+     * hint.
+     *
+     * @param revisionDir the revision directory.
+     * @param configFile  the configuration file written to it.
+     * @param digest      of the uncompressed configuration, may be null.
+     */
+    static synchronized void added(File revisionDir, File configFile, String digest) {
+        final Path manifest = getManifestFile(revisionDir.getParentFile()).toPath();
+        final StringBuilder line = append(new StringBuilder(), revisionDir.getName(),
+                new Entry(configFile.getName(), configFile.length(), digest));
+        try (FileChannel channel = FileChannel.open(manifest, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (NoSuchFileException e) {
+            LOG.log(Level.FINEST, "no manifest {0}", manifest);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to record " + revisionDir + " in " + manifest, e);
+        }
+    }
+
+    /**
+     * Drops removed revisions, and those whose directory is gone otherwise,
+     * from the manifest by replacing it atomically.
+     *
+     * @param itemHistoryDir history directory of the item.
+     * @param revisions      identifiers of the removed revisions.
+     */
+    static synchronized void removed(File itemHistoryDir, Collection<String> revisions) {
+        final File manifest = getManifestFile(itemHistoryDir);
+        final Map<String, Entry> entries = readIndex(manifest);
+        if (entries.isEmpty()) {
+            return;
+        }
+        final StringBuilder content = new StringBuilder(HEADER).append('\n');
+        boolean changed = false;
+        for (Map.Entry<String, Entry> revision : entries.entrySet()) {
+            if (revisions.contains(revision.getKey())
+                    || !new File(itemHistoryDir, revision.getKey()).isDirectory()) {
+                changed = true;
+                continue;
+            }
+            append(content, revision.getKey(), revision.getValue());
+        }
+        if (changed) {
+            replace(itemHistoryDir, manifest, content);
+        }
+    }
+
+    /**
+     * For tests.
+     */
+    static void clearIndices() {
+        synchronized (INDICES) {
+            INDICES.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * @return the number of revisions kept in memory, for tests.
+     */
+    static int getSize() {
+        synchronized (INDICES) {
+            return size;
+        }
+    }
+
+    private static File getManifestFile(File itemHistoryDir) {
+        return new File(itemHistoryDir, MANIFEST_FILE);
+    }
+
+    private static StringBuilder append(StringBuilder content, String revision, Entry entry) {
+        return content.append(revision).append('\t').append(entry.configName).append('\t')
+                .append(entry.size).append('\t')
+                .append(entry.digest == null ? NO_DIGEST : entry.digest).append('\n');
+    }
+
+    /**
+     * Replaces the manifest atomically.
+     */
+    private static void replace(File itemHistoryDir, File manifest, CharSequence content) {
+        try {
+            final Path tmp = Files.createTempFile(itemHistoryDir.toPath(), MANIFEST_FILE, ".tmp");
+            try {
+                Files.write(tmp, content.toString().getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(tmp, manifest.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, manifest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to write " + manifest, e);
+        }
+    }
+
+    private static Map<String, Entry> readIndex(File manifest) {
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(manifest.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            // no manifest, or no history directory at all
+            synchronized (INDICES) {
+                remove(manifest);
+            }
+            return Collections.emptyMap();
+        }
+        synchronized (INDICES) {
+            final Index cached = INDICES.get(manifest);
+            if (cached != null && cached.isValidFor(attributes)) {
+                return cached.entries;
+            }
+        }
+        final Map<String, Entry> entries = new HashMap<>();
+        try {
+            final String content = new String(Files.readAllBytes(manifest.toPath()),
+                    StandardCharsets.UTF_8);
+            // ignores a last line which was not completely written
+            final String[] lines = content.substring(0, content.lastIndexOf('\n') + 1).split("\n");
+            if (lines.length > 0 && HEADER.equals(lines[0])) {
+                for (int i = 1; i < lines.length; i++) {
+                    parse(lines[i], entries);
+                }
+            } else {
+                LOG.log(Level.FINE, "ignoring {0} of unknown format", manifest);
+            }
+        } catch (FileSystemException e) {
+            LOG.log(Level.FINEST, "{0} vanished", manifest);
+            return Collections.emptyMap();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to read " + manifest, e);
+            return Collections.emptyMap();
+        }
+        final Map<String, Entry> unmodifiable = Collections.unmodifiableMap(entries);
+        synchronized (INDICES) {
+            remove(manifest);
+            INDICES.put(manifest, new Index(attributes, unmodifiable));
+            size += unmodifiable.size();
+            evict();
+        }
+        return unmodifiable;
+    }
+
+    private static void remove(File manifest) {
+        final Index removed = INDICES.remove(manifest);
+        if (removed != null) {
+            size -= removed.entries.size();
+        }
+    }
+
+    /**
+     * Drops the least recently used manifests, but keeps the one just read.
+     */
+    private static void evict() {
+        final Iterator<Index> eldest = INDICES.values().iterator();
+        while (size > MAX_ENTRIES && INDICES.size() > 1) {
+            size -= eldest.next().entries.size();
+            eldest.remove();
+        }
+    }
+
+    private static void parse(String line, Map<String, Entry> entries) {
+        final String[] fields = line.split("\t", -1);
+        if (fields.length != 4) {
+            return;
+        }
+        try {
+            entries.put(fields[0], new Entry(fields[1], Long.parseLong(fields[2]),
+                    NO_DIGEST.equals(fields[3]) ? null : fields[3]));
+        } catch (NumberFormatException e) {
+            LOG.log(Level.FINEST, "ignoring malformed line {0}", line);
+        }
+    }
+}
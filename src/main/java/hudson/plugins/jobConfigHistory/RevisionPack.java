@@ -0,0 +1,508 @@
+package hudson.plugins.jobConfigHistory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Packs old revisions of an item into a single file, like git packfiles.
+ * <p>
+ * Each revision directory costs an inode for itself and for each of its
+ * files, and listing the history of an item stats all of them. The
+ * {@link JobConfigHistoryPacker} therefore moves revisions older than a
+ * threshold into {@value #PACK_FILE} in the history directory of the item.
+ * The pack holds the history description and the gzipped configuration of
+ * each packed revision, followed by an index with their offsets and the
+ * offset of the index as the last eight bytes. Reading a revision is one
+ * open and a seek, the index is parsed once and kept as long as the file is
+ * unchanged.
+ * <p>
+ * Removing packed revisions only lists them in {@value #REMOVED_FILE} next
+ * to the pack, so purging entries while a configuration is saved doesn't
+ * rewrite a large pack. The pack is rewritten without them the next time
+ * revisions are added or it is {@link #compact(File) compacted}, one
+ * revision at a time, never reading all of it into memory.
+ * <p>
+ * Packed revisions are addressed by virtual files below the pack, e.g.
+ * {@code history.pack/2024-01-01_00-00-00/config.xml.gz}, which
+ * {@link RevisionFiles} and {@link LazyHistoryDescr} know how to read. Only
+ * full configurations are packed and the newest revision never is, so deltas
+ * never refer to a packed revision.
+ */
+final class RevisionPack {
+
+    /**
+     * Name of the pack file in the history directory of an item.
+     */
+    static final String PACK_FILE = "history.pack";
+
+    /**
+     * Name of the file listing the revisions removed from the pack, one per
+     * line.
+     */
+    static final String REMOVED_FILE = PACK_FILE + ".removed";
+
+    /**
+     * First bytes of a pack file.
+     */
+    private static final byte[] MAGIC = {'J', 'C', 'H', 'P', 'A', 'C', 'K', 1};
+
+    /**
+     * Parsed indices by pack file.
+     */
+    private static final Map<File, Index> INDICES = new ConcurrentHashMap<>();
+
+    private RevisionPack() {
+    }
+
+    /**
+     * A packed revision.
+     */
+    static final class Entry {
+
+        /**
+         * Name of the packed configuration file, empty if the revision has
+         * none, e.g. for deletions.
+         */
+        final String configName;
+
+        private final long historyOffset;
+        private final int historyLength;
+        private final long configOffset;
+        private final int configLength;
+
+        private Entry(String configName, long historyOffset, int historyLength,
+                      long configOffset, int configLength) {
+            this.configName = configName;
+            this.historyOffset = historyOffset;
+            this.historyLength = historyLength;
+            this.configOffset = configOffset;
+            this.configLength = configLength;
+        }
+    }
+
+    /**
+     * Content of a revision to pack.
+     */
+    static final class Revision {
+
+        final String name;
+        final byte[] history;
+        final String configName;
+        final byte[] config;
+
+        /**
+         * @param name       of the revision directory.
+         * @param history    content of the history description.
+         * @param configName name of the gzipped configuration file, empty if
+         *                   there is none.
+         * @param config     gzipped configuration, empty if there is none.
+         */
+        Revision(String name, byte[] history, String configName, byte[] config) {
+            this.name = name;
+            this.history = history;
+            this.configName = configName;
+            this.config = config;
+        }
+    }
+
+    /**
+     * The parsed index of a pack, valid as long as the pack file has the
+     * same key, size and modification time. The entries not removed are
+     * valid as long as the list of removed revisions has the same size and
+     * modification time too.
+     */
+    private static final class Index {
+
+        private final Object fileKey;
+        private final long size;
+        private final long lastModified;
+        private final SortedMap<String, Entry> packed;
+        private final long removedSize;
+        private final long removedLastModified;
+        private final SortedMap<String, Entry> entries;
+
+        private Index(BasicFileAttributes attributes, SortedMap<String, Entry> packed,
+                      BasicFileAttributes removedAttributes, SortedMap<String, Entry> entries) {
+            this.fileKey = attributes.fileKey();
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.packed = packed;
+            this.removedSize = removedAttributes == null ? -1 : removedAttributes.size();
+            this.removedLastModified = removedAttributes == null ? -1
+                    : removedAttributes.lastModifiedTime().toMillis();
+            this.entries = entries;
+        }
+
+        private boolean isValidFor(BasicFileAttributes attributes) {
+            return Objects.equals(fileKey, attributes.fileKey())
+                    && size == attributes.size()
+                    && lastModified == attributes.lastModifiedTime().toMillis();
+        }
+
+        private boolean isValidFor(BasicFileAttributes attributes, BasicFileAttributes removedAttributes) {
+            return isValidFor(attributes)
+                    && removedSize == (removedAttributes == null ? -1 : removedAttributes.size())
+                    && removedLastModified == (removedAttributes == null ? -1
+                    : removedAttributes.lastModifiedTime().toMillis());
+        }
+    }
+
+    /**
+     * @param itemHistoryDir history directory of an item.
+     * @return the pack file of the item.
+     */
+    static File getPackFile(File itemHistoryDir) {
+        return new File(itemHistoryDir, PACK_FILE);
+    }
+
+    /**
+     * Returns the packed revisions of an item.
+     *
+     * @param itemHistoryDir history directory of an item.
+     * @return packed revisions by name, empty if there is no pack.
+     */
+    static SortedMap<String, Entry> getEntries(File itemHistoryDir) {
+        try {
+            return readIndex(getPackFile(itemHistoryDir));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read pack of " + itemHistoryDir, e);
+        }
+    }
+
+    /**
+     * @param file any file.
+     * @return true if the file is a virtual file of a packed revision.
+     */
+    static boolean isPacked(File file) {
+        final File revisionDir = file.getParentFile();
+        return revisionDir != null && revisionDir.getParentFile() != null
+                && PACK_FILE.equals(revisionDir.getParentFile().getName())
+                && revisionDir.getParentFile().isFile();
+    }
+
+    /**
+     * Returns the virtual file of the history description of a packed
+     * revision.
+     *
+     * @param historyDir revision directory, which does not exist if packed.
+     * @return the virtual file, null if the revision is not packed.
+     */
+    static File getHistoryFile(File historyDir) {
+        final File itemHistoryDir = historyDir.getParentFile();
+        if (!getEntries(itemHistoryDir).containsKey(historyDir.getName())) {
+            return null;
+        }
+        return new File(new File(getPackFile(itemHistoryDir), historyDir.getName()),
+                JobConfigHistoryConsts.HISTORY_FILE);
+    }
+
+    /**
+     * Returns the virtual file of the configuration of a packed revision.
+     *
+     * @param historyDir revision directory, which does not exist if packed.
+     * @return the virtual file, null if the revision is not packed or has no
+     * configuration.
+     */
+    static File getConfigFile(File historyDir) {
+        final File itemHistoryDir = historyDir.getParentFile();
+        final Entry entry = getEntries(itemHistoryDir).get(historyDir.getName());
+        if (entry == null || entry.configName.isEmpty()) {
+            return null;
+        }
+        return new File(new File(getPackFile(itemHistoryDir), historyDir.getName()),
+                entry.configName);
+    }
+
+    /**
+     * @param file virtual file of a packed revision.
+     * @return true if the revision is in the pack.
+     */
+    static boolean exists(File file) {
+        final Entry entry = getEntry(file);
+        return entry != null && (isHistoryFile(file) || file.getName().equals(entry.configName));
+    }
+
+    /**
+     * Reads a virtual file of a packed revision.
+     *
+     * @param file virtual file of a packed revision.
+     * @return its content, still compressed for configurations.
+     * @throws IOException if the file is not in the pack or can't be read.
+     */
+    static byte[] readAllBytes(File file) throws IOException {
+        final Entry entry = getEntry(file);
+        if (entry == null || !(isHistoryFile(file) || file.getName().equals(entry.configName))) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        final boolean history = isHistoryFile(file);
+        final byte[] content = new byte[history ? entry.historyLength : entry.configLength];
+        try (RandomAccessFile pack = new RandomAccessFile(file.getParentFile().getParentFile(), "r")) {
+            pack.seek(history ? entry.historyOffset : entry.configOffset);
+            pack.readFully(content);
+        }
+        return content;
+    }
+
+    /**
+     * Opens a virtual file of a packed revision.
+     *
+     * @param file virtual file of a packed revision.
+     * @return its content, still compressed for configurations.
+     * @throws IOException if the file is not in the pack or can't be read.
+     */
+    static InputStream newInputStream(File file) throws IOException {
+        return new ByteArrayInputStream(readAllBytes(file));
+    }
+
+    /**
+     * Adds revisions to the pack of an item, replacing the pack atomically.
+     *
+     * @param itemHistoryDir history directory of an item.
+     * @param revisions      to add, replacing packed ones of the same name.
+     * @throws IOException if the pack can't be written.
+     */
+    static synchronized void add(File itemHistoryDir, Collection<Revision> revisions)
+            throws IOException {
+        final SortedMap<String, Revision> added = new TreeMap<>();
+        for (Revision revision : revisions) {
+            added.put(revision.name, revision);
+        }
+        write(itemHistoryDir, added);
+    }
+
+    /**
+     * Removes revisions from the pack of an item, deleting the pack once it
+     * is empty. Otherwise the revisions are only listed as removed, the pack
+     * is rewritten without them later.
+     *
+     * @param itemHistoryDir history directory of an item.
+     * @param names          of the revisions to remove.
+     * @return the number of removed revisions.
+     * @throws IOException if the removal can't be written.
+     */
+    static synchronized int remove(File itemHistoryDir, Collection<String> names)
+            throws IOException {
+        final SortedMap<String, Entry> entries = readIndex(getPackFile(itemHistoryDir));
+        final Set<String> removed = new TreeSet<>(names);
+        removed.retainAll(entries.keySet());
+        if (removed.isEmpty()) {
+            return 0;
+        }
+        if (removed.size() == entries.size()) {
+            delete(itemHistoryDir);
+        } else {
+            Files.write(getRemovedFile(itemHistoryDir).toPath(), removed, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        return removed.size();
+    }
+
+    /**
+     * Rewrites the pack of an item without the revisions removed from it.
+     *
+     * @param itemHistoryDir history directory of an item.
+     * @return true if the pack was rewritten.
+     * @throws IOException if the pack can't be written.
+     */
+    static synchronized boolean compact(File itemHistoryDir) throws IOException {
+        if (!getRemovedFile(itemHistoryDir).exists()) {
+            return false;
+        }
+        write(itemHistoryDir, Collections.emptySortedMap());
+        return true;
+    }
+
+    /**
+     * For tests.
+     */
+    static void clearIndices() {
+        INDICES.clear();
+    }
+
+    private static boolean isHistoryFile(File file) {
+        return JobConfigHistoryConsts.HISTORY_FILE.equals(file.getName());
+    }
+
+    private static Entry getEntry(File file) {
+        if (!isPacked(file)) {
+            return null;
+        }
+        final File revisionDir = file.getParentFile();
+        try {
+            return readIndex(revisionDir.getParentFile()).get(revisionDir.getName());
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read " + revisionDir.getParentFile(), e);
+        }
+    }
+
+    private static File getRemovedFile(File itemHistoryDir) {
+        return new File(itemHistoryDir, REMOVED_FILE);
+    }
+
+    private static BasicFileAttributes readAttributes(File file) throws IOException {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (FileSystemException e) {
+            // no such file, or no history directory at all
+            if (file.exists()) {
+                throw e;
+            }
+            return null;
+        }
+    }
+
+    private static SortedMap<String, Entry> readIndex(File packFile) throws IOException {
+        final BasicFileAttributes attributes = readAttributes(packFile);
+        if (attributes == null) {
+            INDICES.remove(packFile);
+            return Collections.emptySortedMap();
+        }
+        final File removedFile = getRemovedFile(packFile.getParentFile());
+        final BasicFileAttributes removedAttributes = readAttributes(removedFile);
+        final Index cached = INDICES.get(packFile);
+        if (cached != null && cached.isValidFor(attributes, removedAttributes)) {
+            return cached.entries;
+        }
+        final SortedMap<String, Entry> packed = cached != null && cached.isValidFor(attributes)
+                ? cached.packed : readPackedIndex(packFile);
+        SortedMap<String, Entry> entries = packed;
+        if (removedAttributes != null) {
+            entries = new TreeMap<>(packed);
+            entries.keySet().removeAll(Files.readAllLines(removedFile.toPath(), StandardCharsets.UTF_8));
+            entries = Collections.unmodifiableSortedMap(entries);
+        }
+        INDICES.put(packFile, new Index(attributes, packed, removedAttributes, entries));
+        return entries;
+    }
+
+    private static SortedMap<String, Entry> readPackedIndex(File packFile) throws IOException {
+        final SortedMap<String, Entry> entries = new TreeMap<>();
+        try (RandomAccessFile pack = new RandomAccessFile(packFile, "r")) {
+            final byte[] magic = new byte[MAGIC.length];
+            pack.readFully(magic);
+            if (!Arrays.equals(MAGIC, magic)) {
+                throw new IOException(packFile + " is not a history pack");
+            }
+            pack.seek(pack.length() - Long.BYTES);
+            final long indexOffset = pack.readLong();
+            pack.seek(indexOffset);
+            final int count = pack.readInt();
+            for (int i = 0; i < count; i++) {
+                final String name = pack.readUTF();
+                final long historyOffset = pack.readLong();
+                final int historyLength = pack.readInt();
+                final String configName = pack.readUTF();
+                final long configOffset = pack.readLong();
+                final int configLength = pack.readInt();
+                entries.put(name, new Entry(configName, historyOffset, historyLength,
+                        configOffset, configLength));
+            }
+        }
+        return Collections.unmodifiableSortedMap(entries);
+    }
+
+    private static byte[] read(RandomAccessFile pack, long offset, int length) throws IOException {
+        final byte[] content = new byte[length];
+        pack.seek(offset);
+        pack.readFully(content);
+        return content;
+    }
+
+    private static void delete(File itemHistoryDir) throws IOException {
+        final File packFile = getPackFile(itemHistoryDir);
+        Files.deleteIfExists(packFile.toPath());
+        Files.deleteIfExists(getRemovedFile(itemHistoryDir).toPath());
+        INDICES.remove(packFile);
+    }
+
+    /**
+     * Writes the pack of an item anew, with the revisions still packed and
+     * the added ones, copying the packed ones one at a time.
+     */
+    private static void write(File itemHistoryDir, SortedMap<String, Revision> added)
+            throws IOException {
+        final File packFile = getPackFile(itemHistoryDir);
+        final SortedMap<String, Entry> packed = new TreeMap<>(readIndex(packFile));
+        packed.keySet().removeAll(added.keySet());
+        final SortedSet<String> names = new TreeSet<>(packed.keySet());
+        names.addAll(added.keySet());
+        if (names.isEmpty()) {
+            delete(itemHistoryDir);
+            return;
+        }
+        final Path tmp = Files.createTempFile(itemHistoryDir.toPath(), PACK_FILE, ".tmp");
+        try {
+            try (RandomAccessFile pack = packed.isEmpty() ? null : new RandomAccessFile(packFile, "r");
+                 OutputStream file = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(
+                         new BufferedOutputStream(file))) {
+                out.write(MAGIC);
+                // counted here, DataOutputStream#size() stops at 2 GB
+                long offset = MAGIC.length;
+                final Map<String, Entry> written = new LinkedHashMap<>();
+                for (String name : names) {
+                    final Revision revision = added.get(name);
+                    final Entry entry = packed.get(name);
+                    final byte[] history = revision != null ? revision.history
+                            : read(pack, entry.historyOffset, entry.historyLength);
+                    final byte[] config = revision != null ? revision.config
+                            : read(pack, entry.configOffset, entry.configLength);
+                    out.write(history);
+                    out.write(config);
+                    written.put(name, new Entry(revision != null ? revision.configName : entry.configName,
+                            offset, history.length, offset + history.length, config.length));
+                    offset += history.length + config.length;
+                }
+                out.writeInt(written.size());
+                for (Map.Entry<String, Entry> revision : written.entrySet()) {
+                    final Entry entry = revision.getValue();
+                    out.writeUTF(revision.getKey());
+                    out.writeLong(entry.historyOffset);
+                    out.writeInt(entry.historyLength);
+                    out.writeUTF(entry.configName);
+                    out.writeLong(entry.configOffset);
+                    out.writeInt(entry.configLength);
+                }
+                out.writeLong(offset);
+            }
+            try {
+                Files.move(tmp, packFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, packFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        // the removed revisions are gone with the old pack
+        Files.deleteIfExists(getRemovedFile(itemHistoryDir).toPath());
+        INDICES.remove(packFile);
+    }
+}
@@ -0,0 +1,841 @@
+package hudson.plugins.jobConfigHistory;
+
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Time ordered index of all revisions of jobs, deleted jobs and system
+ * configurations, so the overview is paged without walking the whole history.
+ * <p>
+ * The index is an append-only log, {@value #TIMELINE_FILE} in the history
+ * root, with one line per added, removed or moved revision. Added revisions
+ * keep everything the overview shows, so a page is read by seeking to the
+ * records of its revisions. Each {@link FileHistoryDao} replays the log into
+ * memory once, when the overview is first shown, which leaves only the order and the offsets of the
+ * revisions in memory: a revision is kept as the key of its identifier (see
+ * {@link RevisionIds}), the number of its item in a dictionary of item paths
+ * and its offset. As the history may have been changed behind our back,
+ * e.g. by an older version of the plugin, the replayed index is verified
+ * against the history directories in the background and the log is
+ * compacted. A missing or damaged log is rebuilt from the history directories.
+ * <p>
+ * Until the log exists, revisions are not recorded at all.
+ */
+@Restricted(NoExternalUse.class)
+public final class RevisionTimeline {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(RevisionTimeline.class.getName());
+
+    /**
+     * Name of the log in the history root.
+     */
+    static final String TIMELINE_FILE = "timeline.log";
+
+    /**
+     * First line of the log.
+     */
+    private static final String HEADER = "# job-config-history timeline 1";
+
+    private static final String ADDED = "+";
+    private static final String REMOVED = "-";
+    private static final String MOVED = ">";
+
+    /**
+     * Stands for a null field, as a backslash is escaped otherwise.
+     */
+    private static final String NULL = "\\0";
+
+    /**
+     * The kind of item a revision belongs to.
+     */
+    enum Category {
+        SYSTEM, JOB, DELETED_JOB
+    }
+
+    /**
+     * A revision of the overview.
+     */
+    static final class Revision {
+
+        /**
+         * Name of the item as shown in the overview.
+         */
+        final String itemName;
+        final Category category;
+        final HistoryDescr historyDescr;
+
+        private Revision(String itemName, Category category, HistoryDescr historyDescr) {
+            this.itemName = itemName;
+            this.category = category;
+            this.historyDescr = historyDescr;
+        }
+    }
+
+    /**
+     * A revision in memory, ordered like the overview, by identifier and then
+     * by item number.
+     */
+    private static final class Entry implements Comparable<Entry> {
+
+        /**
+         * Key of the revision identifier.
+         */
+        private final long revision;
+
+        /**
+         * Number of the item in the dictionary.
+         */
+        private final int item;
+
+        /**
+         * Offset of the record in the log.
+         */
+        private long offset;
+
+        private Entry(long revision, int item) {
+            this.revision = revision;
+            this.item = item;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            final int byRevision = Long.compare(revision, other.revision);
+            return byRevision != 0 ? byRevision : Integer.compare(item, other.item);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Entry && compareTo((Entry) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(revision) + item;
+        }
+    }
+
+    private final File historyRootDir;
+    private final File file;
+
+    /**
+     * The indexed revisions, guarded by this.
+     */
+    private final TreeSet<Entry> entries = new TreeSet<>();
+
+    /**
+     * Paths of the items relative to the history root by item number,
+     * guarded by this. The path of an item which was moved onto another one
+     * is null.
+     */
+    private final List<String> itemPaths = new ArrayList<>();
+
+    /**
+     * Categories of the items by item number, guarded by this.
+     */
+    private final List<Category> itemCategories = new ArrayList<>();
+
+    /**
+     * Item numbers by path, guarded by this.
+     */
+    private final Map<String, Integer> itemNumbers = new HashMap<>();
+
+    /**
+     * Whether the log was replayed into {@link #entries}.
+     */
+    private boolean loaded;
+
+    /**
+     * Number of records in the log.
+     */
+    private long records;
+
+    /**
+     * Entries added or removed while the history is verified, which the
+     * verification leaves alone. Null unless verifying.
+     */
+    private Set<Entry> changedWhileVerifying;
+
+    /**
+     * @param historyRootDir the history root.
+     */
+    RevisionTimeline(File historyRootDir) {
+        this.historyRootDir = historyRootDir.getAbsoluteFile();
+        this.file = new File(this.historyRootDir, TIMELINE_FILE);
+    }
+
+    /**
+     * Replays the log, verifying it in the background, or rebuilds it if it
+     * is missing or damaged. Does nothing once loaded.
+     *
+     * @param dao to find the revisions stored in the history directories.
+     * @return false if there is no log, e.g. as it can't be written.
+     */
+    boolean load(FileHistoryDao dao) {
+        final boolean rebuild;
+        synchronized (this) {
+            if (loaded) {
+                return file.exists();
+            }
+            loaded = true;
+            rebuild = !replay();
+        }
+        if (rebuild) {
+            verify(dao);
+        } else {
+            Timer.get().submit(() -> verify(dao));
+        }
+        return file.exists();
+    }
+
+    /**
+     * Records a new revision.
+     *
+     * @param revisionDir  the revision directory.
+     * @param historyDescr its description.
+     */
+    synchronized void added(File revisionDir, HistoryDescr historyDescr) {
+        if (!loaded && !file.exists()) {
+            return;
+        }
+        final File itemDir = revisionDir.getParentFile();
+        final Entry entry = newEntry(itemDir, revisionDir.getName());
+        // folders are not shown in the overview
+        if (entry == null || (itemCategories.get(entry.item) != Category.SYSTEM
+                && new File(itemDir, JobConfigHistoryConsts.JOBS_HISTORY_DIR).isDirectory())) {
+            return;
+        }
+        try {
+            entry.offset = append(encodeAdded(entry, historyDescr));
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to record " + revisionDir + " in " + file, e);
+            return;
+        }
+        if (loaded) {
+            entries.remove(entry);
+            entries.add(entry);
+            changed(entry);
+        }
+    }
+
+    /**
+     * Records removed revisions.
+     *
+     * @param itemDir   history directory of the item.
+     * @param revisions identifiers of the removed revisions.
+     */
+    synchronized void removed(File itemDir, Collection<String> revisions) {
+        if (!loaded && !file.exists()) {
+            return;
+        }
+        final String path = relativePath(itemDir);
+        if (path == null || category(path) == null) {
+            return;
+        }
+        for (String revision : revisions) {
+            try {
+                append(encode(REMOVED, path, revision));
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "unable to record removal of " + revision + " in " + file, e);
+                return;
+            }
+            if (loaded) {
+                final Entry entry = findEntry(path, revision);
+                if (entry != null) {
+                    entries.remove(entry);
+                    changed(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the move of the history of an item, including the items in it.
+     *
+     * @param oldItemDir old history directory of the item.
+     * @param newItemDir new history directory of the item.
+     */
+    synchronized void moved(File oldItemDir, File newItemDir) {
+        if (!loaded && !file.exists()) {
+            return;
+        }
+        final String oldPath = relativePath(oldItemDir);
+        final String newPath = relativePath(newItemDir);
+        if (oldPath == null || newPath == null) {
+            return;
+        }
+        try {
+            append(encode(MOVED, oldPath, newPath));
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to record move of " + oldItemDir + " in " + file, e);
+            return;
+        }
+        if (loaded) {
+            move(oldPath, newPath);
+        }
+    }
+
+    /**
+     * Returns a page of the overview, newest first.
+     *
+     * @param categories of the items to show.
+     * @param from       index of the first revision.
+     * @param to         index of the first revision not to show anymore.
+     * @return the revisions.
+     * @throws IOException if the log can't be read.
+     */
+    synchronized List<Revision> getPage(Set<Category> categories, int from, int to)
+            throws IOException {
+        final List<Revision> page = new ArrayList<>();
+        if (from >= to) {
+            return page;
+        }
+        int index = 0;
+        try (RandomAccessFile log = new RandomAccessFile(file, "r")) {
+            for (Iterator<Entry> it = entries.descendingIterator(); it.hasNext() && index < to; ) {
+                final Entry entry = it.next();
+                final Category category = itemCategories.get(entry.item);
+                if (!categories.contains(category) || index++ < from) {
+                    continue;
+                }
+                final String[] fields = decode(readRecord(log, entry.offset));
+                page.add(new Revision(itemName(itemPaths.get(entry.item), category), category,
+                        new HistoryDescr(fields[6], fields[5], fields[4], fields[3],
+                                fields[7], fields[8], fields[9])));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Replays the log into memory.
+     *
+     * @return false if the log is missing or damaged, in which case it is
+     * started over empty.
+     */
+    private boolean replay() {
+        clearEntries();
+        if (file.exists()) {
+            try {
+                replay(file);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.WARNING, "rebuilding damaged " + file, e);
+                clearEntries();
+            }
+        }
+        try {
+            rewrite(Collections.emptyMap());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to create " + file, e);
+        }
+        return false;
+    }
+
+    private void replay(File log) throws IOException {
+        long offset = 0;
+        long complete = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(log.toPath()))) {
+            final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            boolean header = true;
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                final String record = new String(line.toByteArray(), StandardCharsets.UTF_8);
+                if (header) {
+                    if (!HEADER.equals(record)) {
+                        throw new IOException("unknown format: " + record);
+                    }
+                    header = false;
+                } else {
+                    replayRecord(record, complete);
+                }
+                line.reset();
+                complete = offset;
+            }
+            if (header) {
+                throw new IOException("no header");
+            }
+        }
+        if (complete < offset) {
+            // the last record was not completely written
+            try (FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+            }
+        }
+    }
+
+    private void replayRecord(String record, long offset) throws IOException {
+        final String[] fields = decode(record);
+        records++;
+        switch (fields[0]) {
+            case ADDED:
+                if (fields.length != 10 || category(fields[1]) == null) {
+                    throw new IOException("malformed record: " + record);
+                }
+                final Entry entry = newEntry(fields[1], fields[2]);
+                if (entry != null) {
+                    entry.offset = offset;
+                    entries.remove(entry);
+                    entries.add(entry);
+                }
+                break;
+            case REMOVED:
+                if (fields.length != 3 || category(fields[1]) == null) {
+                    throw new IOException("malformed record: " + record);
+                }
+                final Entry removed = findEntry(fields[1], fields[2]);
+                if (removed != null) {
+                    entries.remove(removed);
+                }
+                break;
+            case MOVED:
+                if (fields.length != 3) {
+                    throw new IOException("malformed record: " + record);
+                }
+                move(fields[1], fields[2]);
+                break;
+            default:
+                throw new IOException("malformed record: " + record);
+        }
+    }
+
+    /**
+     * Compares the index with the history directories, adding and removing
+     * what differs, and compacts the log.
+     *
+     * @param dao to find the revisions stored in the history directories.
+     */
+    void verify(FileHistoryDao dao) {
+        synchronized (this) {
+            changedWhileVerifying = new HashSet<>();
+        }
+        try {
+            final Set<Entry> stored = new HashSet<>();
+            final Map<Entry, HistoryDescr> missing = new TreeMap<>();
+            for (File itemDir : dao.getSystemConfigs()) {
+                collect(stored, missing, itemDir, dao.getSystemHistory(itemDir.getName()));
+            }
+            for (File itemDir : dao.getJobs()) {
+                collect(stored, missing, itemDir, dao.getJobHistory(getJobName(itemDir)));
+            }
+            for (File itemDir : dao.getDeletedJobs()) {
+                collect(stored, missing, itemDir, dao.getJobHistory(getJobName(itemDir)));
+            }
+            synchronized (this) {
+                int removed = 0;
+                for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+                    final Entry entry = it.next();
+                    if (!stored.contains(entry) && !changedWhileVerifying.contains(entry)) {
+                        it.remove();
+                        removed++;
+                    }
+                }
+                // items may have been moved onto others in the meantime
+                missing.keySet().removeIf(entry -> entries.contains(entry)
+                        || changedWhileVerifying.contains(entry) || itemPaths.get(entry.item) == null);
+                if (removed > 0 || !missing.isEmpty() || records > entries.size()) {
+                    LOG.log(Level.FINE, "{0}: {1} revisions missing, {2} removed, compacting",
+                            new Object[]{file, missing.size(), removed});
+                    try {
+                        rewrite(missing);
+                    } catch (IOException | RuntimeException e) {
+                        LOG.log(Level.WARNING, "unable to compact " + file, e);
+                    }
+                }
+            }
+        } finally {
+            synchronized (this) {
+                changedWhileVerifying = null;
+            }
+        }
+    }
+
+    /**
+     * Collects the revisions stored for an item, keeping the descriptions
+     * only of those missing in the index.
+     */
+    private void collect(Set<Entry> stored, Map<Entry, HistoryDescr> missing, File itemDir,
+                         Map<String, HistoryDescr> revisions) {
+        final String path = relativePath(itemDir);
+        if (path == null || category(path) == null) {
+            return;
+        }
+        synchronized (this) {
+            for (Map.Entry<String, HistoryDescr> revision : revisions.entrySet()) {
+                final Entry entry = newEntry(path, revision.getKey());
+                if (entry == null) {
+                    continue;
+                }
+                stored.add(entry);
+                if (!entries.contains(entry)) {
+                    missing.put(entry, revision.getValue());
+                }
+            }
+        }
+    }
+
+    private String getJobName(File itemDir) {
+        final String path = relativePath(itemDir);
+        return path == null ? itemDir.getName() : path.substring(HistoryPaths.JOBS_PREFIX.length());
+    }
+
+    /**
+     * Writes the indexed revisions and the missing ones to a new log, which
+     * replaces the old one atomically. Guarded by this.
+     *
+     * @param missing revisions to add.
+     * @throws IOException if the log can't be written.
+     */
+    private void rewrite(Map<Entry, HistoryDescr> missing) throws IOException {
+        final Map<Entry, String> added = new TreeMap<>();
+        for (Map.Entry<Entry, HistoryDescr> revision : missing.entrySet()) {
+            try {
+                added.put(revision.getKey(), encodeAdded(revision.getKey(), revision.getValue()));
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "unable to index revision "
+                        + RevisionIds.toId(revision.getKey().revision)
+                        + " of " + itemPaths.get(revision.getKey().item), e);
+            }
+        }
+        final Path tmp = Files.createTempFile(historyRootDir.toPath(), TIMELINE_FILE, ".tmp");
+        final Map<Entry, Long> offsets = new TreeMap<>();
+        try {
+            try (RandomAccessFile old = file.exists() ? new RandomAccessFile(file, "r") : null;
+                 CountingOutputStream out = new CountingOutputStream(
+                         new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeLine(HEADER);
+                for (Entry entry : entries) {
+                    offsets.put(entry, out.count);
+                    final String[] fields = decode(readRecord(old, entry.offset));
+                    // the item may have been moved since
+                    fields[1] = itemPaths.get(entry.item);
+                    out.writeLine(encode(fields));
+                }
+                for (Map.Entry<Entry, String> revision : added.entrySet()) {
+                    offsets.put(revision.getKey(), out.count);
+                    out.writeLine(revision.getValue());
+                }
+            }
+            try {
+                Files.move(tmp, file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        entries.addAll(added.keySet());
+        for (Entry entry : entries) {
+            entry.offset = offsets.get(entry);
+        }
+        records = entries.size();
+    }
+
+    /**
+     * Appends a record. Guarded by this.
+     *
+     * @param record to append.
+     * @return its offset.
+     * @throws IOException if the log can't be written.
+     */
+    private long append(String record) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            final long offset = channel.size();
+            final ByteBuffer buffer = ByteBuffer.wrap(
+                    (record + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            records++;
+            return offset;
+        }
+    }
+
+    /**
+     * Changes the path of an item and of the items in it. An item moved onto
+     * an item which is already known is merged into it. Guarded by this.
+     */
+    private void move(String oldPath, String newPath) {
+        final int known = itemPaths.size();
+        for (int item = 0; item < known; item++) {
+            final String path = itemPaths.get(item);
+            if (path == null || !(path.equals(oldPath) || path.startsWith(oldPath + "/"))) {
+                continue;
+            }
+            final String movedPath = newPath + path.substring(oldPath.length());
+            final Category movedCategory = category(movedPath);
+            itemNumbers.remove(path);
+            final Integer existing = itemNumbers.get(movedPath);
+            if (existing == null && movedCategory != null) {
+                itemPaths.set(item, movedPath);
+                itemCategories.set(item, movedCategory);
+                itemNumbers.put(movedPath, item);
+                continue;
+            }
+            itemPaths.set(item, null);
+            final List<Entry> moved = new ArrayList<>();
+            for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+                final Entry entry = it.next();
+                if (entry.item == item) {
+                    it.remove();
+                    moved.add(entry);
+                }
+            }
+            if (existing == null) {
+                // not shown in the overview anymore
+                continue;
+            }
+            for (Entry entry : moved) {
+                final Entry movedEntry = new Entry(entry.revision, existing);
+                movedEntry.offset = entry.offset;
+                entries.remove(movedEntry);
+                entries.add(movedEntry);
+            }
+        }
+    }
+
+    /**
+     * @return a new entry, null if the item is not shown in the overview.
+     */
+    private Entry newEntry(File itemDir, String revision) {
+        final String path = relativePath(itemDir);
+        return path == null ? null : newEntry(path, revision);
+    }
+
+    /**
+     * Creates an entry, adding its item to the dictionary if it is new.
+     * Guarded by this.
+     *
+     * @param path     of the item relative to the history root.
+     * @param revision identifier of the revision.
+     * @return the entry, null if the item is not shown in the overview or
+     * the identifier can't be parsed.
+     */
+    private Entry newEntry(String path, String revision) {
+        final Category category = category(path);
+        if (category == null) {
+            return null;
+        }
+        final long key = RevisionIds.toKey(revision);
+        if (key == RevisionIds.UNPARSEABLE) {
+            LOG.log(Level.FINE, "{0}: not indexing revision {1} of {2}",
+                    new Object[]{file, revision, path});
+            return null;
+        }
+        Integer item = itemNumbers.get(path);
+        if (item == null) {
+            item = itemPaths.size();
+            itemPaths.add(path);
+            itemCategories.add(category);
+            itemNumbers.put(path, item);
+        }
+        return new Entry(key, item);
+    }
+
+    /**
+     * @return the indexed entry, null if there is none. Guarded by this.
+     */
+    private Entry findEntry(String path, String revision) {
+        final Integer item = itemNumbers.get(path);
+        final long key = RevisionIds.toKey(revision);
+        if (item == null || key == RevisionIds.UNPARSEABLE) {
+            return null;
+        }
+        final Entry entry = new Entry(key, item);
+        return entries.contains(entry) ? entry : null;
+    }
+
+    /**
+     * Tells a running verification to leave an entry alone. Guarded by this.
+     */
+    private void changed(Entry entry) {
+        if (changedWhileVerifying != null) {
+            changedWhileVerifying.add(entry);
+        }
+    }
+
+    /**
+     * Forgets all entries and items. Guarded by this.
+     */
+    private void clearEntries() {
+        entries.clear();
+        itemPaths.clear();
+        itemCategories.clear();
+        itemNumbers.clear();
+        records = 0;
+    }
+
+    /**
+     * @param path     of an item relative to the history root.
+     * @param category of the item.
+     * @return the name of the item as shown in the overview.
+     */
+    private static String itemName(String path, Category category) {
+        return category == Category.SYSTEM ? path : path.substring(HistoryPaths.JOBS_PREFIX.length());
+    }
+
+    private String relativePath(File itemDir) {
+        return HistoryPaths.relativePath(historyRootDir, itemDir);
+    }
+
+    private static Category category(String path) {
+        return HistoryPaths.category(path);
+    }
+
+    private String encodeAdded(Entry entry, HistoryDescr historyDescr) {
+        return encode(ADDED, itemPaths.get(entry.item), RevisionIds.toId(entry.revision),
+                historyDescr.getTimestamp(),
+                historyDescr.getOperation(), historyDescr.getUserID(), historyDescr.getUser(),
+                historyDescr.getCurrentName(), historyDescr.getOldName(),
+                historyDescr.getChangeReasonComment());
+    }
+
+    private static String encode(String... fields) {
+        final StringBuilder record = new StringBuilder();
+        for (String field : fields) {
+            if (record.length() > 0) {
+                record.append('\t');
+            }
+            if (field == null) {
+                record.append(NULL);
+                continue;
+            }
+            for (int i = 0; i < field.length(); i++) {
+                final char c = field.charAt(i);
+                switch (c) {
+                    case '\\':
+                        record.append("\\\\");
+                        break;
+                    case '\t':
+                        record.append("\\t");
+                        break;
+                    case '\n':
+                        record.append("\\n");
+                        break;
+                    case '\r':
+                        record.append("\\r");
+                        break;
+                    default:
+                        record.append(c);
+                }
+            }
+        }
+        return record.toString();
+    }
+
+    private static String[] decode(String record) {
+        final String[] fields = record.split("\t", -1);
+        for (int i = 0; i < fields.length; i++) {
+            final String field = fields[i];
+            if (NULL.equals(field)) {
+                fields[i] = null;
+            } else if (field.indexOf('\\') >= 0) {
+                final StringBuilder decoded = new StringBuilder(field.length());
+                for (int j = 0; j < field.length(); j++) {
+                    final char c = field.charAt(j);
+                    if (c != '\\' || j + 1 == field.length()) {
+                        decoded.append(c);
+                        continue;
+                    }
+                    final char escaped = field.charAt(++j);
+                    decoded.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n'
+                            : escaped == 'r' ? '\r' : escaped);
+                }
+                fields[i] = decoded.toString();
+            }
+        }
+        return fields;
+    }
+
+    private static String readRecord(RandomAccessFile log, long offset) throws IOException {
+        log.seek(offset);
+        final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+        final byte[] buffer = new byte[512];
+        int read;
+        while ((read = log.read(buffer)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    record.write(buffer, 0, i);
+                    return new String(record.toByteArray(), StandardCharsets.UTF_8);
+                }
+            }
+            record.write(buffer, 0, read);
+        }
+        throw new IOException("incomplete record at " + offset);
+    }
+
+    /**
+     * Writes lines, counting the bytes written.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        private void writeLine(String line) throws IOException {
+            write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
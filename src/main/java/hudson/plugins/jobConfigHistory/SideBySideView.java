@@ -70,9 +70,8 @@ public class SideBySideView {
         final Iterator<Line> iter = lines.iterator();
         while (iter.hasNext()) {
             final Line line = iter.next();
-            final String lineNum = line.left.getLineNumber();
-            if (!lineNum.isEmpty()) {
-                final int lineNumInt = Integer.parseInt(lineNum);
+            final Integer lineNumInt = line.left.lineNumber;
+            if (lineNumInt != null) {
                 if (linesByNumbers.containsKey(lineNumInt)) {
                     if (line.getTag() == DiffRow.Tag.EQUAL) {
                         iter.remove();
@@ -105,6 +104,10 @@ public class SideBySideView {
          * True when line should be skipped.
          */
         private boolean skipping;
+        /**
+         * True when the diff was not computed, see {@link DiffLimits}.
+         */
+        private boolean omitted;
         /**
          * EQUAL, INSERT, CHANGE or DELETE.
          */
@@ -146,6 +149,24 @@ public class SideBySideView {
             this.skipping = skipping;
         }
 
+        /**
+         * Was the diff not computed, as it exceeded its limits.
+         *
+         * @return true when the line stands for the omitted diff.
+         */
+        public boolean isOmitted() {
+            return omitted;
+        }
+
+        /**
+         * Sets omitted.
+         *
+         * @param omitted omitted?
+         */
+        public void setOmitted(boolean omitted) {
+            this.omitted = omitted;
+        }
+
         /**
          * @return the tag
          */
@@ -191,6 +212,13 @@ public class SideBySideView {
                 return lineNumber == null ? "" : String.valueOf(lineNumber);
             }
 
+            /**
+             * @return the line number, null if there is none.
+             */
+            Integer getNumber() {
+                return lineNumber;
+            }
+
             /**
              * @param lineNumber the lineNumber to set
              */
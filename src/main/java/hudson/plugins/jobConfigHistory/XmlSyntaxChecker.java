@@ -9,6 +9,7 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 public class XmlSyntaxChecker {
 
@@ -48,8 +49,8 @@ public class XmlSyntaxChecker {
                     message[0] = getMessage(FATAL_ERROR_STR, exception);
                 }
             });
-            try {
-                builder.parse(xmlFile);
+            try (InputStream in = RevisionFiles.newInputStream(xmlFile)) {
+                builder.parse(in, xmlFile.toURI().toString());
             } catch (SAXException | IOException exception) {
 
                 message[0] = exception.getClass().getSimpleName() + Messages.XmlSyntaxChecker_occurredWhile() + ": " + exception.getMessage();
@@ -0,0 +1,253 @@
+window.addEventListener("DOMContentLoaded", () => {
+
+    function leadingWhitespace(text) {
+        const trimmed = text.trim();
+        return trimmed.length === 0 ? 0 : text.indexOf(trimmed);
+    }
+
+    function cells(row, number, text, cssClass) {
+        const lineNum = document.createElement("th");
+        lineNum.className = "lineNum " + cssClass;
+        if (number !== null) {
+            lineNum.textContent = number;
+        }
+        const cell = document.createElement("td");
+        cell.className = cssClass;
+        if (text !== null) {
+            // as the server does, tabs become four spaces
+            const normalized = text.replace(/\t/g, "    ");
+            const indentation = document.createElement("div");
+            indentation.style.marginLeft = leadingWhitespace(normalized) * 0.5 + "em";
+            const pre = document.createElement("pre");
+            const code = document.createElement("code");
+            code.textContent = normalized.trim();
+            pre.appendChild(code);
+            indentation.appendChild(pre);
+            cell.appendChild(indentation);
+            if (window.hljs) {
+                hljs.highlightBlock(code);
+            }
+        }
+        row.appendChild(lineNum);
+        row.appendChild(cell);
+    }
+
+    function lineRow(left, leftText, leftClass, right, rightText, rightClass) {
+        const row = document.createElement("tr");
+        cells(row, left, leftText, leftClass);
+        cells(row, right, rightText, rightClass);
+        return row;
+    }
+
+    // a row standing for unchanged lines, shown on demand if the range of
+    // the older configuration it skips is known
+    function skippingRow(table, range) {
+        const row = document.createElement("tr");
+        for (let i = 0; i < 2; i++) {
+            const lineNum = document.createElement("th");
+            lineNum.className = "lineNum";
+            lineNum.textContent = "...";
+            const cell = document.createElement("td");
+            cell.className = "skipping";
+            if (i === 0 && range !== null && range.leftFrom <= range.leftTo) {
+                const button = document.createElement("button");
+                button.type = "button";
+                button.className = "jenkins-button jenkins-button--tertiary jch-expand";
+                button.dataset.leftFrom = range.leftFrom;
+                button.dataset.leftTo = range.leftTo;
+                button.dataset.rightFrom = range.rightFrom;
+                button.textContent = table.dataset.expandText;
+                cell.appendChild(button);
+            }
+            row.appendChild(lineNum);
+            row.appendChild(cell);
+        }
+        return row;
+    }
+
+    function messageRow(text) {
+        const row = document.createElement("tr");
+        const cell = document.createElement("td");
+        cell.colSpan = 4;
+        cell.className = "no-lines-changed";
+        cell.textContent = text;
+        row.appendChild(cell);
+        return row;
+    }
+
+    // the rows of a hunk: removed lines followed by added ones are shown
+    // side by side as changed; returns the numbers of the lines after it
+    function appendHunk(rows, hunk) {
+        let left = hunk.left;
+        let right = hunk.right;
+        const lines = hunk.lines;
+        let i = 0;
+        while (i < lines.length) {
+            if (lines[i].charAt(0) === " ") {
+                const text = lines[i].substring(1);
+                rows.appendChild(lineRow(left++, text, "", right++, text, ""));
+                i++;
+                continue;
+            }
+            const removed = [];
+            const added = [];
+            while (i < lines.length && lines[i].charAt(0) === "-") {
+                removed.push(lines[i++].substring(1));
+            }
+            while (i < lines.length && lines[i].charAt(0) === "+") {
+                added.push(lines[i++].substring(1));
+            }
+            for (let j = 0; j < Math.max(removed.length, added.length); j++) {
+                rows.appendChild(lineRow(
+                    j < removed.length ? left++ : null, j < removed.length ? removed[j] : null, "diff_original",
+                    j < added.length ? right++ : null, j < added.length ? added[j] : null, "diff_revised"));
+            }
+        }
+        return { left, right };
+    }
+
+    function render(table, patch) {
+        const rows = document.createDocumentFragment();
+        if (patch.omitted) {
+            rows.appendChild(messageRow(table.dataset.omittedText));
+        } else if (patch.hunks.length === 0) {
+            rows.appendChild(messageRow(table.dataset.noLinesChangedText));
+        } else {
+            let next = null;
+            patch.hunks.forEach((hunk) => {
+                if (next !== null) {
+                    rows.appendChild(skippingRow(table,
+                        { leftFrom: next.left, leftTo: hunk.left - 1, rightFrom: next.right }));
+                }
+                next = appendHunk(rows, hunk);
+            });
+        }
+        table.replaceChildren(rows);
+    }
+
+    function fetchJson(table, endpoint, extra) {
+        const parameters = new URLSearchParams(window.location.search);
+        parameters.set("showVersionDiffs", table.dataset.showVersionDiffs);
+        Object.entries(extra).forEach(([name, value]) => parameters.set(name, value));
+        return fetch(endpoint + "?" + parameters, { credentials: "same-origin" })
+            .then((response) => response.ok ? response.json() : Promise.reject(response.status));
+    }
+
+    function appendRows(table, rows) {
+        (table.tBodies.length > 0 ? table.tBodies[table.tBodies.length - 1] : table).appendChild(rows);
+    }
+
+    function lineRowOf(table, line) {
+        if (line.omitted) {
+            return messageRow(table.dataset.omittedText);
+        }
+        if (line.skipping) {
+            return skippingRow(table, line.leftFrom === undefined ? null : line);
+        }
+        return lineRow(
+            line.left.number ?? null, line.left.text ?? null, line.left.cssClass ?? "",
+            line.right.number ?? null, line.right.text ?? null, line.right.cssClass ?? "");
+    }
+
+    // the server renders the first page of the lines, the others are
+    // loaded once the end of the table is scrolled to; hidden tables are
+    // never intersecting, so their lines wait until they are shown
+    function loadPages(table) {
+        if (Number(table.dataset.loaded) >= Number(table.dataset.total)) {
+            return;
+        }
+        const end = document.createElement("div");
+        table.after(end);
+        const observer = new IntersectionObserver((entries) => {
+            if (!entries.some((entry) => entry.isIntersecting) || table.dataset.loading) {
+                return;
+            }
+            table.dataset.loading = "true";
+            fetchJson(table, "diffLines", { from: table.dataset.loaded })
+                .then((page) => {
+                    const rows = document.createDocumentFragment();
+                    page.lines.forEach((line) => rows.appendChild(lineRowOf(table, line)));
+                    appendRows(table, rows);
+                    table.dataset.loaded = page.from + page.lines.length;
+                    delete table.dataset.loading;
+                    if (page.lines.length === 0 || Number(table.dataset.loaded) >= page.total) {
+                        observer.disconnect();
+                        end.remove();
+                    } else {
+                        // observing anew tells whether the end is still in view
+                        observer.unobserve(end);
+                        observer.observe(end);
+                    }
+                })
+                .catch(() => {
+                    observer.disconnect();
+                    end.remove();
+                    appendRows(table, messageRow(table.dataset.failedText));
+                });
+        }, { rootMargin: "0px 0px 200px 0px" });
+        observer.observe(end);
+    }
+
+    // replaces a skipping row by the lines it skips, which are unchanged,
+    // so the same on both sides
+    function expand(table, button) {
+        const row = button.closest("tr");
+        const leftFrom = Number(button.dataset.leftFrom);
+        const leftTo = Number(button.dataset.leftTo);
+        const rightFrom = Number(button.dataset.rightFrom);
+        button.disabled = true;
+        fetchJson(table, "diffContext", { from: leftFrom, to: leftTo })
+            .then((context) => {
+                if (context.lines.length === 0) {
+                    button.disabled = false;
+                    return;
+                }
+                const rows = document.createDocumentFragment();
+                context.lines.forEach((text, i) => {
+                    rows.appendChild(lineRow(context.from + i, text, "", rightFrom + i, text, ""));
+                });
+                const shown = context.lines.length;
+                if (leftFrom + shown <= leftTo) {
+                    // a response holds a limited number of lines
+                    rows.appendChild(skippingRow(table,
+                        { leftFrom: leftFrom + shown, leftTo, rightFrom: rightFrom + shown }));
+                }
+                row.replaceWith(rows);
+            })
+            .catch(() => {
+                button.disabled = false;
+            });
+    }
+
+    document.addEventListener("click", (event) => {
+        const button = event.target.closest("button.jch-expand");
+        if (button !== null) {
+            expand(button.closest("table"), button);
+        }
+    });
+
+    document.querySelectorAll("table.paged-diff").forEach(loadPages);
+
+    function loadPatch(table) {
+        if (table.dataset.requested) {
+            return;
+        }
+        table.dataset.requested = "true";
+        fetchJson(table, "diffPatch", {})
+            .then((patch) => render(table, patch))
+            .catch(() => table.replaceChildren(messageRow(table.dataset.failedText)));
+    }
+
+    // the diff hidden at first is only computed once the user shows it
+    document.querySelectorAll("table.client-side-diff").forEach((table) => {
+        if (table.closest("#tbody_versionDiffsHidden") === null) {
+            loadPatch(table);
+        }
+    });
+    const toggle = document.querySelector("#showHideVersionDiffsJsButton");
+    if (toggle !== null) {
+        toggle.addEventListener("click", () => {
+            document.querySelectorAll("table.client-side-diff").forEach(loadPatch);
+        });
+    }
+});
@@ -0,0 +1,97 @@
+package hudson.plugins.jobConfigHistory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for AsyncHistoryWriter.
+ */
+class AsyncHistoryWriterTest {
+
+    private AsyncHistoryWriter sut;
+
+    @AfterEach
+    void tearDown() {
+        if (sut != null) {
+            sut.close();
+        }
+    }
+
+    @Test
+    void testTasksRunInSubmissionOrder() throws Exception {
+        sut = new AsyncHistoryWriter(5);
+        final List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 100; i++) {
+            final int entry = i;
+            sut.submit(() -> written.add(entry));
+        }
+        assertTrue(sut.flush(10, TimeUnit.SECONDS));
+        assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toList()), written);
+    }
+
+    @Test
+    void testTasksRunOnWriterThread() throws Exception {
+        sut = new AsyncHistoryWriter(5);
+        final List<Thread> threads = new ArrayList<>();
+        sut.submit(() -> threads.add(Thread.currentThread()));
+        assertTrue(sut.flush(10, TimeUnit.SECONDS));
+        assertNotEquals(Thread.currentThread(), threads.get(0));
+    }
+
+    @Test
+    void testFailingTaskDoesNotStopWriter() throws Exception {
+        sut = new AsyncHistoryWriter(5);
+        final List<String> written = Collections.synchronizedList(new ArrayList<>());
+        sut.submit(() -> {
+            throw new RuntimeException("oops");
+        });
+        sut.submit(() -> written.add("after"));
+        assertTrue(sut.flush(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("after"), written);
+    }
+
+    @Test
+    void testFlushTimesOutWhileWriterIsBlocked() throws Exception {
+        sut = new AsyncHistoryWriter(5);
+        final CountDownLatch release = new CountDownLatch(1);
+        sut.submit(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertFalse(sut.flush(100, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(sut.flush(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCloseWritesPendingEntriesAndRunsLaterOnesDirectly() {
+        sut = new AsyncHistoryWriter(5);
+        final List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 5; i++) {
+            final int entry = i;
+            sut.submit(() -> written.add(entry));
+        }
+        sut.close();
+        assertEquals(5, written.size());
+        final List<Thread> threads = new ArrayList<>();
+        sut.submit(() -> threads.add(Thread.currentThread()));
+        assertEquals(Thread.currentThread(), threads.get(0));
+        assertEquals(0, sut.getPendingEntries());
+    }
+}
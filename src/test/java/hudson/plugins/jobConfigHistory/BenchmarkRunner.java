@@ -0,0 +1,37 @@
+package hudson.plugins.jobConfigHistory;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the JMH benchmarks of this plugin. Its name doesn't match the tests
+ * run by default, so it is run on demand with
+ * {@code mvn test -Dtest=BenchmarkRunner}.
+ */
+class BenchmarkRunner {
+
+    @Test
+    void runBenchmarks() throws Exception {
+        final Options options = new OptionsBuilder()
+                .include(HistoryDescrCodecBenchmark.class.getName())
+                .include(ParsedDateBenchmark.class.getName())
+                .include(XmlSorterBenchmark.class.getName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .forks(1)
+                .threads(1)
+                .shouldFailOnError(true)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-report.json")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,93 @@
+package hudson.plugins.jobConfigHistory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for ChangeIndex.
+ */
+class ChangeIndexTest {
+
+    private static final ChangeIndex INDEX = ChangeIndex.of(Arrays.asList(
+            "2013-10-30_23-00-09", "2013-10-30_23-00-01", "2013-10-30_23-00-03",
+            "2013-10-30_23-00-05", "2013-10-30_23-00-07", "no revision"));
+
+    @TempDir
+    private File tempFolder;
+
+    private final ChangeIndex.Indices indices = new ChangeIndex.Indices();
+
+    @Test
+    void testNoChangeSincePreviousBuild() {
+        assertNull(INDEX.getConfigChangeDates(time("2013-10-30_23-00-09")));
+        assertNull(ChangeIndex.of(Collections.singleton("2013-10-30_23-00-09"))
+                .getConfigChangeDates(time("2013-10-30_23-00-01")));
+    }
+
+    @Test
+    void testLastChangeBeforePreviousBuild() {
+        assertArrayEquals(new String[]{"2013-10-30_23-00-09", "2013-10-30_23-00-03"},
+                INDEX.getConfigChangeDates(time("2013-10-30_23-00-05")));
+        assertArrayEquals(new String[]{"2013-10-30_23-00-09", "2013-10-30_23-00-05"},
+                INDEX.getConfigChangeDates(time("2013-10-30_23-00-06")));
+    }
+
+    @Test
+    void testSecondNewestWithoutChangeBeforePreviousBuild() {
+        assertArrayEquals(new String[]{"2013-10-30_23-00-09", "2013-10-30_23-00-07"},
+                INDEX.getConfigChangeDates(time("2013-10-30_23-00-00")));
+    }
+
+    @Test
+    void testAdded() {
+        final File itemHistoryDir = new File(tempFolder, "jobs/Test1");
+        indices.get(itemHistoryDir, () -> Arrays.asList(
+                "2013-10-30_23-00-01", "2013-10-30_23-00-03"));
+        indices.added(new File(itemHistoryDir, "2013-10-30_23-00-08_123"));
+        indices.added(new File(itemHistoryDir, "2013-10-30_23-00-03"));
+
+        assertArrayEquals(new String[]{"2013-10-30_23-00-08_123", "2013-10-30_23-00-03"},
+                indices.get(itemHistoryDir, Collections::emptyList)
+                        .getConfigChangeDates(time("2013-10-30_23-00-05")));
+    }
+
+    @Test
+    void testAddedInPlace() {
+        final File itemHistoryDir = new File(tempFolder, "jobs/Test1");
+        final ChangeIndex index = indices.get(itemHistoryDir, Collections::emptyList);
+        for (int i = 1; i <= 20; i++) {
+            indices.added(new File(itemHistoryDir, String.format("2013-10-30_23-00-%02d", i)));
+        }
+
+        assertSame(index, indices.get(itemHistoryDir, Collections::emptyList));
+        assertArrayEquals(new String[]{"2013-10-30_23-00-20", "2013-10-30_23-00-09"},
+                index.getConfigChangeDates(time("2013-10-30_23-00-10")));
+    }
+
+    @Test
+    void testTakenAgainAfterChangeOnDisk() {
+        final File itemHistoryDir = new File(tempFolder, "jobs/Test1");
+        assertTrue(itemHistoryDir.mkdirs());
+        indices.get(itemHistoryDir, () -> Arrays.asList(
+                "2013-10-30_23-00-01", "2013-10-30_23-00-03"));
+        assertTrue(itemHistoryDir.setLastModified(itemHistoryDir.lastModified() - 10_000));
+
+        assertArrayEquals(new String[]{"2013-10-30_23-00-09", "2013-10-30_23-00-01"},
+                indices.get(itemHistoryDir, () -> Arrays.asList(
+                                "2013-10-30_23-00-01", "2013-10-30_23-00-09"))
+                        .getConfigChangeDates(time("2013-10-30_23-00-05")));
+    }
+
+    private static long time(String identifier) {
+        return PluginUtils.parsedTime(identifier);
+    }
+}
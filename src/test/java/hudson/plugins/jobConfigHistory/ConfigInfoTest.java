@@ -14,6 +14,7 @@ import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -65,4 +66,16 @@ class ConfigInfoTest {
         Date result = sut.parsedDate();
         assertEquals(expResult, result);
     }
+
+    @Test
+    void dateShouldBeKeptAsGiven() {
+        assertEquals(DATE, ConfigInfo.create("jobName", true, historyDescr, false).getDate());
+        final HistoryDescr withMillis = new HistoryDescr(
+                "Firstname Lastname", "userId", "operation", DATE + "_042", null, null);
+        assertEquals(DATE + "_042", ConfigInfo.create("jobName", true, withMillis, false).getDate());
+        final HistoryDescr other = new HistoryDescr(
+                "Firstname Lastname", "userId", "operation", "yesterday", null, null);
+        assertEquals("yesterday", ConfigInfo.create("jobName", true, other, false).getDate());
+        assertNull(ConfigInfo.create("jobName", true, HistoryDescr.EMPTY_HISTORY_DESCR, false).getDate());
+    }
 }
@@ -0,0 +1,97 @@
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for ContentAddressedHistoryDao.
+ */
+@WithJenkins
+@Execution(ExecutionMode.SAME_THREAD)
+class ContentAddressedHistoryDaoTest {
+
+    private UnpackResourceZip unpackResourceZip;
+    private XmlFile test1Config;
+    private File test1History;
+    private ContentAddressedHistoryDao sut;
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) throws Exception {
+        assumeTrue(ContentAddressedHistoryDao.isSupported());
+        unpackResourceZip = UnpackResourceZip.create();
+        final File jenkinsHome = unpackResourceZip.getRoot();
+        test1Config = new XmlFile(
+                unpackResourceZip.getResource("jobs/Test1/config.xml"));
+        final File historyRoot = unpackResourceZip.getResource("config-history");
+        test1History = new File(historyRoot, "jobs/Test1");
+        sut = new ContentAddressedHistoryDao(historyRoot, jenkinsHome, null, 0, true);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (unpackResourceZip != null) {
+            unpackResourceZip.cleanUp();
+        }
+    }
+
+    @Test
+    void testSaveItem_LinksIdenticalConfigsToOneObject() throws Exception {
+        sut.saveItem(test1Config);
+        sut.saveItem(test1Config);
+        final SortedMap<String, HistoryDescr> revisions = sut.getRevisions(test1Config);
+        final File newest = getConfig(revisions.lastKey());
+        final File previous = getConfig(revisions.headMap(revisions.lastKey()).lastKey());
+        final File object = sut.getObject(FileHistoryDao.computeDigest(
+                FileUtils.readFileToByteArray(test1Config.getFile())));
+
+        assertTrue(Files.isSameFile(newest.toPath(), previous.toPath()));
+        assertTrue(Files.isSameFile(newest.toPath(), object.toPath()));
+        assertArrayEquals(FileUtils.readFileToByteArray(test1Config.getFile()),
+                FileUtils.readFileToByteArray(newest));
+        assertEquals(3, Files.getAttribute(object.toPath(), "unix:nlink"));
+    }
+
+    @Test
+    void testCollectGarbage_DeletesOnlyUnreferencedObjects() throws Exception {
+        sut.saveItem(test1Config);
+        final File newest = getConfig(sut.getRevisions(test1Config).lastKey());
+        final File object = sut.getObject(FileHistoryDao.computeDigest(
+                FileUtils.readFileToByteArray(test1Config.getFile())));
+
+        assertEquals(0, sut.collectGarbage());
+        assertTrue(object.exists());
+
+        FileUtils.deleteDirectory(newest.getParentFile());
+        assertEquals(1, sut.collectGarbage());
+        assertFalse(object.exists());
+    }
+
+    @Test
+    void testGetSystemConfigs_IgnoresObjectStore() {
+        sut.saveItem(test1Config);
+        for (File systemConfig : sut.getSystemConfigs()) {
+            assertFalse(systemConfig.getName().equals(JobConfigHistoryConsts.OBJECTS_HISTORY_DIR));
+        }
+    }
+
+    private File getConfig(String revision) {
+        return new File(new File(test1History, revision), "config.xml");
+    }
+}
@@ -0,0 +1,94 @@
+package hudson.plugins.jobConfigHistory;
+
+import hudson.plugins.jobConfigHistory.SideBySideView.Line;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for DiffCache.
+ */
+class DiffCacheTest {
+
+    @TempDir
+    private File tempFolder;
+
+    private final DiffCache cache = new DiffCache();
+
+    @Test
+    void testKeyOfMissingConfigurations() {
+        final File existing = new File(tempFolder, "config.xml");
+        assertNull(DiffCache.key(null, existing, false));
+        assertNull(DiffCache.key(existing, new File(tempFolder, "missing.xml"), false));
+    }
+
+    @Test
+    void testKeptByConfigurationsAndFlag() throws Exception {
+        final File left = write("left.xml", "<project/>");
+        final File right = write("right.xml", "<project><a/></project>");
+        final String key = DiffCache.key(left, right, false);
+        assertNotEquals(key, DiffCache.key(left, right, true));
+        assertNotEquals(key, DiffCache.key(right, left, false));
+
+        final Line line = new Line();
+        line.getLeft().setText("<project/>");
+        final List<Line> kept = cache.put(key, Collections.singletonList(line));
+        assertSame(kept, cache.get(key));
+        assertEquals(1, kept.size());
+        assertThrows(UnsupportedOperationException.class, kept::clear);
+        assertNull(cache.get(DiffCache.key(left, right, true)));
+    }
+
+    @Test
+    void testPatchKeptApartFromLines() throws Exception {
+        final File left = write("left.xml", "<project/>");
+        final File right = write("right.xml", "<project><a/></project>");
+        final String key = DiffCache.key(left, right, false);
+
+        assertEquals("{\"hunks\":[]}", cache.putPatch(key, "{\"hunks\":[]}"));
+        assertEquals("{\"hunks\":[]}", cache.getPatch(key));
+        assertNull(cache.get(key));
+        assertNull(cache.getPatch(DiffCache.key(left, right, true)));
+    }
+
+    @Test
+    void testOriginalKeptApartFromLines() throws Exception {
+        final File left = write("left.xml", "<project/>");
+        final File right = write("right.xml", "<project><a/></project>");
+        final String key = DiffCache.key(left, right, false);
+
+        final String[] original = {"<project/>"};
+        cache.putOriginal(key, original);
+        assertSame(original, cache.getOriginal(key));
+        assertNull(cache.get(key));
+        assertNull(cache.getPatch(key));
+        assertNull(cache.getOriginal(DiffCache.key(left, right, true)));
+    }
+
+    @Test
+    void testKeyChangesWithConfiguration() throws Exception {
+        final File left = write("left.xml", "<project/>");
+        final File right = write("right.xml", "<project><a/></project>");
+        final String key = DiffCache.key(left, right, false);
+
+        write("right.xml", "<project><a/><b/></project>");
+        assertNotEquals(key, DiffCache.key(left, right, false));
+    }
+
+    private File write(String name, String content) throws Exception {
+        final File file = new File(tempFolder, name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,99 @@
+package hudson.plugins.jobConfigHistory;
+
+import com.github.difflib.DiffUtils;
+import com.github.difflib.text.DiffRow;
+import hudson.plugins.jobConfigHistory.SideBySideView.Line;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for DiffJson.
+ */
+class DiffJsonTest {
+
+    private static final List<Line> LINES = Arrays.asList(
+            line(DiffRow.Tag.EQUAL, 1, 1, "<project>"),
+            skipping(),
+            line(DiffRow.Tag.CHANGE, 10, 12, "  <a>\"1\"\\</a>"),
+            line(DiffRow.Tag.INSERT, null, 13, "  <b/>"));
+
+    @Test
+    void testLines() {
+        assertEquals("{\"total\":4,\"from\":1,\"lines\":["
+                        + "{\"skipping\":true,\"leftFrom\":2,\"leftTo\":9,\"rightFrom\":2},"
+                        + "{\"tag\":\"CHANGE\",\"left\":{\"number\":10,\"text\":\"  <a>\\\"1\\\"\\\\</a>\"},"
+                        + "\"right\":{\"number\":12,\"text\":\"  <a>\\\"1\\\"\\\\</a>\"}}]}",
+                DiffJson.lines(LINES, 1, 2));
+        assertEquals("{\"total\":4,\"from\":4,\"lines\":[]}", DiffJson.lines(LINES, 7, 2));
+    }
+
+    @Test
+    void testOmitted() {
+        final Line omitted = new Line();
+        omitted.setOmitted(true);
+        assertEquals("{\"total\":1,\"from\":0,\"lines\":[{\"omitted\":true}]}",
+                DiffJson.lines(Collections.singletonList(omitted), 0, DiffJson.DEFAULT_PAGE_LINES));
+    }
+
+    @Test
+    void testSkipped() {
+        assertArrayEquals(new int[]{2, 9, 2}, DiffJson.skipped(LINES, 1));
+        assertNull(DiffJson.skipped(Arrays.asList(skipping(), LINES.get(0)), 0));
+    }
+
+    @Test
+    void testContext() {
+        final String[] configLines = {"<project>", "  <a/>", "\t<b/>", "</project>"};
+        assertEquals("{\"from\":2,\"lines\":[\"  <a/>\",\"\\t<b/>\"]}", DiffJson.context(configLines, 2, 3));
+        assertEquals("{\"from\":3,\"lines\":[\"\\t<b/>\",\"</project>\"]}", DiffJson.context(configLines, 3, 9));
+        assertEquals("{\"from\":5,\"lines\":[]}", DiffJson.context(configLines, 7, 9));
+    }
+
+    @Test
+    void testPatch() {
+        final List<String> original = Arrays.asList("<project>", "  <a/>", "  <b/>", "  <c/>", "  <d/>",
+                "  <e/>", "  <f/>", "  <g/>", "  <h/>", "  <i/>", "</project>");
+        final List<String> revised = Arrays.asList("<project>", "  <a>\"1\"</a>", "  <b/>", "  <c/>", "  <d/>",
+                "  <e/>", "  <f/>", "  <g/>", "  <h/>", "</project>");
+        assertEquals("{\"hunks\":["
+                        + "{\"left\":1,\"right\":1,\"lines\":["
+                        + "\" <project>\",\"-  <a/>\",\"+  <a>\\\"1\\\"</a>\",\"   <b/>\",\"   <c/>\",\"   <d/>\"]},"
+                        + "{\"left\":7,\"right\":7,\"lines\":["
+                        + "\"   <f/>\",\"   <g/>\",\"   <h/>\",\"-  <i/>\",\" </project>\"]}]}",
+                DiffJson.patch(original, DiffUtils.diff(original, revised), new DiffLimits()));
+        assertEquals("{\"hunks\":[]}",
+                DiffJson.patch(original, DiffUtils.diff(original, original), new DiffLimits()));
+    }
+
+    @Test
+    void testParse() {
+        assertEquals(3, DiffJson.parse("3", 0));
+        assertEquals(7, DiffJson.parse(null, 7));
+        assertEquals(7, DiffJson.parse("x", 7));
+    }
+
+    private static Line line(DiffRow.Tag tag, Integer left, Integer right, String text) {
+        final Line line = new Line();
+        line.setTag(tag);
+        if (left != null) {
+            line.getLeft().setLineNumber(left);
+            line.getLeft().setText(text);
+        }
+        line.getRight().setLineNumber(right);
+        line.getRight().setText(text);
+        return line;
+    }
+
+    private static Line skipping() {
+        final Line line = new Line();
+        line.setSkipping(true);
+        return line;
+    }
+}
@@ -0,0 +1,78 @@
+package hudson.plugins.jobConfigHistory;
+
+import com.github.difflib.DiffUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for DiffLimits.
+ */
+class DiffLimitsTest {
+
+    @AfterEach
+    void tearDown() {
+        // clears the interrupt
+        Thread.interrupted();
+        DiffLimits.clear();
+    }
+
+    @Test
+    void testRead() throws Exception {
+        assertEquals("<project/>", DiffLimits.read(new StringReader("<project/>")));
+        assertEquals(0, DiffLimits.getExceeded(DiffLimits.Limit.SIZE));
+    }
+
+    @Test
+    void testWithinLimits() {
+        final DiffLimits limits = new DiffLimits();
+        limits.check();
+        DiffUtils.diff(Arrays.asList("a", "b"), Arrays.asList("a", "c"), limits.listener());
+        for (DiffLimits.Limit limit : DiffLimits.Limit.values()) {
+            assertEquals(0, DiffLimits.getExceeded(limit));
+        }
+    }
+
+    @Test
+    void testWriterCancelledWhenInterrupted() throws Exception {
+        final StringWriter target = new StringWriter();
+        final Writer writer = new DiffLimits().writer(target);
+        writer.write("<project/>");
+        Thread.currentThread().interrupt();
+
+        assertThrows(DiffLimits.Exceeded.class, () -> writer.write('\n'));
+        assertEquals("<project/>", target.toString());
+    }
+
+    @Test
+    void testProperties() {
+        assertEquals("hudson.plugins.jobConfigHistory.DiffLimits.maxChars", DiffLimits.Limit.SIZE.getProperty());
+        assertEquals("hudson.plugins.jobConfigHistory.DiffLimits.maxMillis", DiffLimits.Limit.TIME.getProperty());
+        assertNull(DiffLimits.Limit.CANCELLED.getProperty());
+    }
+
+    @Test
+    void testCancelledWhenInterrupted() {
+        final List<String> original = Arrays.asList("a", "b");
+        final List<String> revised = Arrays.asList("a", "c");
+        final DiffLimits limits = new DiffLimits();
+        Thread.currentThread().interrupt();
+
+        final DiffLimits.Exceeded exceeded = assertThrows(DiffLimits.Exceeded.class,
+                () -> DiffUtils.diff(original, revised, limits.listener()));
+        assertEquals(DiffLimits.Limit.CANCELLED, exceeded.getLimit());
+        assertEquals("diff limit exceeded: CANCELLED, 1 times since startup", exceeded.getMessage());
+        assertThrows(DiffLimits.Exceeded.class,
+                () -> new GetDiffLines(original, DiffUtils.diff(original, revised), limits).get());
+        assertEquals(2, DiffLimits.getExceeded(DiffLimits.Limit.CANCELLED));
+    }
+}
@@ -52,12 +52,15 @@ import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.Iterator;
 import java.util.SortedMap;
 import java.util.TimeZone;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -69,6 +72,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -248,6 +252,26 @@ class FileHistoryDaoTest {
         assertNotEquals(first.getAbsolutePath(), second.getAbsolutePath());
     }
 
+    /**
+     * Test of createNewHistoryDir method, of class FileHistoryDao.
+     */
+    @Test
+    void testCreateNewHistoryDirClashUsesMillisecondsInOrder() throws IOException {
+        final AtomicReference<Calendar> timestampHolder = new AtomicReference<>();
+        final File first = FileHistoryDao.createNewHistoryDir(historyRoot,
+                timestampHolder);
+        File previous = first;
+        for (int i = 0; i < 5; i++) {
+            final File next = FileHistoryDao.createNewHistoryDir(historyRoot,
+                    timestampHolder);
+            assertTrue(next.isDirectory());
+            assertTrue(next.getName().compareTo(previous.getName()) > 0);
+            assertFalse(PluginUtils.parsedDate(next.getName())
+                    .before(PluginUtils.parsedDate(previous.getName())));
+            previous = next;
+        }
+    }
+
     /**
      * Test of getRootDir method, of class FileHistoryDao.
      */
@@ -277,7 +301,7 @@ class FileHistoryDaoTest {
         final File historyDir = new File(jenkinsHome,
                 "config-history/jobs/MyTest");
         assertTrue(historyDir.exists());
-        assertEquals(1, historyDir.list().length);
+        assertEquals(1, historyDir.listFiles(HistoryFileFilter.INSTANCE).length);
     }
 
     /**
@@ -309,8 +333,146 @@ class FileHistoryDaoTest {
         assertEquals(6, getHistoryLength());
     }
 
+    /**
+     * Test of saveItem method, of class FileHistoryDao.
+     */
+    @Test
+    void testSaveItem_StoresDigestAndSkipsDuplicate() throws IOException {
+        final File configFile = test1Config.getFile();
+        FileUtils.writeStringToFile(configFile,
+                "<?xml version='1.1' encoding='UTF-8'?>\n<project/>\n",
+                StandardCharsets.UTF_8);
+        sutWithUserAndNoDuplicateHistory.saveItem(test1Config);
+        assertEquals(6, getHistoryLength());
+        final String newest = sutWithUserAndNoDuplicateHistory
+                .getRevisions(test1Config).lastKey();
+        final HistoryDescr descr = (HistoryDescr) new XmlFile(new File(
+                new File(test1History, newest),
+                JobConfigHistoryConsts.HISTORY_FILE)).read();
+        assertEquals(FileHistoryDao.computeDigest(
+                FileUtils.readFileToByteArray(configFile)),
+                descr.getConfigDigest());
+        sutWithUserAndNoDuplicateHistory.saveItem(test1Config);
+        assertEquals(6, getHistoryLength());
+    }
+
+    /**
+     * Test of saveItem method, of class FileHistoryDao, writing in the background.
+     */
+    @Test
+    void testSaveItem_Asynchronously() throws Exception {
+        final AsyncHistoryWriter writer = new AsyncHistoryWriter(10);
+        try {
+            final FileHistoryDao sut = new FileHistoryDao(historyRoot,
+                    jenkinsHome, null, 0, true, writer);
+            sut.withUser(new MimickedUser(mockedUser)).saveItem(test1Config);
+            sut.saveItem(test1Config);
+            assertTrue(writer.flush(10, TimeUnit.SECONDS));
+            assertEquals(7, getHistoryLength());
+            final SortedMap<String, HistoryDescr> revisions = sut.getRevisions(test1Config);
+            final Iterator<String> newest = revisions.keySet().stream()
+                    .sorted(Comparator.reverseOrder()).iterator();
+            assertEquals(JobConfigHistoryConsts.UNKNOWN_USER_NAME,
+                    revisions.get(newest.next()).getUser());
+            assertEquals(FULL_NAME, revisions.get(newest.next()).getUser());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Test of saveItem method, of class FileHistoryDao, storing older revisions as deltas.
+     */
+    @Test
+    void testSaveItem_StoresPreviousRevisionAsDelta() throws Exception {
+        final FileHistoryDao sut = new FileHistoryDao(historyRoot,
+                jenkinsHome, null, 0, true, null, 10, false);
+        final File configFile = test1Config.getFile();
+        final String first = "<?xml version='1.1' encoding='UTF-8'?>\n<project>\n  <description>first</description>\n</project>\n";
+        FileUtils.writeStringToFile(configFile, first, StandardCharsets.UTF_8);
+        sut.saveItem(test1Config);
+        final String firstRevision = sut.getRevisions(test1Config).lastKey();
+        FileUtils.writeStringToFile(configFile, first.replace("first", "second"), StandardCharsets.UTF_8);
+        sut.saveItem(test1Config);
+
+        final File firstRevisionDir = new File(test1History, firstRevision);
+        try {
+            assertNotNull(RevisionDeltas.getDeltaFile(firstRevisionDir));
+            assertEquals(first, sut.getOldRevision(test1Config, firstRevision).asString());
+            assertTrue(sut.hasOldRevision(test1Config, firstRevision));
+            sut.deleteRevision(test1History, sut.getRevisions(test1Config).lastKey());
+            assertNull(RevisionDeltas.getDeltaFile(firstRevisionDir));
+            assertEquals(first, sut.getOldRevision(test1Config, firstRevision).asString());
+        } finally {
+            RevisionDeltas.clearCache();
+        }
+    }
+
+    /**
+     * Test of saveItem method, of class FileHistoryDao, storing compressed revisions.
+     */
+    @Test
+    void testSaveItem_Compressed() throws Exception {
+        final FileHistoryDao sut = new FileHistoryDao(historyRoot,
+                jenkinsHome, null, 0, true, null, 0, true);
+        sut.saveItem(test1Config);
+        final String newest = sut.getRevisions(test1Config).lastKey();
+        final XmlFile oldRevision = sut.getOldRevision(test1Config, newest);
+        assertEquals("config.xml.gz", oldRevision.getFile().getName());
+        assertEquals(test1Config.asString(), RevisionFiles.asString(oldRevision));
+        assertTrue(sut.hasDuplicateHistory(test1Config));
+    }
+
+    /**
+     * Test of packRevisions method, of class FileHistoryDao.
+     */
+    @Test
+    void testPackRevisions_ReadsPackedRevisionsTransparently() throws Exception {
+        final FileHistoryDao sut = sutWithoutUserAndDuplicateHistory;
+        final SortedMap<String, HistoryDescr> before = sut.getRevisions(test1Config);
+        final String oldest = before.firstKey();
+        final String oldestConfig = sut.getOldRevision(test1Config, oldest).asString();
+
+        assertEquals(before.size() - 1, sut.packRevisions(test1History, "9999"));
+        assertFalse(new File(test1History, oldest).exists());
+        assertTrue(new File(test1History, before.lastKey()).exists());
+
+        final SortedMap<String, HistoryDescr> after = sut.getRevisions(test1Config);
+        assertEquals(before.keySet(), after.keySet());
+        assertEquals(before.get(oldest).getOperation(), after.get(oldest).getOperation());
+        assertEquals(before.size(), sut.getRevisionAmount(test1Config));
+        assertTrue(sut.hasOldRevision(test1Config, oldest));
+        assertEquals(oldestConfig, RevisionFiles.asString(sut.getOldRevision(test1Config, oldest)));
+
+        sut.deleteRevision(test1History, oldest);
+        assertFalse(sut.hasOldRevision(test1Config, oldest));
+        assertEquals(before.size() - 1, sut.getRevisions(test1Config).size());
+    }
+
+    /**
+     * Test of deleteRevision method, of class FileHistoryDao, with names
+     * leading out of the history of the item.
+     */
+    @Test
+    void testDeleteRevision_OutsideOfHistory() {
+        final FileHistoryDao sut = sutWithoutUserAndDuplicateHistory;
+        when(mockedItem.getRootDir()).thenReturn(test1JobDirectory);
+        when(mockedItem.getConfigFile()).thenCallRealMethod();
+        final int historyLength = getHistoryLength();
+        final int jobsLength = test1History.getParentFile().list().length;
+
+        for (String identifier : new String[]{"..", ".", "", "../Test1", "../../jobs"}) {
+            sut.deleteRevision(mockedItem, identifier);
+            sut.deleteRevision(test1History, identifier);
+        }
+        assertTrue(test1History.isDirectory());
+        assertEquals(historyLength, getHistoryLength());
+        assertEquals(jobsLength, test1History.getParentFile().list().length);
+        assertTrue(historyRoot.isDirectory());
+    }
+
     private int getHistoryLength() {
-        return test1History.list().length;
+        return test1History.listFiles(HistoryFileFilter.INSTANCE).length;
     }
 
     /**
@@ -339,7 +501,7 @@ class FileHistoryDaoTest {
                 "NewName");
         final File newHistoryDir = new File(historyRoot, "jobs/" + newName);
         assertTrue(newHistoryDir.exists());
-        assertEquals(6, newHistoryDir.list().length);
+        assertEquals(6, newHistoryDir.listFiles(HistoryFileFilter.INSTANCE).length);
     }
 
     /**
@@ -390,6 +552,18 @@ class FileHistoryDaoTest {
         testGetOldRevision(result);
     }
 
+    @Test
+    void testRevisionEqualsCurrent_Item() {
+        when(mockedItem.getRootDir()).thenReturn(test1JobDirectory);
+        when(mockedItem.getConfigFile()).thenCallRealMethod();
+        assertTrue(sutWithUserAndNoDuplicateHistory
+                .revisionEqualsCurrent(mockedItem, "2012-11-21_11-42-05"));
+        assertFalse(sutWithUserAndNoDuplicateHistory
+                .revisionEqualsCurrent(mockedItem, "2012-11-21_11-41-14"));
+        assertFalse(sutWithUserAndNoDuplicateHistory
+                .revisionEqualsCurrent(mockedItem, "2000-01-01_00-00-00"));
+    }
+
     @Test
     void testGetRevisionAmount() throws IOException {
         assertEquals(5, sutWithUserAndNoDuplicateHistory.getRevisionAmount(test1Config));
@@ -744,12 +918,13 @@ class FileHistoryDaoTest {
         sutWithUserAndNoDuplicateHistory.createNewNode(agent);
         File file = sutWithUserAndNoDuplicateHistory.getNodeHistoryRootDir();
         File revisions = new File(file, agent.getNodeName());
+        final File[] revisionDirs = revisions.listFiles(HistoryFileFilter.INSTANCE);
         assertEquals(1,
-                revisions.list().length,
+                revisionDirs.length,
                 "agent should have only one save history.");
-        File config = new File(revisions.listFiles()[0], "config.xml");
+        File config = new File(revisionDirs[0], "config.xml");
         assertTrue(config.exists(), "File config.xml should be saved.");
-        File history = new File(revisions.listFiles()[0],
+        File history = new File(revisionDirs[0],
                 JobConfigHistoryConsts.HISTORY_FILE);
         assertTrue(history.exists(), "File history.xml should be saved.");
     }
@@ -882,7 +1057,7 @@ class FileHistoryDaoTest {
         File revisions = new File(file, agent.getNodeName());
         sutWithUserAndNoDuplicateHistory.saveNode(agent);
         assertEquals(1,
-                revisions.list().length,
+                revisions.listFiles(HistoryFileFilter.INSTANCE).length,
                 "New revision should be saved.");
     }
 
@@ -915,6 +1090,34 @@ class FileHistoryDaoTest {
                 "Should return config.xml file of revision 2014-01-20_10-12-34");
     }
 
+    @Test
+    void testHasOldRevision_Node() throws Exception {
+        Slave agent = jenkinsRule.createOnlineSlave();
+        createNodeRevision("2014-01-18_10-12-34", agent);
+        assertTrue(sutWithUserAndNoDuplicateHistory.hasOldRevision(agent,
+                "2014-01-18_10-12-34"));
+        assertFalse(sutWithUserAndNoDuplicateHistory.hasOldRevision(agent,
+                "1914-01-18_10-12-34"));
+        assertFalse(sutWithUserAndNoDuplicateHistory.hasOldRevision(agent,
+                "../../jobs"));
+    }
+
+    @Test
+    void testDeleteRevision_Node() throws Exception {
+        final FileHistoryDao sut = sutWithUserAndNoDuplicateHistory;
+        Slave agent = jenkinsRule.createOnlineSlave();
+        createNodeRevision("2014-01-18_10-12-34", agent);
+        createNodeRevision("2014-01-19_10-12-34", agent);
+        assertEquals(2, sut.getRevisions(agent).size());
+        assertEquals(2, sut.getRevisionAmount(agent));
+
+        sut.deleteRevision(agent, "..");
+        sut.deleteRevision(agent, "2014-01-18_10-12-34");
+        assertEquals(Collections.singleton("2014-01-19_10-12-34"), sut.getRevisions(agent).keySet());
+        assertEquals(1, sut.getRevisionAmount(agent));
+        assertTrue(sut.getNodeHistoryRootDir().isDirectory());
+    }
+
     private FileHistoryDao getJenkinsRuleSut() {
         return (FileHistoryDao) PluginUtils.getHistoryDao();
     }
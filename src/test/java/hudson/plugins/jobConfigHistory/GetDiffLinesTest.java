@@ -23,10 +23,14 @@
  */
 package hudson.plugins.jobConfigHistory;
 
+import com.github.difflib.DiffUtils;
+import com.github.difflib.UnifiedDiffUtils;
 import com.github.difflib.patch.DiffException;
+import com.github.difflib.patch.Patch;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -58,6 +62,40 @@ class GetDiffLinesTest {
         assertEquals("diff_revised", right.getCssClass());
     }
 
+    @Test
+    void patchShouldBeShownLikeItsUnifiedDiff() throws DiffException {
+        final List<String> original = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            original.add("<line" + i + "/>");
+        }
+        final List<String> revised = new ArrayList<>(original);
+        revised.set(1, "<changed1/>");
+        // six lines apart from the previous change, same hunk
+        revised.set(8, "<changed8/>");
+        // seven lines apart, next hunk
+        revised.remove(16);
+        revised.add(16, "<inserted/>");
+        revised.add(17, "<inserted/>");
+        revised.remove(revised.size() - 1);
+
+        final Patch<String> patch = DiffUtils.diff(original, revised);
+        final List<String> diffLines = UnifiedDiffUtils.generateUnifiedDiff(
+                "original", "revised", original, patch, GetDiffLines.CONTEXT_SIZE);
+        final List<SideBySideView.Line> expected = new GetDiffLines(diffLines).get();
+        final List<SideBySideView.Line> result = new GetDiffLines(original, patch).get();
+
+        assertEquals(expected.size(), result.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(describe(expected.get(i)), describe(result.get(i)));
+        }
+    }
+
+    private static String describe(SideBySideView.Line line) {
+        return line.isSkipping() + " " + line.getTag()
+                + " " + line.getLeft().getLineNumber() + " " + line.getLeft().getCssClass() + " " + line.getLeft().getText()
+                + " " + line.getRight().getLineNumber() + " " + line.getRight().getCssClass() + " " + line.getRight().getText();
+    }
+
     private GetDiffLines createGetDiffLines() throws IOException {
         final String resourceName = "diff.txt";
         final List<String> lines = TUtils.readResourceLines(resourceName);
@@ -0,0 +1,66 @@
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Compares reading and writing a history.xml with XStream and with
+ * {@link HistoryDescrCodec}. Run by {@link BenchmarkRunner}.
+ * <p>
+ * Both take about the same time: reading is dominated by opening the file
+ * and writing by flushing it to disk, not by XStream.
+ */
+public class HistoryDescrCodecBenchmark {
+
+    @State(Scope.Thread)
+    public static class HistoryFile {
+
+        private final HistoryDescr historyDescr = new HistoryDescr(
+                "Jane Doe", "jane", "Changed", "2024-01-02_03-04-05",
+                "", "", "Updated the build steps", null);
+
+        private File dir;
+        private XmlFile xmlFile;
+
+        @Setup
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("history").toFile();
+            xmlFile = new XmlFile(new File(dir, JobConfigHistoryConsts.HISTORY_FILE));
+            xmlFile.write(historyDescr);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Benchmark
+    public HistoryDescr readWithXStream(HistoryFile state) throws IOException {
+        return (HistoryDescr) state.xmlFile.read();
+    }
+
+    @Benchmark
+    public HistoryDescr readWithCodec(HistoryFile state) throws IOException {
+        return HistoryDescrCodec.read(state.xmlFile);
+    }
+
+    @Benchmark
+    public void writeWithXStream(HistoryFile state) throws IOException {
+        state.xmlFile.write(state.historyDescr);
+    }
+
+    @Benchmark
+    public void writeWithCodec(HistoryFile state) throws IOException {
+        HistoryDescrCodec.write(state.xmlFile, state.historyDescr);
+    }
+}
@@ -0,0 +1,91 @@
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for HistoryDescrCodec.
+ */
+class HistoryDescrCodecTest {
+
+    private static final HistoryDescr HISTORY_DESCR = new HistoryDescr(
+            "Jane <\"O'Doe\"> & Co", "jane", "Changed", "2024-01-02_03-04-05",
+            "new", "", "line 1\r\nline 2\tand \u0001", "0123abcd");
+
+    @TempDir
+    private File tempFolder;
+
+    @Test
+    void testEncodeLikeXStream() throws Exception {
+        assertEquals(writeWithXStream(HISTORY_DESCR), HistoryDescrCodec.encode(HISTORY_DESCR, null));
+        final HistoryDescr withoutOptionalFields = new HistoryDescr(
+                "user", "userId", "Created", "2024-01-02_03-04-05", null, null);
+        assertEquals(writeWithXStream(withoutOptionalFields),
+                HistoryDescrCodec.encode(withoutOptionalFields, null));
+        assertEquals(writeWithXStream(HistoryDescr.EMPTY_HISTORY_DESCR),
+                HistoryDescrCodec.encode(HistoryDescr.EMPTY_HISTORY_DESCR, null));
+    }
+
+    @Test
+    void testReadWrittenByXStream() throws Exception {
+        final File file = new File(tempFolder, "history.xml");
+        new XmlFile(file).write(HISTORY_DESCR);
+
+        final HistoryDescr read = HistoryDescrCodec.decode(Files.newInputStream(file.toPath()));
+        assertNotNull(read);
+        assertSameFields(HISTORY_DESCR, read);
+    }
+
+    @Test
+    void testWriteReadByXStream() throws Exception {
+        final XmlFile xmlFile = new XmlFile(new File(tempFolder, "history.xml"));
+        HistoryDescrCodec.write(xmlFile, HISTORY_DESCR);
+
+        assertSameFields(HISTORY_DESCR, (HistoryDescr) xmlFile.read());
+        assertSameFields(HISTORY_DESCR, HistoryDescrCodec.read(xmlFile));
+    }
+
+    @Test
+    void testReadUnknownShapeWithXStream() throws Exception {
+        final String xml = "<?xml version='1.1' encoding='UTF-8'?>\n"
+                + "<hudson.plugins.jobConfigHistory.HistoryDescr>\n"
+                + "  <user class=\"string\">user</user>\n"
+                + "  <operation>Changed</operation>\n"
+                + "</hudson.plugins.jobConfigHistory.HistoryDescr>";
+        assertNull(HistoryDescrCodec.decode(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))));
+
+        final File file = new File(tempFolder, "history.xml");
+        Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+        final HistoryDescr read = HistoryDescrCodec.read(new XmlFile(file));
+        assertEquals("user", read.getUser());
+        assertEquals("Changed", read.getOperation());
+    }
+
+    private String writeWithXStream(HistoryDescr historyDescr) throws Exception {
+        final File file = File.createTempFile("history", ".xml", tempFolder);
+        new XmlFile(file).write(historyDescr);
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static void assertSameFields(HistoryDescr expected, HistoryDescr actual) {
+        assertEquals(expected.getUser(), actual.getUser());
+        assertEquals(expected.getUserID(), actual.getUserID());
+        assertEquals(expected.getOperation(), actual.getOperation());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getCurrentName(), actual.getCurrentName());
+        assertEquals(expected.getOldName(), actual.getOldName());
+        assertEquals(expected.getChangeReasonComment(), actual.getChangeReasonComment());
+        assertEquals(expected.getConfigDigest(), actual.getConfigDigest());
+    }
+}
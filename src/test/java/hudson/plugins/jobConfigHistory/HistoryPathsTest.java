@@ -0,0 +1,39 @@
+package hudson.plugins.jobConfigHistory;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for HistoryPaths.
+ */
+class HistoryPathsTest {
+
+    private static final File ROOT = new File("config-history");
+
+    @Test
+    void testRelativePath() {
+        assertEquals("jobs/folder/jobs/Test1", HistoryPaths.relativePath(ROOT,
+                new File(ROOT, "jobs/folder/jobs/../jobs/Test1")));
+        assertEquals("hudson.model.Hudson", HistoryPaths.relativePath(ROOT.getAbsoluteFile(),
+                new File(ROOT, "hudson.model.Hudson")));
+        assertNull(HistoryPaths.relativePath(ROOT, ROOT));
+        assertNull(HistoryPaths.relativePath(ROOT, new File(ROOT, "../jobs/Test1")));
+    }
+
+    @Test
+    void testCategory() {
+        assertEquals(RevisionTimeline.Category.SYSTEM, HistoryPaths.category("hudson.model.Hudson"));
+        assertEquals(RevisionTimeline.Category.JOB, HistoryPaths.category("jobs/Test1"));
+        assertEquals(RevisionTimeline.Category.JOB, HistoryPaths.category("jobs/folder/jobs/Test1"));
+        assertEquals(RevisionTimeline.Category.DELETED_JOB,
+                HistoryPaths.category("jobs/Test1_deleted_20130830_223932_071"));
+        assertNull(HistoryPaths.category(JobConfigHistoryConsts.JOBS_HISTORY_DIR));
+        assertNull(HistoryPaths.category(JobConfigHistoryConsts.NODES_HISTORY_DIR));
+        assertNull(HistoryPaths.category(JobConfigHistoryConsts.OBJECTS_HISTORY_DIR));
+        assertNull(HistoryPaths.category("nodes/agent1"));
+    }
+}
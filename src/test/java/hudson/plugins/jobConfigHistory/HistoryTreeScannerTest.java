@@ -0,0 +1,47 @@
+package hudson.plugins.jobConfigHistory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for HistoryTreeScanner.
+ */
+class HistoryTreeScannerTest {
+
+    @TempDir
+    private File tempFolder;
+
+    @Test
+    void testScansFolders() {
+        final File jobsDir = new File(tempFolder, "jobs");
+        final File job = mkdirs(jobsDir, "Test1/2024-01-02_03-04-05");
+        final File deletedJob = mkdirs(jobsDir, "Test2_deleted_20240102_030405_000");
+        final File jobInFolder = mkdirs(jobsDir, "Folder/jobs/Test3");
+        final File jobInSubFolder = mkdirs(jobsDir, "Folder/jobs/Sub/jobs/Test4");
+        // a folder without jobs
+        mkdirs(jobsDir, "Empty/jobs");
+
+        final Set<File> expected = new HashSet<>(Arrays.asList(job.getParentFile(),
+                deletedJob, jobInFolder, jobInSubFolder));
+        assertEquals(expected, new HashSet<>(HistoryTreeScanner.scan(jobsDir)));
+    }
+
+    @Test
+    void testMissingDirectory() {
+        assertTrue(HistoryTreeScanner.scan(new File(tempFolder, "jobs")).isEmpty());
+    }
+
+    private static File mkdirs(File parent, String path) {
+        final File dir = new File(parent, path);
+        assertTrue(dir.mkdirs());
+        return dir;
+    }
+}
@@ -43,14 +43,15 @@ import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
-import java.util.List;
 import java.util.SortedMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -219,18 +220,16 @@ class JobConfigBadgeActionTest {
         };
         when(mockedBuild.getPreviousBuild()).thenReturn(previousBuild);
         psut.onStarted(mockedBuild, TaskListener.NULL);
+        verify(mockedBuild).addAction(any(JobConfigBadgeAction.class));
     }
 
     private JobConfigBadgeAction.Listener createListenerSut() {
         return new JobConfigBadgeAction.Listener() {
 
             @Override
-            List<HistoryDescr> getRevisions(Job<?, ?> project) {
-                return Arrays.asList(
-                        new HistoryDescr("user", "userId", "changed",
-                                "2013-10-30_23-00-06", null, null),
-                        new HistoryDescr("user", "userId", "changed",
-                                "2013-10-30_23-00-07", null, null));
+            String[] getConfigChangeDates(Job<?, ?> project, long lastBuildTime) {
+                return ChangeIndex.of(Arrays.asList("2013-10-30_23-00-06",
+                        "2013-10-30_23-00-07")).getConfigChangeDates(lastBuildTime);
             }
 
         };
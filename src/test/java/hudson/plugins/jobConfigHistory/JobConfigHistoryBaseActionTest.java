@@ -12,6 +12,7 @@ import org.kohsuke.stapler.StaplerRequest2;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -142,6 +143,27 @@ class JobConfigHistoryBaseActionTest {
         assertEquals("\n", result);
     }
 
+    @Test
+    void testGetDiffAsStringHidingVersionDiffs() {
+        final String[] file1Lines = {"<project plugin=\"a@1.0\">", "  <x>1</x>", "</project>"};
+        final String[] file2Lines = {"<project plugin=\"a@2.0\">", "  <x>2</x>", "</project>"};
+        final File file = new File(JobConfigHistoryBaseActionTest.class.getResource("file1.txt").getPath());
+        JobConfigHistoryBaseAction sut = new JobConfigHistoryBaseActionImpl();
+
+        assertThat(sut.getDiffAsString(file, file, file1Lines, file2Lines, true),
+                endsWith("@@ -1,3 +1,3 @@\n <project plugin=\"a@1.0\">\n-  <x>1</x>\n+  <x>2</x>\n </project>\n"));
+        assertThat(sut.getDiffAsString(file, file, file1Lines, file2Lines, false),
+                containsString("-<project plugin=\"a@1.0\">\n"));
+        assertEquals("\n", sut.getDiffAsString(file, file,
+                new String[]{file1Lines[0]}, new String[]{file2Lines[0]}, true));
+    }
+
+    @Test
+    void testMaskVersions() {
+        assertEquals(Arrays.asList("<a x=\"1\" plugin=\"git@\" y=\"e@x\"/>", "<b/>"),
+                JobConfigHistoryBaseAction.maskVersions(Arrays.asList("<a x=\"1\" plugin=\"git@5.0\" y=\"e@x\"/>", "<b/>")));
+    }
+
     @Test
     void testGetMaxEntriesPerPage() {
         JobConfigHistoryBaseAction sut = new JobConfigHistoryBaseActionImpl();
@@ -93,7 +93,7 @@ class JobConfigHistoryJobListenerIT {
         (new FilePath(historyDir)).deleteRecursive();
         project1.renameTo("newproject1");
         assertEquals(1,
-                getHistoryDir(project1.getConfigFile()).list().length,
+                getHistoryDir(project1.getConfigFile()).listFiles(HistoryFileFilter.INSTANCE).length,
                 "Verify only 1 history entry after rename.");
 
         // test rename failure - causes renameTo to fail if we lock the parent
@@ -0,0 +1,62 @@
+package hudson.plugins.jobConfigHistory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JobConfigHistoryPackerTest {
+
+    private final JobConfigHistory mockedPlugin = mock(JobConfigHistory.class);
+    private final FileHistoryDao mockedDao = mock(FileHistoryDao.class);
+
+    @TempDir
+    private File tempFolder;
+
+    @Test
+    void testGetRecurrencePeriod() {
+        JobConfigHistoryPacker sut = new JobConfigHistoryPacker(mockedPlugin, mockedDao);
+        assertEquals(24 * 60 * 60 * 1000, sut.getRecurrencePeriod());
+    }
+
+    @Test
+    void testDoRunPacksAllItems() {
+        final File systemConfig = new File(tempFolder, "config");
+        final File job = new File(tempFolder, "jobs/Test1");
+        final File node = new File(tempFolder, "nodes/agent");
+        node.mkdirs();
+        when(mockedPlugin.getPackEntriesOlderThanDays()).thenReturn("30");
+        when(mockedDao.getSystemConfigs()).thenReturn(new File[]{systemConfig});
+        when(mockedDao.getJobs()).thenReturn(new File[]{job});
+        when(mockedDao.getDeletedJobs()).thenReturn(new File[0]);
+        when(mockedDao.getNodeHistoryRootDir()).thenReturn(node.getParentFile());
+
+        new JobConfigHistoryPacker(mockedPlugin, mockedDao).doRun();
+
+        verify(mockedDao).packRevisions(eq(systemConfig), anyString());
+        verify(mockedDao).packRevisions(eq(job), anyString());
+        verify(mockedDao).packRevisions(eq(node), anyString());
+    }
+
+    @Test
+    void testDoRunEmpty() {
+        when(mockedPlugin.getPackEntriesOlderThanDays()).thenReturn(null);
+        new JobConfigHistoryPacker(mockedPlugin, mockedDao).doRun();
+        verify(mockedDao, never()).getSystemConfigs();
+    }
+
+    @Test
+    void testDoRunNoNumber() {
+        when(mockedPlugin.getPackEntriesOlderThanDays()).thenReturn("A");
+        new JobConfigHistoryPacker(mockedPlugin, mockedDao).doRun();
+        verify(mockedDao, never()).getSystemConfigs();
+    }
+}
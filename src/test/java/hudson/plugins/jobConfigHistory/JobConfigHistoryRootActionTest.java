@@ -27,6 +27,7 @@ import hudson.XmlFile;
 import hudson.model.FreeStyleProject;
 import hudson.model.JDK;
 import hudson.security.AccessControlled;
+import jakarta.servlet.http.HttpServletResponse;
 import jenkins.model.Jenkins;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -53,6 +54,8 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 /**
@@ -193,7 +196,7 @@ class JobConfigHistoryRootActionTest {
         freeStyleProject.delete();
 
         //get the expected timestamp
-        List<File> revisionsFromDeletedProject = Arrays.stream(PluginUtils.getHistoryDao().getDeletedJobs()[0].listFiles())
+        List<File> revisionsFromDeletedProject = Arrays.stream(PluginUtils.getHistoryDao().getDeletedJobs()[0].listFiles(HistoryFileFilter.INSTANCE))
                 .sorted(Comparator.naturalOrder()).toList();
 
         //expected stuff
@@ -340,6 +343,18 @@ class JobConfigHistoryRootActionTest {
         assertEquals(0, createUnauthorizedStaplerMockedSut().getLines().size());
     }
 
+    @Test
+    void testDiffJsonNoPermissions() throws Exception {
+        given(mockedStaplerRequest.getParameter("name")).willReturn("Test1");
+        final JobConfigHistoryRootAction sut = createUnauthorizedStaplerMockedSut();
+        final StaplerResponse2 rsp = mock(StaplerResponse2.class);
+        sut.doDiffLines(mockedStaplerRequest, rsp);
+        sut.doDiffContext(mockedStaplerRequest, rsp);
+        sut.doDiffPatch(mockedStaplerRequest, rsp);
+        verify(rsp, times(3)).sendError(HttpServletResponse.SC_FORBIDDEN);
+        verify(rsp, never()).getWriter();
+    }
+
     @Test
     void testFindNewName() throws Exception {
         FreeStyleProject test1 = jenkinsRule.createFreeStyleProject("Test1");
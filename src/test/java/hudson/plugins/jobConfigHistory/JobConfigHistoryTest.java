@@ -61,7 +61,9 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.mock;
@@ -394,6 +396,17 @@ class JobConfigHistoryTest {
         assertNotEquals(expectedResult, sut.doCheckExcludePattern("[.*"));
     }
 
+    @Test
+    void testSharedHistoryDaoIsRebuiltOnSave() {
+        JobConfigHistory sut = createSut();
+        FileHistoryDao first = sut.getSharedHistoryDao();
+        assertSame(first, sut.getSharedHistoryDao());
+        sut.setMaxHistoryEntries("5");
+        FileHistoryDao second = sut.getSharedHistoryDao();
+        assertNotSame(first, second);
+        assertSame(second, sut.getSharedHistoryDao());
+    }
+
     private JobConfigHistory createUnauthorizedSut() {
         return new JobConfigHistory() {
             @Override
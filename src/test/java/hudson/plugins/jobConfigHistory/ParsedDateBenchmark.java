@@ -0,0 +1,84 @@
+package hudson.plugins.jobConfigHistory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares creating and sorting 100k entries of the overview by parsing their
+ * dates in each comparison, like it was done before, and by
+ * {@link ParsedDateComparator}, which parses each date once. The entries are
+ * created in the benchmarks, as {@link ConfigInfo} parses its date when it is
+ * created. Run by {@link BenchmarkRunner}.
+ */
+public class ParsedDateBenchmark {
+
+    private static final int ENTRIES = 100_000;
+
+    /**
+     * Parses the dates with a new {@link SimpleDateFormat} in each comparison.
+     */
+    private static final Comparator<ConfigInfo> PARSING_EACH_TIME =
+            (ci1, ci2) -> Long.compare(parse(ci2.getDate()), parse(ci1.getDate()));
+
+    @State(Scope.Thread)
+    public static class Entries {
+
+        private List<String> dates;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            final Random random = new Random(42);
+            final SimpleDateFormat format = new SimpleDateFormat(JobConfigHistoryConsts.ID_FORMATTER);
+            dates = new ArrayList<>(ENTRIES);
+            for (int i = 0; i < ENTRIES; i++) {
+                dates.add(format.format(1_300_000_000_000L + random.nextInt(Integer.MAX_VALUE) * 100L));
+            }
+            Collections.shuffle(dates, random);
+        }
+
+        /**
+         * New entries for each sort, as they are created for each page.
+         */
+        private List<ConfigInfo> configs() {
+            final List<ConfigInfo> configs = new ArrayList<>(ENTRIES);
+            for (int i = 0; i < ENTRIES; i++) {
+                configs.add(new ConfigInfo("job" + (i % 1000), true, dates.get(i), "Jane Doe",
+                        "Changed", "jane", true, null, null, null));
+            }
+            return configs;
+        }
+    }
+
+    private static long parse(String date) {
+        try {
+            return new SimpleDateFormat(JobConfigHistoryConsts.ID_FORMATTER).parse(date).getTime();
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Benchmark
+    public List<ConfigInfo> sortParsingEachTime(Entries state) {
+        final List<ConfigInfo> configs = state.configs();
+        configs.sort(PARSING_EACH_TIME);
+        return configs;
+    }
+
+    @Benchmark
+    public List<ConfigInfo> sortParsingOnce(Entries state) {
+        final List<ConfigInfo> configs = state.configs();
+        configs.sort(ParsedDateComparator.DESCENDING);
+        return configs;
+    }
+}
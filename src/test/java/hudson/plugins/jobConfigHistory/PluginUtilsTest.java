@@ -26,6 +26,7 @@ package hudson.plugins.jobConfigHistory;
 
 import org.junit.jupiter.api.Test;
 
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -48,10 +49,29 @@ class PluginUtilsTest {
         assertEquals(expResult, result);
     }
 
+    @Test
+    void utilShouldParseMillisecondSuffix() {
+        String timeStamp = "2012-11-21_11-29-12_042";
+        Date expResult = new Date(new GregorianCalendar(2012, Calendar.NOVEMBER, 21, 11, 29, 12).getTimeInMillis() + 42);
+        Date result = PluginUtils.parsedDate(timeStamp);
+        assertEquals(expResult, result);
+    }
+
     @Test
     void parsingInvalidDateShouldThrow() {
         String timeStamp = "abc";
         assertThrows(IllegalArgumentException.class, () ->
             PluginUtils.parsedDate(timeStamp));
     }
+
+    @Test
+    void parsedTimeShouldMatchSimpleDateFormat() throws Exception {
+        final SimpleDateFormat format = new SimpleDateFormat(JobConfigHistoryConsts.ID_FORMATTER);
+        // includes the clock changes in Europe and in the US
+        for (String timeStamp : new String[]{"2012-11-21_11-29-12", "2013-03-31_02-30-00",
+                "2013-10-27_02-30-00", "2013-03-10_02-30-00", "2013-11-03_01-30-00",
+                "1969-12-31_23-59-59", "2012-11-21_11-29-12 and more"}) {
+            assertEquals(format.parse(timeStamp).getTime(), PluginUtils.parsedTime(timeStamp));
+        }
+    }
 }
@@ -0,0 +1,85 @@
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for RevisionCounts.
+ */
+@WithJenkins
+@Execution(ExecutionMode.SAME_THREAD)
+class RevisionCountsTest {
+
+    private UnpackResourceZip unpackResourceZip;
+    private File historyRoot;
+    private File test1History;
+    private XmlFile test1Config;
+    private FileHistoryDao sut;
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) throws Exception {
+        unpackResourceZip = UnpackResourceZip.create();
+        final File jenkinsHome = unpackResourceZip.getRoot();
+        historyRoot = unpackResourceZip.getResource("config-history");
+        test1History = new File(historyRoot, "jobs/Test1");
+        test1Config = new XmlFile(unpackResourceZip.getResource("jobs/Test1/config.xml"));
+        sut = new FileHistoryDao(historyRoot, jenkinsHome, null, 0, true);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (unpackResourceZip != null) {
+            unpackResourceZip.cleanUp();
+        }
+    }
+
+    @Test
+    void testTotals() {
+        assertEquals(5, sut.getSystemRevisionAmount());
+        assertEquals(6, sut.getJobRevisionAmount());
+        assertEquals(1, sut.getDeletedJobAmount());
+        assertEquals(11, sut.getTotalRevisionAmount());
+        assertEquals(5, new RevisionCounts(historyRoot).getJobAmount(sut, "jobs"));
+        assertEquals(5, sut.getRevisionAmount(test1Config));
+        assertEquals(5, sut.getSystemRevisionAmount("config"));
+        assertEquals(3, sut.getJobRevisionAmount("Foo_deleted_20130830_223932_071"));
+    }
+
+    @Test
+    void testUpdatedByWritesAndDeletes() throws Exception {
+        assertEquals(6, sut.getJobRevisionAmount());
+
+        sut.createNewHistoryEntry(test1Config, "Changed", null, null, null);
+        assertEquals(6, sut.getRevisionAmount(test1Config));
+        assertEquals(7, sut.getJobRevisionAmount());
+
+        sut.deleteRevision(test1History, "2012-11-21_11-29-12");
+        assertEquals(5, sut.getRevisionAmount(test1Config));
+        assertEquals(6, sut.getJobRevisionAmount());
+
+        final File test2Config = unpackResourceZip.getResource("jobs/Test2/config.xml");
+        FileUtils.copyFile(test1Config.getFile(), test2Config);
+        sut.createNewHistoryEntry(new XmlFile(test2Config), "Created", null, null, null);
+        assertEquals(7, sut.getJobRevisionAmount());
+        assertEquals(12, sut.getTotalRevisionAmount());
+    }
+
+    @Test
+    void testCountsAgainWhenChangedOtherwise() throws Exception {
+        assertEquals(5, sut.getRevisionAmount(test1Config));
+
+        FileUtils.deleteDirectory(new File(test1History, "2012-11-21_11-29-12"));
+        assertEquals(4, sut.getRevisionAmount(test1Config));
+    }
+}
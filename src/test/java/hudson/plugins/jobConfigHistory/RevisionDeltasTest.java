@@ -0,0 +1,126 @@
+package hudson.plugins.jobConfigHistory;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for RevisionDeltas.
+ */
+class RevisionDeltasTest {
+
+    @TempDir
+    private File itemHistoryDir;
+
+    @AfterEach
+    void tearDown() {
+        RevisionDeltas.clearCache();
+    }
+
+    @Test
+    void testEncodeAndApplyRoundTrip() throws Exception {
+        final byte[] base = "<a>\r\n  <b>1</b>\r\n</a>\r\n".getBytes(StandardCharsets.UTF_8);
+        final byte[] target = "<a>\r\n  <b>ä</b>\r\n  <c/>\r\n</a>".getBytes(StandardCharsets.UTF_8);
+        final String delta = RevisionDeltas.encode("base", base, target);
+        assertArrayEquals(target, RevisionDeltas.apply(delta, base));
+        assertArrayEquals(base, RevisionDeltas.apply(
+                RevisionDeltas.encode("base", target, base), target));
+    }
+
+    @Test
+    void testCompactKeepsEveryNthRevisionInFull() throws Exception {
+        final int count = 7;
+        for (int i = 0; i < count; i++) {
+            final File revision = createRevision(i);
+            RevisionDeltas.compact(revision, content(i), 3);
+        }
+        // oldest first: delta, delta, full, delta, delta, full, full (newest)
+        final boolean[] full = {false, false, true, false, false, true, true};
+        for (int i = 0; i < count; i++) {
+            final File revision = revisionDir(i);
+            assertEquals(full[i], FileHistoryDao.getConfigFile(revision) != null, revision.getName());
+            assertEquals(!full[i], RevisionDeltas.getDeltaFile(revision) != null, revision.getName());
+            final File config = full[i] ? FileHistoryDao.getConfigFile(revision)
+                    : RevisionDeltas.materialize(revision);
+            assertArrayEquals(content(i), Files.readAllBytes(config.toPath()), revision.getName());
+        }
+    }
+
+    @Test
+    void testDetachRestoresOlderRevision() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            RevisionDeltas.compact(createRevision(i), content(i), 10);
+        }
+        assertNull(FileHistoryDao.getConfigFile(revisionDir(0)));
+
+        RevisionDeltas.detach(revisionDir(1));
+        FileUtils.deleteDirectory(revisionDir(1));
+
+        final File restored = FileHistoryDao.getConfigFile(revisionDir(0));
+        assertNotNull(restored);
+        assertNull(RevisionDeltas.getDeltaFile(revisionDir(0)));
+        assertArrayEquals(content(0), Files.readAllBytes(restored.toPath()));
+    }
+
+    @Test
+    void testEvictedRevisionDeletedLater() throws Exception {
+        final int count = RevisionDeltas.CACHE_SIZE + 2;
+        final File[] revisions = new File[count];
+        for (int i = 0; i < count; i++) {
+            revisions[i] = new File(itemHistoryDir, String.format("2024-01-01_00-%02d-00", i));
+            Files.createDirectories(revisions[i].toPath());
+            Files.write(new File(revisions[i], JobConfigHistoryConsts.HISTORY_FILE).toPath(),
+                    "<history/>".getBytes(StandardCharsets.UTF_8));
+            Files.write(new File(revisions[i], "config.xml").toPath(), content(i));
+            RevisionDeltas.compact(revisions[i], content(i), count);
+        }
+        final File first = RevisionDeltas.materialize(revisions[0]);
+        for (int i = 1; i < count - 1; i++) {
+            assertNotNull(RevisionDeltas.materialize(revisions[i]));
+        }
+        // evicted, but a caller may still be reading it
+        assertTrue(first.exists());
+
+        RevisionDeltas.sweep(System.nanoTime());
+        assertTrue(first.exists());
+        RevisionDeltas.sweep(System.nanoTime()
+                + TimeUnit.SECONDS.toNanos(RevisionDeltas.RETIRE_DELAY) + 1);
+        assertFalse(first.exists());
+        assertArrayEquals(content(0), Files.readAllBytes(
+                RevisionDeltas.materialize(revisions[0]).toPath()));
+    }
+
+    private File createRevision(int i) throws Exception {
+        final File revision = revisionDir(i);
+        Files.createDirectories(revision.toPath());
+        Files.write(new File(revision, JobConfigHistoryConsts.HISTORY_FILE).toPath(),
+                "<history/>".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(revision, "config.xml").toPath(), content(i));
+        return revision;
+    }
+
+    private File revisionDir(int i) {
+        return new File(itemHistoryDir, "2024-01-01_00-00-0" + i);
+    }
+
+    private static byte[] content(int i) {
+        final StringBuilder content = new StringBuilder("<?xml version='1.1' encoding='UTF-8'?>\n<project>\n");
+        for (int line = 0; line < 50; line++) {
+            content.append("  <line>").append(line == 20 ? i : line).append("</line>\n");
+        }
+        return content.append("</project>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
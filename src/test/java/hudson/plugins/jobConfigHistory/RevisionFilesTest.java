@@ -0,0 +1,53 @@
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for RevisionFiles.
+ */
+class RevisionFilesTest {
+
+    private static final String CONFIG = "<?xml version='1.1' encoding='ISO-8859-1'?>\n<project><description>ä</description></project>\n";
+
+    @TempDir
+    private File folder;
+
+    @Test
+    void testReadsCompressedAndPlainFiles() throws Exception {
+        final byte[] content = CONFIG.getBytes(StandardCharsets.ISO_8859_1);
+        final File plain = new File(folder, "config.xml");
+        final File compressed = new File(folder, "config.xml.gz");
+        Files.write(plain.toPath(), content);
+        Files.write(compressed.toPath(), RevisionFiles.compress(content));
+
+        assertFalse(RevisionFiles.isCompressed(plain));
+        assertTrue(RevisionFiles.isCompressed(compressed));
+        assertEquals("config.xml", RevisionFiles.getConfigName(compressed));
+        assertArrayEquals(content, RevisionFiles.readAllBytes(plain));
+        assertArrayEquals(content, RevisionFiles.readAllBytes(compressed));
+        assertEquals(new XmlFile(plain).asString(), RevisionFiles.asString(new XmlFile(compressed)));
+        try (Reader reader = RevisionFiles.newReader(new XmlFile(compressed))) {
+            assertEquals(CONFIG, IOUtils.toString(reader));
+        }
+    }
+
+    @Test
+    void testCompressedFileIsWellFormed() throws Exception {
+        final File compressed = new File(folder, "config.xml.gz");
+        Files.write(compressed.toPath(), RevisionFiles.compress(CONFIG.getBytes(StandardCharsets.ISO_8859_1)));
+        assertTrue(XmlSyntaxChecker.check(compressed).isWellFormatted());
+    }
+}
@@ -0,0 +1,38 @@
+package hudson.plugins.jobConfigHistory;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for RevisionIds.
+ */
+class RevisionIdsTest {
+
+    @Test
+    void testRoundTrip() {
+        for (String id : new String[]{"2012-11-21_11-29-12", "2013-01-18_17-33-51_042",
+                "2013-01-18_17-33-51_000", "1969-12-31_23-59-59_999", "0001-01-01_00-00-00"}) {
+            assertEquals(id, RevisionIds.toId(RevisionIds.toKey(id)));
+        }
+    }
+
+    @Test
+    void testOrderedLikeIdentifiers() {
+        assertTrue(RevisionIds.toKey("2013-01-18_17-33-51")
+                < RevisionIds.toKey("2013-01-18_17-33-51_000"));
+        assertTrue(RevisionIds.toKey("2013-01-18_17-33-51_999")
+                < RevisionIds.toKey("2013-01-18_17-33-52"));
+        assertTrue(RevisionIds.toKey("2012-12-31_23-59-59")
+                < RevisionIds.toKey("2013-01-01_00-00-00"));
+    }
+
+    @Test
+    void testUnparseable() {
+        for (String id : new String[]{null, "", "yesterday", "2024-02-30_00-00-00",
+                "2024-01-01_00-00-00_0a0", "2024-01-01_00-00-00-000", "2024-01-01 00-00-00"}) {
+            assertEquals(RevisionIds.UNPARSEABLE, RevisionIds.toKey(id));
+        }
+    }
+}
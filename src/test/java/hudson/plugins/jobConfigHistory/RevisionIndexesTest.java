@@ -0,0 +1,87 @@
+package hudson.plugins.jobConfigHistory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for RevisionIndexes.
+ */
+class RevisionIndexesTest {
+
+    @TempDir
+    private File tempFolder;
+
+    private final AtomicInteger listings = new AtomicInteger();
+
+    private final Function<File, SortedMap<String, HistoryDescr>> lister = dir -> {
+        listings.incrementAndGet();
+        final SortedMap<String, HistoryDescr> revisions = new TreeMap<>();
+        final String[] names = dir.list();
+        if (names != null) {
+            for (String name : names) {
+                revisions.put(name, HistoryDescr.EMPTY_HISTORY_DESCR);
+            }
+        }
+        return revisions;
+    };
+
+    private final RevisionIndexes indexes = new RevisionIndexes();
+
+    private File itemHistoryDir;
+
+    @BeforeEach
+    void setUp() {
+        itemHistoryDir = new File(tempFolder, "jobs/Test1");
+        assertTrue(new File(itemHistoryDir, "2024-01-02_03-04-05").mkdirs());
+    }
+
+    @Test
+    void testListedOnce() {
+        final SortedMap<String, HistoryDescr> revisions = indexes.get(itemHistoryDir, lister);
+        assertEquals(1, revisions.size());
+        assertSame(revisions, indexes.get(itemHistoryDir, lister));
+        assertEquals(1, listings.get());
+        assertThrows(UnsupportedOperationException.class, revisions::clear);
+    }
+
+    @Test
+    void testListedAgainWhenInvalidated() {
+        indexes.get(itemHistoryDir, lister);
+        indexes.invalidate(itemHistoryDir);
+        indexes.get(itemHistoryDir, lister);
+        assertEquals(2, listings.get());
+    }
+
+    @Test
+    void testListedAgainWhenChangedOtherwise() throws Exception {
+        indexes.get(itemHistoryDir, lister);
+        assertTrue(new File(itemHistoryDir, "2024-01-03_03-04-05").mkdir());
+        // in case the file system has a coarse modification time
+        Files.setLastModifiedTime(itemHistoryDir.toPath(), FileTime.fromMillis(0));
+
+        assertEquals(2, indexes.get(itemHistoryDir, lister).size());
+        assertEquals(2, listings.get());
+    }
+
+    @Test
+    void testNotKeptForMissingDirectory() {
+        final File missing = new File(tempFolder, "jobs/Missing");
+        assertTrue(indexes.get(missing, lister).isEmpty());
+        assertTrue(indexes.get(missing, lister).isEmpty());
+        assertEquals(2, listings.get());
+    }
+}
@@ -0,0 +1,129 @@
+package hudson.plugins.jobConfigHistory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for RevisionManifest.
+ */
+class RevisionManifestTest {
+
+    private static final String FIRST = "2024-01-02_03-04-05";
+    private static final String SECOND = "2024-01-03_03-04-05";
+
+    @TempDir
+    private File tempFolder;
+
+    private File itemHistoryDir;
+    private File manifest;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        itemHistoryDir = new File(tempFolder, "jobs/Test1");
+        manifest = new File(itemHistoryDir, RevisionManifest.MANIFEST_FILE);
+        createRevision(FIRST, "config.xml");
+    }
+
+    @AfterEach
+    void tearDown() {
+        RevisionManifest.clearIndices();
+    }
+
+    @Test
+    void testNotRecordedUntilCreated() throws Exception {
+        final File second = createRevision(SECOND, "config.xml");
+        RevisionManifest.added(second, new File(second, "config.xml"), "abc");
+
+        assertFalse(manifest.exists());
+        assertNull(RevisionManifest.get(second));
+    }
+
+    @Test
+    void testCreateAddAndRemove() throws Exception {
+        RevisionManifest.create(itemHistoryDir);
+        final RevisionManifest.Entry first = RevisionManifest.get(new File(itemHistoryDir, FIRST));
+        assertEquals("config.xml", first.configName);
+        assertEquals(new File(itemHistoryDir, FIRST + "/config.xml").length(), first.size);
+        assertNull(first.digest);
+
+        final File second = createRevision(SECOND, "config.xml.gz");
+        RevisionManifest.added(second, new File(second, "config.xml.gz"), "abc");
+        final RevisionManifest.Entry added = RevisionManifest.get(second);
+        assertEquals("config.xml.gz", added.configName);
+        assertEquals("abc", added.digest);
+
+        RevisionManifest.removed(itemHistoryDir, Collections.singleton(FIRST));
+        assertNull(RevisionManifest.get(new File(itemHistoryDir, FIRST)));
+        assertEquals("config.xml.gz", RevisionManifest.get(second).configName);
+    }
+
+    @Test
+    void testIgnoresIncompleteLine() throws Exception {
+        RevisionManifest.create(itemHistoryDir);
+        Files.write(manifest.toPath(), (SECOND + "\tconfig.xml").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        assertNull(RevisionManifest.get(new File(itemHistoryDir, SECOND)));
+        assertEquals("config.xml", RevisionManifest.get(new File(itemHistoryDir, FIRST)).configName);
+    }
+
+    @Test
+    void testConfigFileFoundWhenChangedBehindOurBack() throws Exception {
+        RevisionManifest.create(itemHistoryDir);
+        final File revisionDir = new File(itemHistoryDir, FIRST);
+        assertEquals(new File(revisionDir, "config.xml"), FileHistoryDao.getConfigFile(revisionDir));
+
+        final File renamed = new File(revisionDir, "other.xml");
+        assertTrue(new File(revisionDir, "config.xml").renameTo(renamed));
+        assertEquals(renamed, FileHistoryDao.getConfigFile(revisionDir));
+    }
+
+    @Test
+    void testLeastRecentlyUsedDropped() throws Exception {
+        RevisionManifest.create(itemHistoryDir);
+        final StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < RevisionManifest.MAX_ENTRIES; i++) {
+            lines.append("revision").append(i).append("\tconfig.xml\t10\t-\n");
+        }
+        Files.write(manifest.toPath(), lines.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        assertEquals("config.xml", RevisionManifest.get(new File(itemHistoryDir, FIRST)).configName);
+        assertEquals(RevisionManifest.MAX_ENTRIES + 1, RevisionManifest.getSize());
+
+        final File otherHistoryDir = new File(tempFolder, "jobs/Test2");
+        final File other = new File(otherHistoryDir, FIRST);
+        assertTrue(other.mkdirs());
+        Files.write(new File(other, JobConfigHistoryConsts.HISTORY_FILE).toPath(),
+                "<history/>".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(other, "config.xml").toPath(), "<project/>".getBytes(StandardCharsets.UTF_8));
+        RevisionManifest.create(otherHistoryDir);
+        assertEquals("config.xml", RevisionManifest.get(other).configName);
+        assertEquals(1, RevisionManifest.getSize());
+
+        // read again from the manifest
+        assertEquals("config.xml", RevisionManifest.get(new File(itemHistoryDir, FIRST)).configName);
+    }
+
+    private File createRevision(String revision, String configName) throws Exception {
+        final File revisionDir = new File(itemHistoryDir, revision);
+        assertTrue(revisionDir.mkdirs());
+        Files.write(new File(revisionDir, JobConfigHistoryConsts.HISTORY_FILE).toPath(),
+                "<history/>".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(revisionDir, configName).toPath(),
+                "<project/>".getBytes(StandardCharsets.UTF_8));
+        return revisionDir;
+    }
+}
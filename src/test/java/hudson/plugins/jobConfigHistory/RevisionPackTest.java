@@ -0,0 +1,128 @@
+package hudson.plugins.jobConfigHistory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for RevisionPack.
+ */
+class RevisionPackTest {
+
+    @TempDir
+    private File itemHistoryDir;
+
+    @AfterEach
+    void tearDown() {
+        RevisionPack.clearIndices();
+    }
+
+    @Test
+    void testAddAndReadPackedRevisions() throws Exception {
+        RevisionPack.add(itemHistoryDir, Arrays.asList(revision(1), revision(2)));
+        RevisionPack.add(itemHistoryDir, Collections.singletonList(revision(3)));
+
+        assertEquals(Arrays.asList(name(1), name(2), name(3)),
+                Arrays.asList(RevisionPack.getEntries(itemHistoryDir).keySet().toArray()));
+        final File config = RevisionPack.getConfigFile(new File(itemHistoryDir, name(2)));
+        assertNotNull(config);
+        assertTrue(RevisionPack.isPacked(config));
+        assertTrue(RevisionFiles.exists(config));
+        assertArrayEquals(content(2), RevisionFiles.readAllBytes(config));
+        final File history = RevisionPack.getHistoryFile(new File(itemHistoryDir, name(3)));
+        assertNotNull(history);
+        assertArrayEquals(history(3), RevisionPack.readAllBytes(history));
+    }
+
+    @Test
+    void testRemoveDeletesEmptyPack() throws Exception {
+        RevisionPack.add(itemHistoryDir, Arrays.asList(revision(1), revision(2)));
+
+        assertEquals(1, RevisionPack.remove(itemHistoryDir, Collections.singleton(name(1))));
+        assertNull(RevisionPack.getConfigFile(new File(itemHistoryDir, name(1))));
+        assertArrayEquals(content(2), RevisionFiles.readAllBytes(
+                RevisionPack.getConfigFile(new File(itemHistoryDir, name(2)))));
+        assertEquals(0, RevisionPack.remove(itemHistoryDir, Collections.singleton(name(1))));
+
+        assertEquals(1, RevisionPack.remove(itemHistoryDir, Collections.singleton(name(2))));
+        assertFalse(RevisionPack.getPackFile(itemHistoryDir).exists());
+        assertTrue(RevisionPack.getEntries(itemHistoryDir).isEmpty());
+    }
+
+    @Test
+    void testRemoveOnlyListsRemovedRevisions() throws Exception {
+        RevisionPack.add(itemHistoryDir, Arrays.asList(revision(1), revision(2), revision(3)));
+        final File packFile = RevisionPack.getPackFile(itemHistoryDir);
+        final long packed = packFile.length();
+
+        assertEquals(1, RevisionPack.remove(itemHistoryDir, Arrays.asList(name(1), "other")));
+        assertEquals(packed, packFile.length());
+        assertEquals(Arrays.asList(name(2), name(3)),
+                Arrays.asList(RevisionPack.getEntries(itemHistoryDir).keySet().toArray()));
+        assertNull(RevisionPack.getConfigFile(new File(itemHistoryDir, name(1))));
+        assertFalse(RevisionFiles.exists(new File(new File(packFile, name(1)), "config.xml.gz")));
+
+        assertTrue(RevisionPack.compact(itemHistoryDir));
+        assertTrue(packFile.length() < packed);
+        assertFalse(new File(itemHistoryDir, RevisionPack.REMOVED_FILE).exists());
+        assertFalse(RevisionPack.compact(itemHistoryDir));
+        assertEquals(Arrays.asList(name(2), name(3)),
+                Arrays.asList(RevisionPack.getEntries(itemHistoryDir).keySet().toArray()));
+        assertArrayEquals(content(3), RevisionFiles.readAllBytes(
+                RevisionPack.getConfigFile(new File(itemHistoryDir, name(3)))));
+        assertArrayEquals(history(2), RevisionPack.readAllBytes(
+                RevisionPack.getHistoryFile(new File(itemHistoryDir, name(2)))));
+    }
+
+    @Test
+    void testAddDropsRemovedRevisions() throws Exception {
+        RevisionPack.add(itemHistoryDir, Arrays.asList(revision(1), revision(2)));
+        RevisionPack.remove(itemHistoryDir, Collections.singleton(name(1)));
+
+        RevisionPack.add(itemHistoryDir, Collections.singletonList(revision(3)));
+        assertFalse(new File(itemHistoryDir, RevisionPack.REMOVED_FILE).exists());
+        assertEquals(Arrays.asList(name(2), name(3)),
+                Arrays.asList(RevisionPack.getEntries(itemHistoryDir).keySet().toArray()));
+        assertArrayEquals(content(2), RevisionFiles.readAllBytes(
+                RevisionPack.getConfigFile(new File(itemHistoryDir, name(2)))));
+    }
+
+    @Test
+    void testRevisionWithoutConfiguration() throws Exception {
+        RevisionPack.add(itemHistoryDir, Collections.singletonList(
+                new RevisionPack.Revision(name(1), history(1), "", new byte[0])));
+
+        assertNull(RevisionPack.getConfigFile(new File(itemHistoryDir, name(1))));
+        assertNotNull(RevisionPack.getHistoryFile(new File(itemHistoryDir, name(1))));
+    }
+
+    private static RevisionPack.Revision revision(int i) throws Exception {
+        return new RevisionPack.Revision(name(i), history(i), "config.xml.gz",
+                RevisionFiles.compress(content(i)));
+    }
+
+    private static String name(int i) {
+        return "2024-01-01_00-00-0" + i;
+    }
+
+    private static byte[] history(int i) {
+        return ("<history>" + i + "</history>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] content(int i) {
+        return ("<?xml version='1.1' encoding='UTF-8'?>\n<project>" + i + "</project>\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
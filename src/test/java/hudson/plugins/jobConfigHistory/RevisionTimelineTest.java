@@ -0,0 +1,143 @@
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for RevisionTimeline.
+ */
+@WithJenkins
+@Execution(ExecutionMode.SAME_THREAD)
+class RevisionTimelineTest {
+
+    private static final Set<RevisionTimeline.Category> ALL =
+            EnumSet.allOf(RevisionTimeline.Category.class);
+
+    private UnpackResourceZip unpackResourceZip;
+    private File historyRoot;
+    private File test1History;
+    private XmlFile test1Config;
+    private FileHistoryDao sut;
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) throws Exception {
+        unpackResourceZip = UnpackResourceZip.create();
+        final File jenkinsHome = unpackResourceZip.getRoot();
+        historyRoot = unpackResourceZip.getResource("config-history");
+        test1History = new File(historyRoot, "jobs/Test1");
+        test1Config = new XmlFile(unpackResourceZip.getResource("jobs/Test1/config.xml"));
+        sut = new FileHistoryDao(historyRoot, jenkinsHome, null, 0, true);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (unpackResourceZip != null) {
+            unpackResourceZip.cleanUp();
+        }
+    }
+
+    @Test
+    void testGetPage() throws Exception {
+        final RevisionTimeline timeline = sut.getTimeline();
+        assertNotNull(timeline);
+        assertTrue(new File(historyRoot, RevisionTimeline.TIMELINE_FILE).exists());
+
+        final List<RevisionTimeline.Revision> all = timeline.getPage(ALL, 0, 100);
+        assertEquals(13, all.size());
+        assertEquals("Foo_deleted_20130830_223932_071", all.get(0).itemName);
+        assertEquals(RevisionTimeline.Category.DELETED_JOB, all.get(0).category);
+        assertEquals("Deleted", all.get(0).historyDescr.getOperation());
+        assertEquals("Test1", all.get(all.size() - 1).itemName);
+
+        final List<RevisionTimeline.Revision> page = timeline.getPage(ALL, 2, 4);
+        assertEquals(2, page.size());
+        assertEquals(all.get(2).itemName, page.get(0).itemName);
+        assertEquals(all.get(3).historyDescr.getTimestamp(), page.get(1).historyDescr.getTimestamp());
+
+        final List<RevisionTimeline.Revision> system = timeline.getPage(
+                EnumSet.of(RevisionTimeline.Category.SYSTEM), 0, 100);
+        assertEquals(5, system.size());
+        assertEquals("config", system.get(0).itemName);
+    }
+
+    @Test
+    void testRecordsChanges() throws Exception {
+        final RevisionTimeline timeline = sut.getTimeline();
+        assertNotNull(timeline);
+
+        sut.createNewHistoryEntry(test1Config, "Changed", null, null, null);
+        List<RevisionTimeline.Revision> all = timeline.getPage(ALL, 0, 100);
+        assertEquals(14, all.size());
+        assertEquals("Test1", all.get(0).itemName);
+        assertEquals("Changed", all.get(0).historyDescr.getOperation());
+
+        sut.deleteRevision(test1History, "2012-11-21_11-29-12");
+        assertEquals(13, timeline.getPage(ALL, 0, 100).size());
+
+        all = replay().getPage(ALL, 0, 100);
+        assertEquals(13, all.size());
+        assertEquals("Changed", all.get(0).historyDescr.getOperation());
+    }
+
+    @Test
+    void testRecordsMove() throws Exception {
+        final RevisionTimeline timeline = sut.getTimeline();
+        assertNotNull(timeline);
+
+        timeline.moved(test1History, new File(historyRoot, "jobs/Renamed"));
+        final List<RevisionTimeline.Revision> all = timeline.getPage(ALL, 0, 100);
+        assertEquals(13, all.size());
+        assertEquals("Renamed", all.get(all.size() - 1).itemName);
+    }
+
+    @Test
+    void testKeepsMoveWhenCompacting() throws Exception {
+        final RevisionTimeline timeline = sut.getTimeline();
+        assertNotNull(timeline);
+
+        final File renamed = new File(historyRoot, "jobs/Renamed");
+        assertTrue(test1History.renameTo(renamed));
+        timeline.moved(test1History, renamed);
+        timeline.verify(sut);
+
+        final List<RevisionTimeline.Revision> all = replay().getPage(ALL, 0, 100);
+        assertEquals(13, all.size());
+        assertEquals("Renamed", all.get(all.size() - 1).itemName);
+    }
+
+    @Test
+    void testRebuildsDamagedLog() throws Exception {
+        Files.write(new File(historyRoot, RevisionTimeline.TIMELINE_FILE).toPath(),
+                "garbage\n".getBytes(StandardCharsets.UTF_8));
+
+        final RevisionTimeline timeline = sut.getTimeline();
+        assertNotNull(timeline);
+        assertEquals(13, timeline.getPage(ALL, 0, 100).size());
+    }
+
+    /**
+     * @return a timeline replayed from the log, as by a new dao.
+     */
+    private RevisionTimeline replay() {
+        final RevisionTimeline timeline = new RevisionTimeline(historyRoot);
+        assertTrue(timeline.load(sut));
+        return timeline;
+    }
+}
@@ -0,0 +1,77 @@
+package hudson.plugins.jobConfigHistory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xml.sax.InputSource;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * Compares sorting a configuration for a diff with {@code xslt/sort.xslt},
+ * compiled once like it is for the diffs, and with {@link XmlSorter}. The
+ * configuration holds the given number of shell steps, about 200 bytes each,
+ * whose children are not sorted. Run by {@link BenchmarkRunner}.
+ */
+public class XmlSorterBenchmark {
+
+    @State(Scope.Thread)
+    public static class Configuration {
+
+        @Param({"100", "20000"})
+        private int steps;
+
+        private String config;
+
+        private Templates templates;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException, TransformerException {
+            final StringBuilder builder = new StringBuilder("<?xml version='1.1' encoding='UTF-8'?>\n"
+                    + "<project>\n  <description>generated</description>\n  <builders>\n");
+            for (int i = 0; i < steps; i++) {
+                builder.append("    <hudson.tasks.Shell plugin=\"shell@1.0\" id=\"").append(i).append("\">\n")
+                        .append("      <unstableReturn>1</unstableReturn>\n")
+                        .append("      <configuredLocalRules/>\n")
+                        .append("      <command>echo ").append(i).append(" &amp;&amp; make target-")
+                        .append(i).append("</command>\n")
+                        .append("    </hudson.tasks.Shell>\n");
+            }
+            config = builder.append("  </builders>\n</project>\n").toString();
+            try (InputStream xslt = JobConfigHistoryBaseAction.class.getResourceAsStream("xslt/sort.xslt")) {
+                templates = TransformerFactory.newInstance().newTemplates(new StreamSource(xslt));
+            }
+        }
+    }
+
+    @Benchmark
+    public String sortWithStylesheet(Configuration state) throws TransformerException {
+        final Transformer transformer = state.templates.newTransformer();
+        final StringWriter result = new StringWriter();
+        transformer.transform(new SAXSource(new InputSource(new StringReader(state.config))),
+                new StreamResult(result));
+        return result.toString();
+    }
+
+    @Benchmark
+    public String sortWithXmlSorter(Configuration state) throws IOException {
+        final StringWriter result = new StringWriter();
+        if (!XmlSorter.sort(new StringReader(state.config), result, new DiffLimits())) {
+            throw new IllegalStateException("configuration left to the stylesheet");
+        }
+        return result.toString();
+    }
+}
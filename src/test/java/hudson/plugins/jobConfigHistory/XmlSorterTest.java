@@ -0,0 +1,82 @@
+package hudson.plugins.jobConfigHistory;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.InputSource;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for XmlSorter.
+ */
+class XmlSorterTest {
+
+    @Test
+    void testSortedLikeStylesheet() throws Exception {
+        final String config = "<?xml version='1.1' encoding='UTF-8'?>\n"
+                + "<project plugin=\"workflow-job@1.0\" a=\"x&quot;y&#10;z\">\n"
+                + "  <zeta>text &amp; &lt;more&gt; &#13;\t\"q\" &#x1F600;</zeta>\n"
+                + "  <Beta/><alpha/><a_b/><a-b/><a.b/><a10/><a2/>\n"
+                + "  <dup i=\"1\"/><dup i=\"0\"/>\n"
+                + "  <builders>\n    <hudson.tasks.Shell><command><![CDATA[echo <a>]]></command></hudson.tasks.Shell>\n"
+                + "    <empty>   </empty>\n  </builders>\n"
+                + "  <control>&#1;&#x85;</control>\n"
+                + "</project>\n";
+        final StringWriter sorted = new StringWriter();
+        assertTrue(XmlSorter.sort(new StringReader(config), sorted, new DiffLimits()));
+        assertEquals(stylesheet(config), sorted.toString());
+    }
+
+    @Test
+    void testLeavesOthersToStylesheet() throws Exception {
+        assertLeft("<project><!-- comment --><a/></project>");
+        assertLeft("<project xmlns=\"urn:x\"><a/></project>");
+        assertLeft("<project><a>text<b/></a></project>");
+        assertLeft("<project><?target data?></project>");
+        assertLeft("<project><a/>");
+    }
+
+    @Test
+    void testGivenUpWhenCancelled() {
+        final DiffLimits limits = new DiffLimits();
+        Thread.currentThread().interrupt();
+        try {
+            final DiffLimits.Exceeded exceeded = assertThrows(DiffLimits.Exceeded.class,
+                    () -> XmlSorter.sort(new StringReader("<project><a/></project>"),
+                            new StringWriter(), limits));
+            assertEquals(DiffLimits.Limit.CANCELLED, exceeded.getLimit());
+        } finally {
+            // clears the interrupt
+            Thread.interrupted();
+            DiffLimits.clear();
+        }
+    }
+
+    private static void assertLeft(String config) throws Exception {
+        final StringWriter sorted = new StringWriter();
+        assertFalse(XmlSorter.sort(new StringReader(config), sorted, new DiffLimits()));
+        assertEquals("", sorted.toString());
+    }
+
+    private static String stylesheet(String config) throws Exception {
+        try (InputStream xslt = JobConfigHistoryBaseAction.class.getResourceAsStream("xslt/sort.xslt")) {
+            final Transformer transformer = TransformerFactory.newInstance()
+                    .newTransformer(new StreamSource(xslt));
+            final StringWriter result = new StringWriter();
+            transformer.transform(new SAXSource(new InputSource(new StringReader(config))),
+                    new StreamResult(result));
+            return result.toString();
+        }
+    }
+}